@@ -458,10 +458,130 @@ public class KylinConfig {
         return Integer.parseInt(this.getOptional("kylin.query.scan.thread.count", "40"));
     }
 
+    public boolean isParallelScanEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.scan.parallel.enabled", "false"));
+    }
+
+    public int getParallelScanQueueSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.scan.parallel.queue.size", "4096"));
+    }
+
+    public int getScanPrefetchQueueDepth() {
+        return Integer.parseInt(this.getOptional("kylin.query.scan.prefetch.depth", "2"));
+    }
+
+    /**
+     * Most prefetch threads in a query server, scanners beyond that fetch synchronously
+     */
+    public int getScanPrefetchThreadCount() {
+        return Integer.parseInt(this.getOptional("kylin.query.scan.prefetch.threads", "64"));
+    }
+
+    public int getCoprocessorTopNMaxLimit() {
+        return Integer.parseInt(this.getOptional("kylin.query.coprocessor.topn.max.limit", "10000"));
+    }
+
+    public long getCoprocessorMemoryBudget() {
+        return Long.parseLong(this.getOptional("kylin.query.coprocessor.mem.budget", String.valueOf(500L * 1024 * 1024)));
+    }
+
+    public double getBloomFilterFalsePositiveRate() {
+        return Double.parseDouble(this.getOptional("kylin.job.bloomfilter.fpp", "0.01"));
+    }
+
+    public long getBloomFilterCacheBytes() {
+        return Long.parseLong(this.getOptional("kylin.query.bloomfilter.cache.mb", "100")) * 1024 * 1024;
+    }
+
+    public double getCoprocessorMaxOutputRatio() {
+        return Double.parseDouble(this.getOptional("kylin.query.coprocessor.max.output.ratio", "0.8"));
+    }
+
     public boolean isQueryCacheEnabled() {
         return Boolean.parseBoolean(this.getOptional("kylin.query.cache.enabled", "true"));
     }
 
+    /**
+     * Bound of the built lookup tables kept in memory, in number of cells
+     */
+    public long getLookupTableCacheMaxCells() {
+        return Long.parseLong(this.getOptional("kylin.query.lookup.cache.max.cells", "50000000"));
+    }
+
+    /**
+     * Bound of the derived column values kept by host dictionary ID, in number of cells
+     */
+    public long getDerivedValueCacheMaxCells() {
+        return Long.parseLong(this.getOptional("kylin.query.derived.cache.max.cells", "20000000"));
+    }
+
+    /**
+     * Bound of the typed dimension values kept by dictionary ID, in number of cells
+     */
+    public long getDimensionValueCacheMaxCells() {
+        return Long.parseLong(this.getOptional("kylin.query.dimension.cache.max.cells", "20000000"));
+    }
+
+    public boolean isSegmentResultCacheEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.segment.cache.enabled", "true"));
+    }
+
+    /**
+     * Bound of the segment result cache, in estimated bytes of cached tuples
+     */
+    public long getSegmentResultCacheBytes() {
+        return Long.parseLong(this.getOptional("kylin.query.segment.cache.mb", "200")) * 1024 * 1024;
+    }
+
+    /**
+     * Scans returning more tuple values than this are not cached
+     */
+    public int getSegmentResultCacheMaxEntryValues() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment.cache.max.entry.values", "500000"));
+    }
+
+    /**
+     * Number of (segment, cuboid) tuple layouts kept for reuse across scans
+     */
+    public int getCuboidScanInfoCacheSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.scan.info.cache.size", "1000"));
+    }
+
+    /**
+     * Whether coprocessor scans call the cube endpoint on regions in parallel instead of scanning them one by one
+     */
+    public boolean isCubeEndpointEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.cube.endpoint.enabled", "false"));
+    }
+
+    /**
+     * Most bytes a region returns to one cube endpoint call, the rest comes in later pages
+     */
+    public long getCubeEndpointPageBytes() {
+        return Long.parseLong(this.getOptional("kylin.query.cube.endpoint.page.mb", "8")) * 1024 * 1024;
+    }
+
+    /**
+     * Most regions a cube endpoint scan visits at the same time, each holds a page on the query server
+     */
+    public int getCubeEndpointParallelRegions() {
+        return Integer.parseInt(this.getOptional("kylin.query.cube.endpoint.parallel.regions", "8"));
+    }
+
+    /**
+     * Most row keys a fully bound key range is fetched by batched gets instead of a scan, 0 to always scan
+     */
+    public int getExactKeyLookupMaxKeys() {
+        return Integer.parseInt(this.getOptional("kylin.query.scan.get.max.keys", "1000"));
+    }
+
+    /**
+     * Seconds the region boundaries of a segment HTable are reused when splitting scans by region
+     */
+    public int getRegionBoundaryCacheSeconds() {
+        return Integer.parseInt(this.getOptional("kylin.query.scan.region.cache.seconds", "60"));
+    }
+
     public int getHBaseKeyValueSize() {
         return Integer.parseInt(this.getOptional("kylin.hbase.client.keyvalue.maxsize", "10485760"));
     }
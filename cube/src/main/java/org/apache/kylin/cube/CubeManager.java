@@ -18,18 +18,26 @@
 
 package org.apache.kylin.cube;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.JsonSerializer;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.Serializer;
 import org.apache.kylin.common.restclient.Broadcaster;
 import org.apache.kylin.common.restclient.CaseInsensitiveStringCache;
+import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.kv.ColumnBloomFilter;
 import org.apache.kylin.cube.model.DimensionDesc;
 import org.apache.kylin.dict.Dictionary;
 import org.apache.kylin.dict.DictionaryInfo;
@@ -50,7 +58,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 
 /**
@@ -101,8 +111,8 @@ public class CubeManager implements IRealizationProvider {
     private KylinConfig config;
     // cube name ==> CubeInstance
     private CaseInsensitiveStringCache<CubeInstance> cubeMap = new CaseInsensitiveStringCache<CubeInstance>(Broadcaster.TYPE.CUBE);
-    // "table/column" ==> lookup table
-    //    private SingleValueCache<String, LookupStringTable> lookupTables = new SingleValueCache<String, LookupStringTable>(Broadcaster.TYPE.METADATA);
+    // "snapshot path/pk columns" ==> lookup table
+    private Cache<String, LookupStringTable> lookupTables;
 
     // for generation hbase table name of a new segment
     private Multimap<String, String> usedStorageLocation = HashMultimap.create();
@@ -110,6 +120,12 @@ public class CubeManager implements IRealizationProvider {
     private CubeManager(KylinConfig config) throws IOException {
         logger.info("Initializing CubeManager with config " + config);
         this.config = config;
+        this.lookupTables = CacheBuilder.newBuilder().maximumWeight(config.getLookupTableCacheMaxCells()).weigher(new Weigher<String, LookupStringTable>() {
+            @Override
+            public int weigh(String key, LookupStringTable value) {
+                return value.getSizeInCells();
+            }
+        }).build();
 
         loadAllCubeInstance();
     }
@@ -153,6 +169,7 @@ public class CubeManager implements IRealizationProvider {
         DictionaryManager dictMgr = getDictionaryManager();
         DictionaryInfo dictInfo = dictMgr.buildDictionary(cubeDesc.getModel(), cubeDesc.getRowkey().getDictionary(col), col, factColumnsPath);
         cubeSeg.putDictResPath(col, dictInfo.getResourcePath());
+        cubeSeg.putZoneMap(col, dictInfo.getDictionaryObject());
 
         saveResource(cubeSeg.getCubeInstance());
 
@@ -182,6 +199,29 @@ public class CubeManager implements IRealizationProvider {
         return info.getDictionaryObject();
     }
 
+    /**
+     * Saves the Bloom filter of the column, written by the fact distinct columns step, to segment metadata.
+     */
+    public void buildBloomFilter(CubeSegment cubeSeg, TblColRef col, String factColumnsPath) throws IOException {
+        Path path = new Path(factColumnsPath, col.getName() + ColumnBloomFilter.FILE_SUFFIX);
+        FileSystem fs = HadoopUtil.getFileSystem(path.toString());
+        if (fs.exists(path) == false) {
+            logger.warn("No Bloom filter found at " + path);
+            return;
+        }
+
+        String resPath = ResourceStore.BLOOM_FILTER_RESOURCE_ROOT + "/" + cubeSeg.getCubeInstance().getName() + "/" + cubeSeg.getUuid() + "/" + col.getTable() + "." + col.getName() + ColumnBloomFilter.FILE_SUFFIX;
+        FSDataInputStream in = fs.open(path);
+        try {
+            getStore().putResource(resPath, in, System.currentTimeMillis());
+        } finally {
+            in.close();
+        }
+        cubeSeg.putBloomFilterResPaths(col, new String[] { resPath });
+
+        saveResource(cubeSeg.getCubeInstance());
+    }
+
     public SnapshotTable buildSnapshotTable(CubeSegment cubeSeg, String lookupTable) throws IOException {
         MetadataManager metaMgr = getMetadataManager();
         SnapshotManager snapshotMgr = getSnapshotManager();
@@ -387,6 +427,7 @@ public class CubeManager implements IRealizationProvider {
         } catch (IOException e) {
             logger.error(e.getLocalizedMessage(), e);
         }
+        retainLookupTables();
     }
 
     /**
@@ -403,22 +444,55 @@ public class CubeManager implements IRealizationProvider {
     public void removeCubeCacheLocal(String cubeName) {
         cubeMap.removeLocal(cubeName);
         usedStorageLocation.removeAll(cubeName);
+        retainLookupTables();
     }
 
     public LookupStringTable getLookupTable(CubeSegment cubeSegment, DimensionDesc dim) {
 
-        String tableName = dim.getTable();
-        String[] pkCols = dim.getJoin().getPrimaryKey();
-        String snapshotResPath = cubeSegment.getSnapshotResPath(tableName);
+        final String tableName = dim.getTable();
+        final String[] pkCols = dim.getJoin().getPrimaryKey();
+        final String snapshotResPath = cubeSegment.getSnapshotResPath(tableName);
         if (snapshotResPath == null)
             throw new IllegalStateException("No snaphot for table '" + tableName + "' found on cube segment" + cubeSegment.getCubeInstance().getName() + "/" + cubeSegment);
 
+        String key = snapshotResPath + "/" + StringUtils.join(pkCols, ",");
         try {
-            SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(snapshotResPath);
-            TableDesc tableDesc = getMetadataManager().getTableDesc(tableName);
-            return new LookupStringTable(tableDesc, pkCols, snapshot);
-        } catch (IOException e) {
-            throw new IllegalStateException("Failed to load lookup table " + tableName + " from snapshot " + snapshotResPath, e);
+            // concurrent queries on the same snapshot wait for one load
+            return lookupTables.get(key, new Callable<LookupStringTable>() {
+                @Override
+                public LookupStringTable call() throws Exception {
+                    SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(snapshotResPath);
+                    TableDesc tableDesc = getMetadataManager().getTableDesc(tableName);
+                    return new LookupStringTable(tableDesc, pkCols, snapshot);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to load lookup table " + tableName + " from snapshot " + snapshotResPath, e.getCause());
+        }
+    }
+
+    /**
+     * Lookup tables are built against the table desc, rebuild them after
+     * table metadata changed
+     */
+    public void clearLookupTableCache() {
+        lookupTables.invalidateAll();
+    }
+
+    /**
+     * Drops the lookup tables of snapshots no cube segment refers to any more
+     */
+    private void retainLookupTables() {
+        Set<String> snapshotPaths = new HashSet<String>();
+        for (CubeInstance cube : cubeMap.values()) {
+            for (CubeSegment segment : cube.getSegments()) {
+                snapshotPaths.addAll(segment.getSnapshotPaths());
+            }
+        }
+        for (String key : lookupTables.asMap().keySet()) {
+            if (!snapshotPaths.contains(key.substring(0, key.lastIndexOf('/')))) {
+                lookupTables.invalidate(key);
+            }
         }
     }
 
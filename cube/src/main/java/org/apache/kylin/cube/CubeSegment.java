@@ -72,6 +72,10 @@ public class CubeSegment implements Comparable<CubeSegment>, ISegment {
     private ConcurrentHashMap<String, String> dictionaries; // table/column ==> dictionary resource path
     @JsonProperty("snapshots")
     private ConcurrentHashMap<String, String> snapshots; // table name ==> snapshot resource path
+    @JsonProperty("bloom_filters")
+    private ConcurrentHashMap<String, String[]> bloomFilters; // table/column ==> Bloom filter resource paths, any of them may contain a value
+    @JsonProperty("zone_maps")
+    private ConcurrentHashMap<String, String[]> zoneMaps; // table/column ==> [min value, max value]
 
     public CubeDesc getCubeDesc() {
         return getCubeInstance().getDescriptor();
@@ -242,6 +246,51 @@ public class CubeSegment implements Comparable<CubeSegment>, ISegment {
         getDictionaries().put(dictKey(col), dictResPath);
     }
 
+    public Map<String, String[]> getBloomFilters() {
+        if (bloomFilters == null)
+            bloomFilters = new ConcurrentHashMap<String, String[]>();
+        return bloomFilters;
+    }
+
+    /**
+     * @return resource paths of the Bloom filters of the column, a value is in this
+     *         segment only if any of them might contain it; null if there is no Bloom filter
+     */
+    public String[] getBloomFilterResPaths(TblColRef col) {
+        return getBloomFilters().get(dictKey(col));
+    }
+
+    public void putBloomFilterResPaths(TblColRef col, String[] resPaths) {
+        getBloomFilters().put(dictKey(col), resPaths);
+    }
+
+    public Map<String, String[]> getZoneMaps() {
+        if (zoneMaps == null)
+            zoneMaps = new ConcurrentHashMap<String, String[]>();
+        return zoneMaps;
+    }
+
+    /**
+     * @return the min and max value of the column in this segment, or null if unknown
+     */
+    public String[] getZoneMap(TblColRef col) {
+        return getZoneMaps().get(dictKey(col));
+    }
+
+    public void putZoneMap(TblColRef col, String minValue, String maxValue) {
+        getZoneMaps().put(dictKey(col), new String[] { minValue, maxValue });
+    }
+
+    /**
+     * Records the value range of the column from its dictionary, which holds
+     * exactly the values of the column in this segment.
+     */
+    public void putZoneMap(TblColRef col, Dictionary<?> dict) {
+        if (dict == null || dict.getMinId() > dict.getMaxId())
+            return;
+        putZoneMap(col, String.valueOf(dict.getValueFromId(dict.getMinId())), String.valueOf(dict.getValueFromId(dict.getMaxId())));
+    }
+
     private String dictKey(TblColRef col) {
         return col.getTable() + "/" + col.getName();
     }
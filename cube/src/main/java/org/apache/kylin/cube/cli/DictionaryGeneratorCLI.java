@@ -52,6 +52,10 @@ public class DictionaryGeneratorCLI {
                     logger.info("Building dictionary for " + col);
                     cubeMgr.buildDictionary(cubeSeg, col, factColumnsPath);
                 }
+                if (cubeSeg.getCubeDesc().getRowkey().isUseBloomFilter(col)) {
+                    logger.info("Saving Bloom filter for " + col);
+                    cubeMgr.buildBloomFilter(cubeSeg, col, factColumnsPath);
+                }
             }
 
             // build snapshot
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.kv;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+import org.apache.kylin.metadata.model.TblColRef;
+
+/**
+ * A Bloom filter of the values of a row key column in a segment, tells
+ * for sure when a value is not in the segment.
+ *
+ * Values are hashed as their UTF-8 bytes, as they come from the source table
+ * at build time and as the literal is written in the query. That only works
+ * for string columns, whose values are matched byte for byte. Number and date
+ * dictionaries normalize values, e.g. "1.50" and "1.5" are the same number.
+ */
+public class ColumnBloomFilter {
+
+    public static final String FILE_SUFFIX = ".bloom";
+
+    private final BloomFilter filter;
+
+    /**
+     * Whether the column can have a Bloom filter, see the class doc.
+     */
+    public static boolean isApplicable(TblColRef col) {
+        return col.getType().isStringFamily();
+    }
+
+    public static ColumnBloomFilter create(int expectedValues, double falsePositiveRate) {
+        int n = Math.max(1, expectedValues);
+        // optimal bits and hash functions, see http://en.wikipedia.org/wiki/Bloom_filter
+        int vectorSize = (int) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int nbHash = Math.max(1, (int) Math.round((double) vectorSize / n * Math.log(2)));
+        return new ColumnBloomFilter(new BloomFilter(vectorSize, nbHash, Hash.MURMUR_HASH));
+    }
+
+    private ColumnBloomFilter(BloomFilter filter) {
+        this.filter = filter;
+    }
+
+    public void add(byte[] value) {
+        filter.add(new Key(value));
+    }
+
+    public boolean mightContain(String value) {
+        return filter.membershipTest(new Key(Bytes.toBytes(value)));
+    }
+
+    public int getSizeInBytes() {
+        return filter.getVectorSize() / 8 + 1;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        filter.write(out);
+    }
+
+    public static ColumnBloomFilter read(DataInput in) throws IOException {
+        BloomFilter filter = new BloomFilter();
+        filter.readFields(in);
+        return new ColumnBloomFilter(filter);
+    }
+}
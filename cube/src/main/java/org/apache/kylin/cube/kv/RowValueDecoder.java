@@ -77,23 +77,34 @@ public class RowValueDecoder implements Cloneable {
         convertToJavaObjects(values, values);
     }
 
+    /**
+     * Decodes only the projected measures, straight from the given bytes
+     */
+    public void decodeProjected(byte[] bytes, int offset, int length) {
+        codec.decode(ByteBuffer.wrap(bytes, offset, length), values, projectionIndex);
+        for (int i = projectionIndex.nextSetBit(0); i >= 0; i = projectionIndex.nextSetBit(i + 1)) {
+            values[i] = convertToJavaObject(values[i]);
+        }
+    }
+
     private void convertToJavaObjects(Object[] mapredObjs, Object[] results) {
         for (int i = 0; i < mapredObjs.length; i++) {
-            Object o = mapredObjs[i];
-
-            if (o instanceof LongWritable)
-                o = ((LongWritable) o).get();
-            else if (o instanceof IntWritable)
-                o = ((IntWritable) o).get();
-            else if (o instanceof DoubleWritable)
-                o = ((DoubleWritable) o).get();
-            else if (o instanceof FloatWritable)
-                o = ((FloatWritable) o).get();
-
-            results[i] = o;
+            results[i] = convertToJavaObject(mapredObjs[i]);
         }
     }
 
+    private Object convertToJavaObject(Object o) {
+        if (o instanceof LongWritable)
+            o = ((LongWritable) o).get();
+        else if (o instanceof IntWritable)
+            o = ((IntWritable) o).get();
+        else if (o instanceof DoubleWritable)
+            o = ((DoubleWritable) o).get();
+        else if (o instanceof FloatWritable)
+            o = ((FloatWritable) o).get();
+        return o;
+    }
+
     public void setIndex(int bitIndex) {
         projectionIndex.set(bitIndex);
     }
@@ -20,6 +20,7 @@ package org.apache.kylin.cube.model;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.kylin.metadata.model.TblColRef;
 
@@ -38,6 +39,9 @@ public class RowKeyColDesc {
     private String dictionary;
     @JsonProperty("mandatory")
     private boolean mandatory = false;
+    @JsonProperty("bloom_filter")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean bloomFilter; // build a Bloom filter of the column per segment
 
     // computed
     private int bitIndex;
@@ -63,6 +67,10 @@ public class RowKeyColDesc {
         return mandatory;
     }
 
+    public boolean isBloomFilter() {
+        return bloomFilter != null && bloomFilter.booleanValue();
+    }
+
     public int getBitIndex() {
         return bitIndex;
     }
@@ -32,6 +32,7 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.kylin.common.util.StringUtil;
+import org.apache.kylin.cube.kv.ColumnBloomFilter;
 import org.apache.kylin.metadata.model.TblColRef;
 
 /**
@@ -164,6 +165,10 @@ public class RowKeyDesc {
         return !StringUtils.isBlank(useDictionary) && !"false".equals(useDictionary);
     }
 
+    public boolean isUseBloomFilter(TblColRef col) {
+        return getColDesc(col).isBloomFilter() && ColumnBloomFilter.isApplicable(col);
+    }
+
     public void init(CubeDesc cube) {
         setCubeRef(cube);
         Map<String, TblColRef> colNameAbbr = cube.buildColumnNameAbbreviation();
@@ -20,13 +20,24 @@ package org.apache.kylin.cube;
 
 import static org.junit.Assert.*;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.DimensionDesc;
+import org.apache.kylin.dict.lookup.LookupStringTable;
 import org.apache.kylin.metadata.project.ProjectManager;
 import org.apache.kylin.metadata.realization.RealizationStatusEnum;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.metadata.MetadataManager;
@@ -72,6 +83,66 @@ public class CubeManagerCacheTest extends LocalFileMetadataTestCase {
         assertEquals(RealizationStatusEnum.DESCBROKEN, cubeManager.getCube("a_whole_new_cube").getStatus());
     }
 
+    @Test
+    public void testLookupTableCache() throws Exception {
+        CubeInstance cube = cubeManager.getCube("test_kylin_cube_without_slr_ready");
+        CubeSegment segment = cube.getLatestReadySegment();
+        DimensionDesc calDt = null;
+        for (DimensionDesc dim : cube.getDescriptor().getDimensions()) {
+            if ("EDW.TEST_CAL_DT".equals(dim.getTable()))
+                calDt = dim;
+        }
+
+        LookupStringTable lookupTable = cubeManager.getLookupTable(segment, calDt);
+        assertSame(lookupTable, cubeManager.getLookupTable(segment, calDt));
+
+        cubeManager.clearLookupTableCache();
+        LookupStringTable reloaded = cubeManager.getLookupTable(segment, calDt);
+        assertNotSame(lookupTable, reloaded);
+
+        // no other cube refers to the snapshot, dropped with the cube
+        cubeManager.removeCubeCacheLocal(cube.getName());
+        assertNotSame(reloaded, cubeManager.getLookupTable(segment, calDt));
+    }
+
+    @Test
+    public void testLookupTableConcurrentMiss() throws Exception {
+        CubeInstance cube = cubeManager.getCube("test_kylin_cube_without_slr_ready");
+        final CubeSegment segment = cube.getLatestReadySegment();
+        DimensionDesc calDt = null;
+        for (DimensionDesc dim : cube.getDescriptor().getDimensions()) {
+            if ("EDW.TEST_CAL_DT".equals(dim.getTable()))
+                calDt = dim;
+        }
+        final DimensionDesc dim = calDt;
+        cubeManager.clearLookupTableCache();
+
+        int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<LookupStringTable>> results = Lists.newArrayList();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(new Callable<LookupStringTable>() {
+                    @Override
+                    public LookupStringTable call() throws Exception {
+                        start.await();
+                        return cubeManager.getLookupTable(segment, dim);
+                    }
+                }));
+            }
+            start.countDown();
+
+            // all missed together, one load shared by all
+            LookupStringTable first = results.get(0).get();
+            for (Future<LookupStringTable> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     public CubeDescManager getCubeDescManager() {
         return CubeDescManager.getInstance(getTestConfig());
     }
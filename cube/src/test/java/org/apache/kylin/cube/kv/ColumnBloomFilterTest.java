@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.kv;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+public class ColumnBloomFilterTest {
+
+    @Test
+    public void testReadWrite() throws IOException {
+        ColumnBloomFilter filter = ColumnBloomFilter.create(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(Bytes.toBytes(String.valueOf(i)));
+        }
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        filter.write(new DataOutputStream(buf));
+        filter = ColumnBloomFilter.read(new DataInputStream(new ByteArrayInputStream(buf.toByteArray())));
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(String.valueOf(i)));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain(String.valueOf(i)))
+                falsePositives++;
+        }
+        assertTrue("false positives " + falsePositives, falsePositives < 300);
+    }
+}
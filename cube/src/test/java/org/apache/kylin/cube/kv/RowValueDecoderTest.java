@@ -88,4 +88,26 @@ public class RowValueDecoderTest extends LocalFileMetadataTestCase {
         assertEquals("[333.1234567, 333.1111111, 333.1999999, 2]", Arrays.toString(measureValues));
     }
 
+    @Test
+    public void testDecodeProjected() throws Exception {
+        CubeDesc cubeDesc = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_with_slr_ready").getDescriptor();
+        HBaseColumnDesc hbaseCol = cubeDesc.getHBaseMapping().getColumnFamily()[0].getColumns()[0];
+
+        MeasureCodec codec = new MeasureCodec(hbaseCol.getMeasures());
+        ByteBuffer buf = ByteBuffer.allocate(RowConstants.ROWVALUE_BUFFER_SIZE);
+        // the value sits in the middle of a bigger array, as in a result cell
+        buf.put(new byte[] { 1, 2, 3 });
+        codec.encode(new Object[] { new BigDecimal("333.1234567"), new BigDecimal("333.1111111"), new BigDecimal("333.1999999"), new LongWritable(2) }, buf);
+        int length = buf.position() - 3;
+        buf.put((byte) 4);
+
+        // the decimals before MAX_PRICE_ and COUNT__ are skipped
+        RowValueDecoder rowValueDecoder = new RowValueDecoder(hbaseCol);
+        rowValueDecoder.setIndex(2);
+        rowValueDecoder.setIndex(3);
+        rowValueDecoder.decodeProjected(buf.array(), 3, length);
+
+        assertEquals("[null, null, 333.1999999, 2]", Arrays.toString(rowValueDecoder.getValues()));
+    }
+
 }
@@ -21,8 +21,11 @@ package org.apache.kylin.dict.lookup;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.hadoop.hbase.util.Pair;
@@ -43,12 +46,15 @@ abstract public class LookupTable<T extends Comparable<T>> {
     protected String[] keyColumns;
     protected ReadableTable table;
     protected ConcurrentHashMap<Array<T>, T[]> data;
+    // column index ==> rows sorted by the column value, built on first use
+    private ConcurrentHashMap<Integer, NavigableMap<T, List<T[]>>> columnIndexes;
 
     public LookupTable(TableDesc tableDesc, String[] keyColumns, ReadableTable table) throws IOException {
         this.tableDesc = tableDesc;
         this.keyColumns = keyColumns;
         this.table = table;
         this.data = new ConcurrentHashMap<Array<T>, T[]>();
+        this.columnIndexes = new ConcurrentHashMap<Integer, NavigableMap<T, List<T[]>>>();
         init();
     }
 
@@ -93,13 +99,74 @@ abstract public class LookupTable<T extends Comparable<T>> {
         return data.values();
     }
 
+    public int getSizeInCells() {
+        return data.size() * tableDesc.getColumns().length;
+    }
+
+    /**
+     * Rows whose value of the column is one of the given, found by index
+     */
+    public List<T[]> getRowsEqualTo(int colIdx, Collection<T> values) {
+        NavigableMap<T, List<T[]>> index = getColumnIndex(colIdx);
+        List<T[]> result = new ArrayList<T[]>();
+        for (T value : values) {
+            List<T[]> rows = value == null ? null : index.get(value);
+            if (rows != null)
+                result.addAll(rows);
+        }
+        return result;
+    }
+
+    /**
+     * Rows whose value of the column is between the given inclusive bounds,
+     * a null bound is open, found by index
+     */
+    public List<T[]> getRowsBetween(int colIdx, T beginValue, T endValue) {
+        NavigableMap<T, List<T[]>> index = getColumnIndex(colIdx);
+        if (beginValue != null && endValue != null && beginValue.compareTo(endValue) > 0)
+            return Collections.emptyList();
+
+        NavigableMap<T, List<T[]>> range = index;
+        if (beginValue != null)
+            range = range.tailMap(beginValue, true);
+        if (endValue != null)
+            range = range.headMap(endValue, true);
+
+        List<T[]> result = new ArrayList<T[]>();
+        for (List<T[]> rows : range.values()) {
+            result.addAll(rows);
+        }
+        return result;
+    }
+
+    private NavigableMap<T, List<T[]>> getColumnIndex(int colIdx) {
+        NavigableMap<T, List<T[]>> index = columnIndexes.get(colIdx);
+        if (index != null)
+            return index;
+
+        index = new TreeMap<T, List<T[]>>();
+        for (T[] row : data.values()) {
+            T value = row[colIdx];
+            if (value == null)
+                continue;
+            List<T[]> rows = index.get(value);
+            if (rows == null) {
+                rows = new ArrayList<T[]>(1);
+                index.put(value, rows);
+            }
+            rows.add(row);
+        }
+        // concurrent builds are identical, keep whichever comes first
+        NavigableMap<T, List<T[]>> existing = columnIndexes.putIfAbsent(colIdx, index);
+        return existing == null ? index : existing;
+    }
+
     public List<T> scan(String col, List<T> values, String returnCol) {
         ArrayList<T> result = new ArrayList<T>();
         int colIdx = tableDesc.findColumnByName(col).getZeroBasedIndex();
         int returnIdx = tableDesc.findColumnByName(returnCol).getZeroBasedIndex();
-        for (T[] row : data.values()) {
-            if (values.contains(row[colIdx]))
-                result.add(row[returnIdx]);
+        for (T[] row : getRowsEqualTo(colIdx, values)) {
+            result.add(row[returnIdx]);
         }
         return result;
     }
@@ -109,15 +176,13 @@ abstract public class LookupTable<T extends Comparable<T>> {
         int returnIdx = tableDesc.findColumnByName(returnCol).getZeroBasedIndex();
         T returnBegin = null;
         T returnEnd = null;
-        for (T[] row : data.values()) {
-            if (between(beginValue, row[colIdx], endValue)) {
-                T returnValue = row[returnIdx];
-                if (returnBegin == null || returnValue.compareTo(returnBegin) < 0) {
-                    returnBegin = returnValue;
-                }
-                if (returnEnd == null || returnValue.compareTo(returnEnd) > 0) {
-                    returnEnd = returnValue;
-                }
+        for (T[] row : getRowsBetween(colIdx, beginValue, endValue)) {
+            T returnValue = row[returnIdx];
+            if (returnBegin == null || returnValue.compareTo(returnBegin) < 0) {
+                returnBegin = returnValue;
+            }
+            if (returnEnd == null || returnValue.compareTo(returnEnd) > 0) {
+                returnEnd = returnValue;
             }
         }
         if (returnBegin == null && returnEnd == null)
@@ -130,18 +195,12 @@ abstract public class LookupTable<T extends Comparable<T>> {
         int colIdx = tableDesc.findColumnByName(col).getZeroBasedIndex();
         int returnIdx = tableDesc.findColumnByName(returnCol).getZeroBasedIndex();
         Set<T> result = Sets.newHashSetWithExpectedSize(values.size());
-        for (T[] row : data.values()) {
-            if (values.contains(row[colIdx])) {
-                result.add(row[returnIdx]);
-            }
+        for (T[] row : getRowsEqualTo(colIdx, values)) {
+            result.add(row[returnIdx]);
         }
         return result;
     }
 
-    private boolean between(T beginValue, T v, T endValue) {
-        return (beginValue == null || beginValue.compareTo(v) <= 0) && (endValue == null || v.compareTo(endValue) <= 0);
-    }
-
     public String toString() {
         return "LookupTable [path=" + table + "]";
     }
@@ -23,6 +23,9 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.hadoop.fs.Path;
@@ -32,6 +35,7 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.RootPersistentEntity;
+import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.metadata.model.TableDesc;
 
 /**
@@ -45,7 +49,14 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
     @JsonProperty("column_delimeter")
     private String columnDelimeter;
 
-    private ArrayList<String[]> rows;
+    // marks the columnar data format, the former row format starts with row count
+    private static final int COLUMNAR_FORMAT = -1;
+
+    // each column is dictionary encoded into fixed width ids, rows share the cell strings
+    private int rowCount;
+    private String[][] columnDicts;
+    private byte[][] columnIds;
+    private int[] idWidths;
 
     // default constructor for JSON serialization
     public SnapshotTable() {
@@ -71,7 +82,66 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
             }
             allRows.add(row);
         }
-        this.rows = allRows;
+        encode(allRows);
+    }
+
+    private void encode(List<String[]> rows) {
+        int n = rows.isEmpty() ? 0 : rows.get(0).length;
+        rowCount = rows.size();
+        columnDicts = new String[n][];
+        columnIds = new byte[n][];
+        idWidths = new int[n];
+
+        int[] ids = new int[rowCount];
+        for (int j = 0; j < n; j++) {
+            Map<String, Integer> dict = new HashMap<String, Integer>();
+            for (int i = 0; i < rowCount; i++) {
+                String[] row = rows.get(i);
+                if (row.length < n) {
+                    throw new IllegalStateException("Bad snapshot row, expect " + n + " columns, but got " + Arrays.toString(row));
+                }
+                Integer id = dict.get(row[j]);
+                if (id == null) {
+                    id = dict.size();
+                    dict.put(row[j], id);
+                }
+                ids[i] = id;
+            }
+
+            String[] values = new String[dict.size()];
+            for (Map.Entry<String, Integer> entry : dict.entrySet()) {
+                values[entry.getValue()] = entry.getKey();
+            }
+            int width = Math.max(1, BytesUtil.sizeForValue(values.length - 1));
+            byte[] packed = new byte[rowCount * width];
+            for (int i = 0; i < rowCount; i++) {
+                BytesUtil.writeUnsigned(ids[i], packed, i * width, width);
+            }
+            columnDicts[j] = values;
+            columnIds[j] = packed;
+            idWidths[j] = width;
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnDicts.length;
+    }
+
+    public String getCell(int row, int col) {
+        int width = idWidths[col];
+        return columnDicts[col][BytesUtil.readUnsigned(columnIds[col], row * width, width)];
+    }
+
+    public String[] getRow(int row) {
+        String[] result = new String[columnDicts.length];
+        for (int j = 0; j < result.length; j++) {
+            result[j] = getCell(row, j);
+        }
+        return result;
     }
 
     public String getResourcePath() {
@@ -91,12 +161,12 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
             @Override
             public boolean next() throws IOException {
                 i++;
-                return i < rows.size();
+                return i < rowCount;
             }
 
             @Override
             public String[] getRow() {
-                return rows.get(i);
+                return SnapshotTable.this.getRow(i);
             }
 
             @Override
@@ -127,9 +197,9 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
      */
     @Override
     public int hashCode() {
-        int[] parts = new int[this.rows.size()];
+        int[] parts = new int[rowCount];
         for (int i = 0; i < parts.length; ++i)
-            parts[i] = Arrays.hashCode(this.rows.get(i));
+            parts[i] = Arrays.hashCode(getRow(i));
         return Arrays.hashCode(parts);
     }
 
@@ -140,32 +210,56 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
         SnapshotTable that = (SnapshotTable) o;
 
         //compare row by row
-        if (this.rows.size() != that.rows.size())
+        if (this.rowCount != that.rowCount)
             return false;
-        for (int i = 0; i < this.rows.size(); ++i) {
-            if (!ArrayUtils.isEquals(this.rows.get(i), that.rows.get(i)))
+        for (int i = 0; i < this.rowCount; ++i) {
+            if (!ArrayUtils.isEquals(this.getRow(i), that.getRow(i)))
                 return false;
         }
         return true;
     }
 
     void writeData(DataOutput out) throws IOException {
-        out.writeInt(rows.size());
-        if (rows.size() > 0) {
-            int n = rows.get(0).length;
-            out.writeInt(n);
-            for (int i = 0; i < rows.size(); i++) {
-                String[] row = rows.get(i);
-                for (int j = 0; j < n; j++) {
-                    out.writeUTF(row[j]);
-                }
+        out.writeInt(COLUMNAR_FORMAT);
+        out.writeInt(rowCount);
+        out.writeInt(columnDicts.length);
+        for (int j = 0; j < columnDicts.length; j++) {
+            out.writeInt(columnDicts[j].length);
+            for (String value : columnDicts[j]) {
+                out.writeUTF(value);
             }
+            out.writeByte(idWidths[j]);
+            out.write(columnIds[j]);
         }
     }
 
     void readData(DataInput in) throws IOException {
-        int rowNum = in.readInt();
-        rows = new ArrayList<String[]>(rowNum);
+        int first = in.readInt();
+        if (first != COLUMNAR_FORMAT) {
+            // snapshot of the row format, migrate on load
+            encode(readRows(in, first));
+            return;
+        }
+
+        rowCount = in.readInt();
+        int n = in.readInt();
+        columnDicts = new String[n][];
+        columnIds = new byte[n][];
+        idWidths = new int[n];
+        for (int j = 0; j < n; j++) {
+            String[] values = new String[in.readInt()];
+            for (int k = 0; k < values.length; k++) {
+                values[k] = in.readUTF();
+            }
+            columnDicts[j] = values;
+            idWidths[j] = in.readByte();
+            columnIds[j] = new byte[rowCount * idWidths[j]];
+            in.readFully(columnIds[j]);
+        }
+    }
+
+    private List<String[]> readRows(DataInput in, int rowNum) throws IOException {
+        List<String[]> rows = new ArrayList<String[]>(rowNum);
         if (rowNum > 0) {
             int n = in.readInt();
             for (int i = 0; i < rowNum; i++) {
@@ -176,6 +270,7 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
                 }
             }
         }
+        return rows;
     }
 
 }
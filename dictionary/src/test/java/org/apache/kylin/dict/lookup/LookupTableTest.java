@@ -100,6 +100,27 @@ public class LookupTableTest extends LocalFileMetadataTestCase {
         }
     }
 
+    @Test
+    public void testIndexedRows() throws Exception {
+        int colIdx = lookupTable.tableDesc.findColumnByName("CAL_DT").getZeroBasedIndex();
+        List<String> values = new ArrayList<String>();
+        values.add("2012-01-24");
+        values.add("1900-01-01");
+        List<Object[]> rows = lookupTable.getRowsEqualTo(colIdx, values);
+        Assert.assertEquals(1, rows.size());
+        Assert.assertEquals("2012-01-24", rows.get(0)[colIdx]);
+
+        int count = 0;
+        for (Object[] row : (Iterable<Object[]>) lookupTable.getAllRows()) {
+            String value = (String) row[colIdx];
+            if (value.compareTo("2012-01-01") >= 0 && value.compareTo("2012-01-31") <= 0)
+                count++;
+        }
+        Assert.assertEquals(31, count);
+        Assert.assertEquals(count, lookupTable.getRowsBetween(colIdx, "2012-01-01", "2012-01-31").size());
+        Assert.assertEquals(0, lookupTable.getRowsBetween(colIdx, "2012-01-31", "2012-01-01").size());
+    }
+
     public LookupTable initLookupTable() throws Exception {
 
 
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class SnapshotTableTest {
+
+    @Test
+    public void testMigrateRowFormat() throws IOException {
+        String[][] rows = new String[300][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new String[] { String.valueOf(i), i % 2 == 0 ? "EVEN" : "ODD" };
+        }
+
+        // the former row format
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        out.writeInt(rows.length);
+        out.writeInt(2);
+        for (String[] row : rows) {
+            out.writeUTF(row[0]);
+            out.writeUTF(row[1]);
+        }
+
+        SnapshotTable snapshot = new SnapshotTable();
+        snapshot.readData(new DataInputStream(new ByteArrayInputStream(buf.toByteArray())));
+        assertRows(rows, snapshot);
+
+        buf = new ByteArrayOutputStream();
+        snapshot.writeData(new DataOutputStream(buf));
+        SnapshotTable copy = new SnapshotTable();
+        copy.readData(new DataInputStream(new ByteArrayInputStream(buf.toByteArray())));
+        assertRows(rows, copy);
+        assertEquals(snapshot, copy);
+        assertEquals(snapshot.hashCode(), copy.hashCode());
+    }
+
+    private void assertRows(String[][] rows, SnapshotTable snapshot) throws IOException {
+        assertEquals(rows.length, snapshot.getRowCount());
+        TableReader reader = snapshot.getReader();
+        for (String[] row : rows) {
+            assertTrue(reader.next());
+            assertArrayEquals(row, reader.getRow());
+        }
+        assertFalse(reader.next());
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.kylin.jdbc.stub;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author xduo
@@ -55,6 +56,9 @@ public class SQLResponseStub implements Serializable {
 
     private boolean hitCache = false;
 
+    // hbase scan and coprocessor metrics, summed over all storage scans
+    private Map<String, Long> scanMetrics;
+
     public SQLResponseStub() {
     }
 
@@ -138,6 +142,14 @@ public class SQLResponseStub implements Serializable {
         this.hitCache = hitCache;
     }
 
+    public Map<String, Long> getScanMetrics() {
+        return scanMetrics;
+    }
+
+    public void setScanMetrics(Map<String, Long> scanMetrics) {
+        this.scanMetrics = scanMetrics;
+    }
+
     public static long getSerialversionuid() {
         return serialVersionUID;
     }
@@ -20,6 +20,7 @@ package org.apache.kylin.job.cube;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -67,6 +68,7 @@ public class MergeDictionaryStep extends AbstractExecutable {
             
             makeDictForNewSegment(conf, cube, newSegment, mergingSegments);
             makeSnapshotForNewSegment(cube, newSegment, mergingSegments);
+            makeBloomFiltersForNewSegment(cube, newSegment, mergingSegments);
             
             mgr.updateCube(cube);
             return new ExecuteResult(ExecuteResult.State.SUCCEED, "succeed");
@@ -76,6 +78,28 @@ public class MergeDictionaryStep extends AbstractExecutable {
         }
     }
     
+    /**
+     * A value is in the new segment if it is in any merging segment, so the new
+     * segment refers to the Bloom filters of all merging segments. Without a
+     * Bloom filter of any merging segment, the column has none.
+     */
+    private void makeBloomFiltersForNewSegment(CubeInstance cube, CubeSegment newSeg, List<CubeSegment> mergingSegments) {
+        for (TblColRef col : cube.getDescriptor().listDimensionColumnsExcludingDerived()) {
+            List<String> resPaths = Lists.newArrayList();
+            for (CubeSegment segment : mergingSegments) {
+                String[] paths = segment.getBloomFilterResPaths(col);
+                if (paths == null) {
+                    resPaths = null;
+                    break;
+                }
+                resPaths.addAll(Arrays.asList(paths));
+            }
+            if (resPaths != null && resPaths.isEmpty() == false) {
+                newSeg.putBloomFilterResPaths(col, resPaths.toArray(new String[resPaths.size()]));
+            }
+        }
+    }
+
     private List<CubeSegment> getMergingSegments(CubeInstance cube) {
         List<String> mergingSegmentIds = getMergingSegmentIds();
         List<CubeSegment> result = Lists.newArrayListWithCapacity(mergingSegmentIds.size());
@@ -134,12 +158,17 @@ public class MergeDictionaryStep extends AbstractExecutable {
         for (TblColRef col : colsNeedCopyDict) {
             String path = mergingSegments.get(0).getDictResPath(col);
             newSeg.putDictResPath(col, path);
+            String[] zoneMap = mergingSegments.get(0).getZoneMap(col);
+            if (zoneMap != null) {
+                newSeg.putZoneMap(col, zoneMap[0], zoneMap[1]);
+            }
         }
     }
 
     private DictionaryInfo mergeDictionaries(DictionaryManager dictMgr, CubeSegment cubeSeg, List<DictionaryInfo> dicts, TblColRef col) throws IOException {
         DictionaryInfo dictInfo = dictMgr.mergeDictionary(dicts);
         cubeSeg.putDictResPath(col, dictInfo.getResourcePath());
+        cubeSeg.putZoneMap(col, dictInfo.getDictionaryObject());
 
         return dictInfo;
     }
@@ -83,6 +83,11 @@ public class FactDistinctColumnsMapper<KEYIN> extends KylinMapper<KEYIN, HCatRec
         DictionaryManager dictMgr = DictionaryManager.getInstance(config);
         for (int i = 0; i < columns.size(); i++) {
             TblColRef col = columns.get(i);
+            if (rowkey.isUseBloomFilter(col)) {
+                // the reducer builds a Bloom filter from the distinct values
+                factDictCols.add(i);
+                continue;
+            }
             if (rowkey.isUseDictionary(col) == false)
                 continue;
 
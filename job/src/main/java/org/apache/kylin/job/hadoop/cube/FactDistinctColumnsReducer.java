@@ -38,7 +38,9 @@ import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.ColumnBloomFilter;
 import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.RowKeyDesc;
 import org.apache.kylin.job.constant.BatchConstants;
 import org.apache.kylin.job.hadoop.AbstractHadoopJob;
 import org.apache.kylin.metadata.model.TblColRef;
@@ -49,6 +51,8 @@ import org.apache.kylin.metadata.model.TblColRef;
 public class FactDistinctColumnsReducer extends KylinReducer<ShortWritable, Text, NullWritable, Text> {
 
     private List<TblColRef> columnList = new ArrayList<TblColRef>();
+    private RowKeyDesc rowKeyDesc;
+    private double bloomFilterFpp;
 
     @Override
     protected void setup(Context context) throws IOException {
@@ -63,6 +67,8 @@ public class FactDistinctColumnsReducer extends KylinReducer<ShortWritable, Text
         long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
         Cuboid baseCuboid = Cuboid.findById(cubeDesc, baseCuboidId);
         columnList = baseCuboid.getColumns();
+        rowKeyDesc = cubeDesc.getRowkey();
+        bloomFilterFpp = config.getBloomFilterFalsePositiveRate();
     }
 
     @Override
@@ -89,6 +95,18 @@ public class FactDistinctColumnsReducer extends KylinReducer<ShortWritable, Text
             out.close();
         }
 
+        if (rowKeyDesc.isUseBloomFilter(col)) {
+            ColumnBloomFilter bloomFilter = ColumnBloomFilter.create(set.size(), bloomFilterFpp);
+            for (ByteArray value : set) {
+                bloomFilter.add(value.data);
+            }
+            FSDataOutputStream bloomOut = fs.create(new Path(outputPath, col.getName() + ColumnBloomFilter.FILE_SUFFIX));
+            try {
+                bloomFilter.write(bloomOut);
+            } finally {
+                bloomOut.close();
+            }
+        }
     }
 
 }
@@ -63,6 +63,7 @@ public class DeployCoprocessorCLI {
 
     public static final String OBSERVER_CLS_NAME = "org.apache.kylin.storage.hbase.coprocessor.observer.AggregateRegionObserver";
     public static final String ENDPOINT_CLS_NAMAE = "org.apache.kylin.storage.hbase.coprocessor.endpoint.IIEndpoint";
+    public static final String CUBE_ENDPOINT_CLS_NAME = "org.apache.kylin.storage.hbase.coprocessor.endpoint.CubeEndpoint";
 
     public static void main(String[] args) throws IOException {
         KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
@@ -119,6 +120,7 @@ public class DeployCoprocessorCLI {
         logger.info("Add coprocessor on " + desc.getNameAsString());
         desc.addCoprocessor(ENDPOINT_CLS_NAMAE, hdfsCoprocessorJar, 1000, null);
         desc.addCoprocessor(OBSERVER_CLS_NAME, hdfsCoprocessorJar, 1001, null);
+        desc.addCoprocessor(CUBE_ENDPOINT_CLS_NAME, hdfsCoprocessorJar, 1002, null);
     }
 
     public static void resetCoprocessor(String tableName, HBaseAdmin hbaseAdmin, Path hdfsCoprocessorJar) throws IOException {
@@ -133,6 +135,9 @@ public class DeployCoprocessorCLI {
         while (desc.hasCoprocessor(ENDPOINT_CLS_NAMAE)) {
             desc.removeCoprocessor(ENDPOINT_CLS_NAMAE);
         }
+        while (desc.hasCoprocessor(CUBE_ENDPOINT_CLS_NAME)) {
+            desc.removeCoprocessor(CUBE_ENDPOINT_CLS_NAME);
+        }
 
         addCoprocessorOnHTable(desc, hdfsCoprocessorJar);
         hbaseAdmin.modifyTable(tableName, desc);
@@ -52,6 +52,13 @@ public class BigDecimalSerializer extends MeasureSerializer<BigDecimal> {
         return new BigDecimal(new BigInteger(bytes), scale);
     }
 
+    @Override
+    public void skip(ByteBuffer in) {
+        BytesUtil.readVInt(in); // scale
+        int n = BytesUtil.readVInt(in);
+        in.position(in.position() + n);
+    }
+
     @Override
     public BigDecimal valueOf(byte[] value) {
         if (value == null)
@@ -19,6 +19,7 @@
 package org.apache.kylin.metadata.measure;
 
 import java.nio.ByteBuffer;
+import java.util.BitSet;
 import java.util.Collection;
 
 import org.apache.hadoop.io.Text;
@@ -75,6 +76,19 @@ public class MeasureCodec {
         }
     }
 
+    /**
+     * Decodes only the measures in projection, the others in result are left as is
+     */
+    public void decode(ByteBuffer buf, Object[] result, BitSet projection) {
+        assert result.length == nMeasures;
+        for (int i = 0; i < nMeasures; i++) {
+            if (projection.get(i))
+                result[i] = serializers[i].deserialize(buf);
+            else
+                serializers[i].skip(buf);
+        }
+    }
+
     public void encode(Object[] values, ByteBuffer out) {
         assert values.length == nMeasures;
         for (int i = 0; i < nMeasures; i++) {
@@ -18,6 +18,7 @@
 
 package org.apache.kylin.metadata.measure;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 
 import org.apache.kylin.common.util.BytesSerializer;
@@ -59,6 +60,14 @@ abstract public class MeasureSerializer<T> implements BytesSerializer<T> {
 
     abstract public T valueOf(byte[] value);
 
+    /**
+     * Moves past a serialized value without creating it, override when
+     * deserialize() allocates
+     */
+    public void skip(ByteBuffer in) {
+        deserialize(in);
+    }
+
     public String toString(T value) {
         if (value == null)
             return "NULL";
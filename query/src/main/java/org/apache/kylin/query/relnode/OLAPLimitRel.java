@@ -82,6 +82,10 @@ public class OLAPLimitRel extends SingleRel implements OLAPRel, EnumerableRel {
         this.context = implementor.getContext();
         Number limitValue = (Number) (((RexLiteral) localFetch).getValue());
         int limit = limitValue.intValue();
+        if (localOffset != null) {
+            // storage has to return the skipped rows too
+            limit += ((Number) ((RexLiteral) localOffset).getValue()).intValue();
+        }
         this.context.storageContext.setLimit(limit);
     }
 
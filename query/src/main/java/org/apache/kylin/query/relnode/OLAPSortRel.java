@@ -90,6 +90,10 @@ public class OLAPSortRel extends SortRel implements EnumerableRel, OLAPRel {
             MeasureDesc measure = findMeasure(orderCol);
             if (measure != null) {
                 this.context.storageContext.addSort(measure, order);
+            } else {
+                // the query engine sorts nulls last unless asked first, whatever the direction
+                boolean nullsFirst = fieldCollation.nullDirection == RelFieldCollation.NullDirection.FIRST;
+                this.context.storageContext.addSort(orderCol, order, nullsFirst);
             }
             this.context.storageContext.markSort();
         }
@@ -23,6 +23,7 @@ import java.util.Map;
 
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.MetricSet;
 
 /**
@@ -33,6 +34,10 @@ public class QueryMetrics implements MetricSet {
 
     private Map<String, Float> metrics = new HashMap<String, Float>();
 
+    // registry and name this set is registered under, to export keys first seen later
+    private MetricRegistry registry;
+    private String registeredName;
+
     private QueryMetrics() {
         // register query metrics
         this.increase("duration", (float) 0);
@@ -48,11 +53,20 @@ public class QueryMetrics implements MetricSet {
         return QueryMetricsHolder.INSTANCE;
     }
 
+    public synchronized void registerTo(MetricRegistry registry, String name) {
+        registry.register(name, this);
+        this.registry = registry;
+        this.registeredName = name;
+    }
+
     public synchronized void increase(String key, Float value) {
         if (metrics.containsKey(key)) {
             metrics.put(key, metrics.get(key) + value);
         } else {
             metrics.put(key, value);
+            if (registry != null) {
+                registry.register(MetricRegistry.name(registeredName, key), newGauge(key));
+            }
         }
     }
 
@@ -67,16 +81,20 @@ public class QueryMetrics implements MetricSet {
         Map<String, Metric> metricSet = new HashMap<String, Metric>();
 
         for (final String key : metrics.keySet()) {
-            metricSet.put(key, new Gauge<Float>() {
-                @Override
-                public Float getValue() {
-                    float value = getAndReset(key);
-
-                    return value;
-                }
-            });
+            metricSet.put(key, newGauge(key));
         }
 
         return metricSet;
     }
+
+    private Gauge<Float> newGauge(final String key) {
+        return new Gauge<Float>() {
+            @Override
+            public Float getValue() {
+                float value = getAndReset(key);
+
+                return value;
+            }
+        };
+    }
 }
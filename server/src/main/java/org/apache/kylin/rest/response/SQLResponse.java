@@ -20,6 +20,7 @@ package org.apache.kylin.rest.response;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.kylin.rest.model.SelectedColumnMeta;
 
@@ -54,6 +55,9 @@ public class SQLResponse implements Serializable {
 
     private boolean hitCache = false;
 
+    // hbase scan and coprocessor metrics, summed over all storage scans
+    private Map<String, Long> scanMetrics;
+
     public SQLResponse() {
     }
 
@@ -141,4 +145,12 @@ public class SQLResponse implements Serializable {
         this.hitCache = hitCache;
     }
 
+    public Map<String, Long> getScanMetrics() {
+        return scanMetrics;
+    }
+
+    public void setScanMetrics(Map<String, Long> scanMetrics) {
+        this.scanMetrics = scanMetrics;
+    }
+
 }
@@ -20,12 +20,15 @@ package org.apache.kylin.rest.service;
 
 import org.apache.kylin.common.restclient.Broadcaster;
 import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.invertedindex.IIDescManager;
 import org.apache.kylin.invertedindex.IIManager;
 import org.apache.kylin.metadata.project.ProjectInstance;
 import org.apache.kylin.metadata.project.ProjectManager;
 import org.apache.kylin.metadata.realization.RealizationType;
+import org.apache.kylin.storage.hbase.CuboidScanInfo;
+import org.apache.kylin.storage.hbase.SegmentResultCache;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -43,6 +46,8 @@ public class CacheService extends BasicService {
             switch (cacheType) {
                 case CUBE:
                     getCubeManager().loadCubeCache(cacheKey);
+                    retainSegmentResults(cacheKey);
+                    CuboidScanInfo.invalidate(cacheKey);
                     cleanProjectCacheByRealization(RealizationType.CUBE, cacheKey);
                     break;
                 case CUBE_DESC:
@@ -60,6 +65,8 @@ public class CacheService extends BasicService {
                     break;
                 case TABLE:
                     getMetadataManager().reloadTableCache(cacheKey);
+                    getCubeManager().clearLookupTableCache();
+                    CuboidScanInfo.clear();
                     IIDescManager.clearCache();
                     CubeDescManager.clearCache();
                     break;
@@ -75,6 +82,8 @@ public class CacheService extends BasicService {
                     IIDescManager.clearCache();
                     IIManager.clearCache();
                     ProjectManager.clearCache();
+                    SegmentResultCache.clear();
+                    CuboidScanInfo.clear();
                     BasicService.resetOLAPDataSources();
                     break;
                 default:
@@ -86,6 +95,15 @@ public class CacheService extends BasicService {
 
     }
 
+    private void retainSegmentResults(String cubeName) {
+        CubeInstance cube = getCubeManager().getCube(cubeName);
+        if (cube == null) {
+            SegmentResultCache.invalidate(cubeName);
+        } else {
+            SegmentResultCache.retainSegments(cube);
+        }
+    }
+
     private void cleanProjectCacheByRealization(RealizationType type, String realizationName) throws IOException {
         List<ProjectInstance> projectInstances = getProjectManager().findProjects(type, realizationName);
         for (ProjectInstance pi : projectInstances) {
@@ -100,6 +118,8 @@ public class CacheService extends BasicService {
             switch (cacheType) {
                 case CUBE:
                     getCubeManager().removeCubeCacheLocal(cacheKey);
+                    SegmentResultCache.invalidate(cacheKey);
+                    CuboidScanInfo.invalidate(cacheKey);
                     break;
                 case CUBE_DESC:
                     getCubeDescManager().removeLocalCubeDesc(cacheKey);
@@ -37,7 +37,7 @@ public class MetricsService implements InitializingBean {
     private MetricRegistry metricRegistry;
 
     public void registerQueryMetrics() {
-        metricRegistry.register("QueryMetrics", QueryMetrics.getInstance());
+        QueryMetrics.getInstance().registerTo(metricRegistry, "QueryMetrics");
     }
 
     /*
@@ -34,6 +34,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +42,8 @@ import java.util.Set;
 
 import javax.sql.DataSource;
 
+import com.codahale.metrics.MetricRegistry;
+
 import net.hydromatic.avatica.ColumnMetaData.Rep;
 
 import org.apache.commons.io.IOUtils;
@@ -73,6 +76,7 @@ import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.query.relnode.OLAPContext;
+import org.apache.kylin.storage.StorageContext;
 
 /**
  * @author xduo
@@ -227,6 +231,15 @@ public class QueryService extends BasicService {
         QueryMetrics.getInstance().increase("duration", duration);
         QueryMetrics.getInstance().increase("totalScanCount", (float) totalScanCount);
         QueryMetrics.getInstance().increase("count", (float) 1);
+        if (!response.isHitCache() && response.getScanMetrics() != null) {
+            String cube = response.getCube();
+            for (Map.Entry<String, Long> entry : response.getScanMetrics().entrySet()) {
+                QueryMetrics.getInstance().increase(entry.getKey(), (float) entry.getValue());
+                if (cube != null && cube.length() > 0) {
+                    QueryMetrics.getInstance().increase(MetricRegistry.name(request.getProject(), cube, entry.getKey()), (float) entry.getValue());
+                }
+            }
+        }
 
         String newLine = System.getProperty("line.separator");
         StringBuilder stringBuilder = new StringBuilder();
@@ -240,6 +253,7 @@ public class QueryService extends BasicService {
         stringBuilder.append("Realization Names: ").append(realizationNames).append(newLine);
         stringBuilder.append("Cuboid Ids: ").append(cuboidIds).append(newLine);
         stringBuilder.append("Total scan count: ").append(totalScanCount).append(newLine);
+        stringBuilder.append("Scan metrics: ").append(response.getScanMetrics()).append(newLine);
         stringBuilder.append("Result row count: ").append(resultRowCount).append(newLine);
         stringBuilder.append("Accept Partial: ").append(request.isAcceptPartial()).append(newLine);
         stringBuilder.append("Is Partial Result: ").append(response.isPartial()).append(newLine);
@@ -381,20 +395,32 @@ public class QueryService extends BasicService {
         boolean isPartialResult = false;
         String cube = "";
         long totalScanCount = 0;
+        Map<String, Long> scanMetrics = new LinkedHashMap<String, Long>();
         if (OLAPContext.getThreadLocalContexts() != null) { // contexts can be null in case of 'explain plan for'
             for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
                 isPartialResult |= ctx.storageContext.isPartialResultReturned();
                 cube = ctx.realization.getName();
                 totalScanCount += ctx.storageContext.getTotalScanCount();
+                addScanMetrics(scanMetrics, ctx.storageContext);
             }
         }
 
         SQLResponse response = new SQLResponse(columnMetas, results, cube, 0, false, null, isPartialResult);
         response.setTotalScanCount(totalScanCount);
+        response.setScanMetrics(scanMetrics);
 
         return response;
     }
 
+    static void addScanMetrics(Map<String, Long> sum, StorageContext storageContext) {
+        Map<String, Long> metrics = storageContext.getScanStats().toMap();
+        metrics.put("segmentsSkippedByBloomFilter", (long) storageContext.getSegmentsSkippedByBloomFilter());
+        for (Map.Entry<String, Long> entry : metrics.entrySet()) {
+            Long old = sum.get(entry.getKey());
+            sum.put(entry.getKey(), old == null ? entry.getValue() : old + entry.getValue());
+        }
+    }
+
     /**
      * @param preparedState
      * @param param
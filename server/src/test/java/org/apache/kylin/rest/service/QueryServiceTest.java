@@ -21,6 +21,8 @@ package org.apache.kylin.rest.service;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.response.SQLResponse;
@@ -30,6 +32,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import org.apache.kylin.job.exception.JobException;
 import org.apache.kylin.metadata.project.ProjectInstance;
+import org.apache.kylin.storage.StorageContext;
 
 /**
  * @author xduo
@@ -61,4 +64,24 @@ public class QueryServiceTest extends ServiceTestBase {
         response.setHitCache(true);
         queryService.logQuery(request, response, new Date(), new Date());
     }
+
+    @Test
+    public void testScanMetricsSummedOverContexts() {
+        StorageContext first = new StorageContext();
+        first.getScanStats().addCoprocessorRows(1000, 10);
+        first.getScanStats().addGets(5, 3);
+        StorageContext second = new StorageContext();
+        second.getScanStats().addCoprocessorRows(500, 50);
+        second.getScanStats().addCachedSegmentScan();
+
+        Map<String, Long> metrics = new LinkedHashMap<String, Long>();
+        QueryService.addScanMetrics(metrics, first);
+        QueryService.addScanMetrics(metrics, second);
+        Assert.assertEquals(Long.valueOf(1500), metrics.get("coprocessorInputRows"));
+        Assert.assertEquals(Long.valueOf(60), metrics.get("coprocessorOutputRows"));
+        Assert.assertEquals(Long.valueOf(5), metrics.get("gets"));
+        Assert.assertEquals(Long.valueOf(3), metrics.get("getHits"));
+        Assert.assertEquals(Long.valueOf(1), metrics.get("cachedSegmentScans"));
+        Assert.assertEquals(Long.valueOf(0), metrics.get("segmentsSkippedByBloomFilter"));
+    }
 }
@@ -24,6 +24,7 @@ import java.util.List;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.metadata.model.MeasureDesc;
 import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.hbase.HBaseScanStats;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
@@ -43,17 +44,27 @@ public class StorageContext {
     private String connUrl;
     private int threshold;
     private int limit;
+    private boolean hasLimit;
     private boolean hasSort;
+    private int sortColumnCount;
     private List<MeasureDesc> sortMeasures;
     private List<OrderEnum> sortOrders;
+    private List<TblColRef> sortDimensions;
+    private List<OrderEnum> sortDimensionOrders;
+    private List<Boolean> sortDimensionNullsFirst;
     private boolean acceptPartialResult;
     private BiMap<TblColRef, String> aliasMap;
 
     private boolean exactAggregation;
     private boolean enableLimit;
     private boolean enableCoprocessor;
+    private boolean enableTopN;
+    private boolean enableSortedMerge;
+    private boolean hasPostAggregationFilter;
 
     private long totalScanCount;
+    private int segmentsSkippedByBloomFilter;
+    private final HBaseScanStats scanStats = new HBaseScanStats();
     private Cuboid cuboid;
     private boolean partialResultReturned;
 
@@ -64,12 +75,19 @@ public class StorageContext {
         this.cuboid = null;
         this.aliasMap = HashBiMap.create();
         this.hasSort = false;
+        this.sortColumnCount = 0;
         this.sortOrders = new ArrayList<OrderEnum>();
         this.sortMeasures = new ArrayList<MeasureDesc>();
+        this.sortDimensions = new ArrayList<TblColRef>();
+        this.sortDimensionOrders = new ArrayList<OrderEnum>();
+        this.sortDimensionNullsFirst = new ArrayList<Boolean>();
 
         this.exactAggregation = false;
         this.enableLimit = false;
         this.enableCoprocessor = false;
+        this.enableTopN = false;
+        this.enableSortedMerge = false;
+        this.hasPostAggregationFilter = false;
 
         this.acceptPartialResult = false;
         this.partialResultReturned = false;
@@ -109,6 +127,14 @@ public class StorageContext {
 
     public void setLimit(int l) {
         this.limit = l;
+        this.hasLimit = true;
+    }
+
+    /**
+     * Whether the query has a LIMIT, otherwise getLimit() is a default cap
+     */
+    public boolean hasLimit() {
+        return this.hasLimit;
     }
 
     public void enableLimit() {
@@ -134,14 +160,66 @@ public class StorageContext {
         }
     }
 
+    public void addSort(TblColRef dimension, OrderEnum order, boolean nullsFirst) {
+        if (dimension != null) {
+            sortDimensions.add(dimension);
+            sortDimensionOrders.add(order);
+            sortDimensionNullsFirst.add(nullsFirst);
+        }
+    }
+
     public void markSort() {
         this.hasSort = true;
+        this.sortColumnCount++;
     }
 
     public boolean hasSort() {
         return this.hasSort;
     }
 
+    /**
+     * Whether the query sorts on measures only, i.e. every sort column was added by addSort()
+     */
+    public boolean isSortOnMeasuresOnly() {
+        return this.hasSort && sortMeasures.size() == sortColumnCount;
+    }
+
+    public List<MeasureDesc> getSortMeasures() {
+        return sortMeasures;
+    }
+
+    public List<OrderEnum> getSortOrders() {
+        return sortOrders;
+    }
+
+    /**
+     * Whether the query sorts on columns only, i.e. every sort column was added by addSort(TblColRef, OrderEnum, boolean)
+     */
+    public boolean isSortOnDimensionsOnly() {
+        return this.hasSort && sortDimensions.size() == sortColumnCount;
+    }
+
+    public List<TblColRef> getSortDimensions() {
+        return sortDimensions;
+    }
+
+    public List<OrderEnum> getSortDimensionOrders() {
+        return sortDimensionOrders;
+    }
+
+    public List<Boolean> getSortDimensionNullsFirst() {
+        return sortDimensionNullsFirst;
+    }
+
+    // a HAVING clause, evaluated by query engine after aggregation
+    public void markPostAggregationFilter() {
+        this.hasPostAggregationFilter = true;
+    }
+
+    public boolean hasPostAggregationFilter() {
+        return this.hasPostAggregationFilter;
+    }
+
     public void setCuboid(Cuboid c) {
         cuboid = c;
     }
@@ -158,6 +236,18 @@ public class StorageContext {
         this.totalScanCount = totalScanCount;
     }
 
+    public void addSegmentSkippedByBloomFilter() {
+        segmentsSkippedByBloomFilter++;
+    }
+
+    public int getSegmentsSkippedByBloomFilter() {
+        return segmentsSkippedByBloomFilter;
+    }
+
+    public HBaseScanStats getScanStats() {
+        return scanStats;
+    }
+
     public boolean isAcceptPartialResult() {
         return acceptPartialResult;
     }
@@ -190,4 +280,27 @@ public class StorageContext {
         return this.enableCoprocessor;
     }
 
+    public void enableTopN() {
+        this.enableTopN = true;
+    }
+
+    /**
+     * Whether coprocessor may return only the top groups by sort measure and limit
+     */
+    public boolean isTopNEnabled() {
+        return this.enableTopN;
+    }
+
+    public void enableSortedMerge() {
+        this.enableSortedMerge = true;
+    }
+
+    /**
+     * Whether segments return rows in sort column order, merged rather than
+     * concatenated, and storage stops after the limit
+     */
+    public boolean isSortedMergeEnabled() {
+        return this.enableSortedMerge;
+    }
+
 }
@@ -102,7 +102,7 @@ public class ColumnValueRange {
     }
 
     public boolean satisfyAll() {
-        return beginValue == null && endValue == null; // the NEQ case
+        return equalValues == null && beginValue == null && endValue == null; // the NEQ case
     }
 
     public boolean satisfyNone() {
@@ -156,7 +156,7 @@ public class ColumnValueRange {
                 result.add(v);
             }
         }
-        return equalValues;
+        return result;
     }
 
     private boolean between(String v, String beginValue, String endValue) {
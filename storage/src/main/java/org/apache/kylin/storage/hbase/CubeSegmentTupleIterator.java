@@ -20,16 +20,18 @@ package org.apache.kylin.storage.hbase;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
+import org.apache.kylin.storage.hbase.coprocessor.observer.ObserverCostModel;
 import org.apache.kylin.storage.hbase.coprocessor.observer.ObserverEnabler;
 
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HConnection;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.Result;
@@ -48,22 +50,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.kylin.common.persistence.StorageException;
-import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.SplittedBytes;
 import org.apache.kylin.cube.CubeInstance;
-import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.common.RowKeySplitter;
 import org.apache.kylin.cube.cuboid.Cuboid;
-import org.apache.kylin.cube.kv.RowKeyDecoder;
+import org.apache.kylin.cube.kv.RowKeyColumnIO;
 import org.apache.kylin.cube.kv.RowValueDecoder;
 import org.apache.kylin.cube.model.HBaseColumnDesc;
-import org.apache.kylin.metadata.model.MeasureDesc;
-import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.metadata.filter.TupleFilter;
 import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.storage.tuple.DimensionValueCache;
 import org.apache.kylin.storage.tuple.Tuple;
 import org.apache.kylin.storage.tuple.Tuple.IDerivedColumnFiller;
 
+import com.google.common.collect.Lists;
+
 /**
  * @author xjiang
  * 
@@ -80,18 +83,36 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
     private final TupleFilter filter;
     private final Collection<TblColRef> groupBy;
     private final Collection<RowValueDecoder> rowValueDecoders;
+    // hbase family and qualifier of each row value decoder, in iteration order
+    private final byte[][] measureFamilies;
+    private final byte[][] measureQualifiers;
     private final StorageContext context;
     private final String tableName;
     private final HTableInterface table;
-    private final RowKeyDecoder rowKeyDecoder;
+    private final RowKeySplitter rowKeySplitter;
+    private final RowKeyColumnIO rowKeyColumnIO;
     private final Iterator<HBaseKeyRange> rangeIterator;
+    private final int prefetchDepth;
+    private final int prefetchThreads;
 
+    private Cuboid cuboid;
     private Scan scan;
     private ResultScanner scanner;
     private Iterator<Result> resultIterator;
+    private CuboidScanInfo scanInfo;
+    private DimensionValueCache[] dimensionValueCaches;
+    private List<TblColRef> rowColumns;
+    // whether each row key column is queried, and whether its value is decoded to string, null if not
+    private boolean[] isDimension;
+    private boolean[] decodeValue;
+    private String[] rowValues;
+    private List<String> rowValueList;
+    private List<IDerivedColumnFiller> derivedColumnFillers;
     private TupleInfo tupleInfo;
     private Tuple tuple;
     private int scanCount;
+    private Iterator<Object[]> cachedIterator;
+    private SegmentResultCache.Recording cacheRecording;
 
     public CubeSegmentTupleIterator(CubeSegment cubeSeg, Collection<HBaseKeyRange> keyRanges, HConnection conn, Collection<TblColRef> dimensions, TupleFilter filter, Collection<TblColRef> groupBy, Collection<RowValueDecoder> rowValueDecoders, StorageContext context) {
         this.cube = cubeSeg.getCubeInstance();
@@ -100,11 +121,42 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
         this.filter = filter;
         this.groupBy = groupBy;
         this.rowValueDecoders = rowValueDecoders;
+        this.measureFamilies = new byte[rowValueDecoders.size()][];
+        this.measureQualifiers = new byte[rowValueDecoders.size()][];
+        int m = 0;
+        for (RowValueDecoder valueDecoder : rowValueDecoders) {
+            HBaseColumnDesc hbaseColumn = valueDecoder.getHBaseColumn();
+            measureFamilies[m] = Bytes.toBytes(hbaseColumn.getColumnFamilyName());
+            measureQualifiers[m] = Bytes.toBytes(hbaseColumn.getQualifier());
+            m++;
+        }
         this.context = context;
         this.tableName = cubeSeg.getStorageLocationIdentifier();
-        this.rowKeyDecoder = new RowKeyDecoder(this.cubeSeg);
+        this.rowKeySplitter = new RowKeySplitter(this.cubeSeg, 65, 255);
+        this.rowKeyColumnIO = new RowKeyColumnIO(this.cubeSeg);
+        this.prefetchDepth = cube.getConfig().getScanPrefetchQueueDepth();
+        this.prefetchThreads = cube.getConfig().getScanPrefetchThreadCount();
         this.scanCount = 0;
 
+        String signature = null;
+        if (!keyRanges.isEmpty() && SegmentResultCache.isCacheable(cubeSeg)) {
+            signature = SegmentResultCache.getSignature(keyRanges, dimensions, filter, groupBy, rowValueDecoders, context);
+        }
+        List<Object[]> cached = signature == null ? null : SegmentResultCache.get(cubeSeg, signature);
+        if (cached != null) {
+            logger.info("Serve " + cached.size() + " tuples of segment " + cubeSeg.getName() + " from result cache");
+            context.getScanStats().addCachedSegmentScan();
+            this.table = null;
+            this.rangeIterator = Collections.<HBaseKeyRange> emptyList().iterator();
+            this.resultIterator = Collections.<Result> emptyList().iterator();
+            setCuboid(keyRanges.iterator().next().getCuboid());
+            this.cachedIterator = cached.iterator();
+            return;
+        }
+
+        if (signature != null) {
+            this.cacheRecording = SegmentResultCache.record(cubeSeg, signature);
+        }
         try {
             this.table = conn.getTable(tableName);
         } catch (Throwable t) {
@@ -121,14 +173,6 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
     }
 
     private void closeScanner() {
-        if (logger.isDebugEnabled() && scan != null) {
-            logger.debug("Scan " + scan.toString());
-            byte[] metricsBytes = scan.getAttribute(Scan.SCAN_ATTRIBUTES_METRICS_DATA);
-            if (metricsBytes != null) {
-                ScanMetrics scanMetrics = ProtobufUtil.toScanMetrics(metricsBytes);
-                logger.debug("HBase Metrics: " + "count={}, ms={}, bytes={}, remote_bytes={}, regions={}, not_serving_region={}, rpc={}, rpc_retries={}, remote_rpc={}, remote_rpc_retries={}", new Object[] { scanCount, scanMetrics.sumOfMillisSecBetweenNexts, scanMetrics.countOfBytesInResults, scanMetrics.countOfBytesInRemoteResults, scanMetrics.countOfRegions, scanMetrics.countOfNSRE, scanMetrics.countOfRPCcalls, scanMetrics.countOfRPCRetries, scanMetrics.countOfRemoteRPCcalls, scanMetrics.countOfRemoteRPCRetries });
-            }
-        }
         try {
             if (scanner != null) {
                 scanner.close();
@@ -137,6 +181,19 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
         } catch (Throwable t) {
             throw new StorageException("Error when close scanner for table " + tableName, t);
         }
+        // scan metrics are complete once the scanner is closed
+        if (scan != null) {
+            byte[] metricsBytes = scan.getAttribute(Scan.SCAN_ATTRIBUTES_METRICS_DATA);
+            if (metricsBytes != null) {
+                ScanMetrics scanMetrics = ProtobufUtil.toScanMetrics(metricsBytes);
+                context.getScanStats().add(scanMetrics);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Scan " + scan.toString());
+                    logger.debug("HBase Metrics: " + "count={}, ms={}, bytes={}, remote_bytes={}, regions={}, not_serving_region={}, rpc={}, rpc_retries={}, remote_rpc={}, remote_rpc_retries={}", new Object[] { scanCount, scanMetrics.sumOfMillisSecBetweenNexts, scanMetrics.countOfBytesInResults, scanMetrics.countOfBytesInRemoteResults, scanMetrics.countOfRegions, scanMetrics.countOfNSRE, scanMetrics.countOfRPCcalls, scanMetrics.countOfRPCRetries, scanMetrics.countOfRemoteRPCcalls, scanMetrics.countOfRemoteRPCRetries });
+                }
+            }
+            scan = null;
+        }
     }
 
     private void closeTable() {
@@ -151,11 +208,28 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
 
     @Override
     public boolean hasNext() {
-        return rangeIterator.hasNext() || resultIterator.hasNext();
+        if (cachedIterator != null) {
+            return cachedIterator.hasNext();
+        }
+        boolean hasNext = rangeIterator.hasNext() || resultIterator.hasNext();
+        // only a fully read scan goes to the cache, not one cut off by limit
+        if (!hasNext && cacheRecording != null) {
+            cacheRecording.finish();
+            cacheRecording = null;
+        }
+        return hasNext;
     }
 
     @Override
     public Tuple next() {
+        if (cachedIterator != null) {
+            if (!cachedIterator.hasNext()) {
+                return null;
+            }
+            Tuple.copyValues(cachedIterator.next(), this.tuple.getAllValues());
+            return this.tuple;
+        }
+
         // get next result from hbase
         Result result = null;
         while (hasNext()) {
@@ -170,12 +244,19 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
         if (result == null) {
             return null;
         }
+        if (context.isCoprocessorEnabled()) {
+            // top-N output is not the aggregation ratio
+            ObserverCostModel.collectStats(cubeSeg, cuboid, groupBy, result, context.getScanStats(), context.isTopNEnabled() == false);
+        }
         // translate result to tuple
         try {
             translateResult(result, this.tuple);
         } catch (IOException e) {
             throw new IllegalStateException("Can't translate result " + result, e);
         }
+        if (cacheRecording != null) {
+            cacheRecording.add(this.tuple.getAllValues());
+        }
         return this.tuple;
     }
 
@@ -183,8 +264,7 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
         if (this.rangeIterator.hasNext()) {
             closeScanner();
             HBaseKeyRange keyRange = this.rangeIterator.next();
-            this.tupleInfo = buildTupleInfo(keyRange.getCuboid());
-            this.tuple = new Tuple(this.tupleInfo);
+            setCuboid(keyRange.getCuboid());
 
             this.resultIterator = doScan(keyRange);
         } else {
@@ -196,11 +276,20 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
 
         Iterator<Result> iter = null;
         try {
+            // gets skip the coprocessor filter, which limit and sorted merge count on to stop early
+            if (keyRange.getExactKeys() != null && context.isLimitEnabled() == false && context.isSortedMergeEnabled() == false) {
+                return getExactKeys(keyRange);
+            }
+
             scan = buildScan(keyRange);
             applyFuzzyFilter(scan, keyRange);
             logScan(keyRange);
 
             scanner = ObserverEnabler.scanWithCoprocessorIfBeneficial(cubeSeg, keyRange.getCuboid(), filter, groupBy, rowValueDecoders, context, table, scan);
+            if (prefetchDepth > 0) {
+                // overlap the next RPC round trip with decoding of the current batch
+                scanner = PrefetchResultScanner.prefetch(scanner, SCAN_CACHE, prefetchDepth, prefetchThreads);
+            }
 
             iter = scanner.iterator();
         } catch (Throwable t) {
@@ -210,6 +299,32 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
         return iter;
     }
 
+    // every row key column is bound, fetch the rows by key in one batch, which the client groups by region server
+    private Iterator<Result> getExactKeys(HBaseKeyRange keyRange) throws IOException {
+        List<byte[]> keys = keyRange.getExactKeys();
+        logger.info("Get " + keys.size() + " row keys of cuboid " + keyRange.getCuboid().getId() + " from hbase table " + tableName);
+
+        List<Get> gets = Lists.newArrayListWithCapacity(keys.size());
+        for (byte[] key : keys) {
+            Get get = new Get(key);
+            get.setCacheBlocks(true);
+            for (int i = 0; i < measureFamilies.length; i++) {
+                get.addColumn(measureFamilies[i], measureQualifiers[i]);
+            }
+            gets.add(get);
+        }
+        Result[] results = gets.isEmpty() ? new Result[0] : table.get(gets);
+
+        List<Result> found = Lists.newArrayListWithCapacity(results.length);
+        for (Result result : results) {
+            if (result != null && !result.isEmpty()) {
+                found.add(result);
+            }
+        }
+        context.getScanStats().addGets(gets.size(), found.size());
+        return found.iterator();
+    }
+
     private void logScan(HBaseKeyRange keyRange) {
         StringBuilder info = new StringBuilder();
         info.append("\nScan hbase table ").append(tableName).append(": ");
@@ -241,11 +356,8 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
         scan.setCaching(SCAN_CACHE);
         scan.setCacheBlocks(true);
         scan.setAttribute(Scan.SCAN_ATTRIBUTES_METRICS_ENABLE, Bytes.toBytes(Boolean.TRUE));
-        for (RowValueDecoder valueDecoder : this.rowValueDecoders) {
-            HBaseColumnDesc hbaseColumn = valueDecoder.getHBaseColumn();
-            byte[] byteFamily = Bytes.toBytes(hbaseColumn.getColumnFamilyName());
-            byte[] byteQualifier = Bytes.toBytes(hbaseColumn.getQualifier());
-            scan.addColumn(byteFamily, byteQualifier);
+        for (int i = 0; i < measureFamilies.length; i++) {
+            scan.addColumn(measureFamilies[i], measureQualifiers[i]);
         }
         scan.setStartRow(keyRange.getStartKey());
         scan.setStopRow(keyRange.getStopKey());
@@ -270,86 +382,72 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
         }
     }
 
-    private TupleInfo buildTupleInfo(Cuboid cuboid) {
-        TupleInfo info = new TupleInfo();
-        int index = 0;
-        rowKeyDecoder.setCuboid(cuboid);
-        List<TblColRef> rowColumns = rowKeyDecoder.getColumns();
-        List<String> colNames = rowKeyDecoder.getNames(context.getAliasMap());
-        for (int i = 0; i < rowColumns.size(); i++) {
-            TblColRef column = rowColumns.get(i);
-            if (!dimensions.contains(column)) {
-                continue;
-            }
-            // add normal column
-            info.setField(colNames.get(i), rowColumns.get(i), rowColumns.get(i).getType().getName(), index++);
+    private void setCuboid(Cuboid cuboid) {
+        // ranges of a segment mostly share the cuboid
+        if (this.cuboid != null && this.cuboid.getId() == cuboid.getId()) {
+            return;
         }
-
-        // derived columns and filler
-        Map<Array<TblColRef>, List<DeriveInfo>> hostToDerivedInfo = cubeSeg.getCubeDesc().getHostToDerivedInfo(rowColumns, null);
-        for (Entry<Array<TblColRef>, List<DeriveInfo>> entry : hostToDerivedInfo.entrySet()) {
-            TblColRef[] hostCols = entry.getKey().data;
-            for (DeriveInfo deriveInfo : entry.getValue()) {
-                // mark name for each derived field
-                for (TblColRef derivedCol : deriveInfo.columns) {
-                    String derivedField = getFieldName(derivedCol, context.getAliasMap());
-                    info.setField(derivedField, derivedCol, derivedCol.getType().getName(), index++);
-                }
-                // add filler
-                info.addDerivedColumnFiller(Tuple.newDerivedColumnFiller(rowColumns, hostCols, deriveInfo, info, CubeManager.getInstance(this.cube.getConfig()), cubeSeg));
-            }
+        this.cuboid = cuboid;
+        this.scanInfo = CuboidScanInfo.get(cubeSeg, cuboid, dimensions, rowValueDecoders, context.getAliasMap());
+        this.tupleInfo = scanInfo.getTupleInfo();
+        this.dimensionValueCaches = scanInfo.getDimensionValueCaches(cubeSeg);
+        this.derivedColumnFillers = scanInfo.getDerivedColumnFillers(cubeSeg);
+        this.tuple = new Tuple(this.tupleInfo);
+
+        this.rowColumns = cuboid.getColumns();
+        this.isDimension = new boolean[rowColumns.size()];
+        this.decodeValue = new boolean[rowColumns.size()];
+        for (int i = 0; i < rowColumns.size(); i++) {
+            isDimension[i] = tupleInfo.hasColumn(rowColumns.get(i));
+            // the ID cache serves the queried dimensions of a dictionary
+            decodeValue[i] = isDimension[i] && dimensionValueCaches[i] == null;
         }
-
-        for (RowValueDecoder rowValueDecoder : this.rowValueDecoders) {
-            List<String> names = rowValueDecoder.getNames();
-            MeasureDesc[] measures = rowValueDecoder.getMeasures();
-            for (int i = 0; i < measures.length; i++) {
-                String dataType = measures[i].getFunction().getSQLType();
-                info.setField(names.get(i), null, dataType, index++);
+        // hosts filled by dictionary ID are not decoded, only those read as strings
+        for (IDerivedColumnFiller filler : derivedColumnFillers) {
+            for (int index : filler.getRowValueIndexes()) {
+                decodeValue[index] = true;
             }
         }
-        return info;
-    }
-
-    private String getFieldName(TblColRef column, Map<TblColRef, String> aliasMap) {
-        String name = null;
-        if (aliasMap != null) {
-            name = aliasMap.get(column);
-        }
-        if (name == null) {
-            name = column.getName();
-        }
-        return name;
+        this.rowValues = new String[rowColumns.size()];
+        this.rowValueList = Arrays.asList(rowValues);
     }
 
     private void translateResult(Result res, Tuple tuple) throws IOException {
         // groups
         byte[] rowkey = res.getRow();
-        rowKeyDecoder.decode(rowkey);
-        List<TblColRef> columns = rowKeyDecoder.getColumns();
-        List<String> dimensionNames = rowKeyDecoder.getNames(context.getAliasMap());
-        List<String> dimensionValues = rowKeyDecoder.getValues();
-        for (int i = 0; i < dimensionNames.size(); i++) {
-            TblColRef column = columns.get(i);
-            if (!tuple.hasColumn(column)) {
+        rowKeySplitter.split(rowkey, rowkey.length);
+        SplittedBytes[] splits = rowKeySplitter.getSplitBuffers();
+        List<String> dimensionNames = scanInfo.getDimensionNames();
+        for (int i = 0; i < rowValues.length; i++) {
+            SplittedBytes split = splits[i + 1]; // the first split is cuboid id
+            // a dictionary ID served by the cache never becomes a string, it is converted once on a cache miss
+            rowValues[i] = decodeValue[i] ? rowKeyColumnIO.readColumnString(rowColumns.get(i), split.value, split.length) : null;
+            if (!isDimension[i]) {
                 continue;
             }
-            tuple.setDimensionValue(dimensionNames.get(i), dimensionValues.get(i));
+            DimensionValueCache valueCache = dimensionValueCaches[i];
+            if (valueCache != null) {
+                tuple.setDimensionTypedValue(dimensionNames.get(i), valueCache.getValue(split.value, split.length));
+            } else {
+                tuple.setDimensionValue(dimensionNames.get(i), rowValues[i]);
+            }
         }
 
         // derived
-        for (IDerivedColumnFiller filler : tupleInfo.getDerivedColumnFillers()) {
-            filler.fillDerivedColumns(dimensionValues, tuple);
+        for (IDerivedColumnFiller filler : derivedColumnFillers) {
+            filler.fillDerivedColumns(rowValueList, splits, tuple);
         }
 
         // aggregations
+        int m = 0;
         for (RowValueDecoder rowValueDecoder : this.rowValueDecoders) {
-            HBaseColumnDesc hbaseColumn = rowValueDecoder.getHBaseColumn();
-            String columnFamily = hbaseColumn.getColumnFamilyName();
-            String qualifier = hbaseColumn.getQualifier();
-            // FIXME: avoidable bytes array creation, why not use res.getValueAsByteBuffer directly?
-            byte[] valueBytes = res.getValue(Bytes.toBytes(columnFamily), Bytes.toBytes(qualifier));
-            rowValueDecoder.decode(valueBytes);
+            // decode in place from the cell, only the projected measures
+            Cell cell = res.getColumnLatestCell(measureFamilies[m], measureQualifiers[m]);
+            if (cell == null) {
+                throw new IllegalStateException("No value of " + rowValueDecoder.getHBaseColumn() + " in row " + Bytes.toStringBinary(rowkey));
+            }
+            m++;
+            rowValueDecoder.decodeProjected(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
             List<String> measureNames = rowValueDecoder.getNames();
             Object[] measureValues = rowValueDecoder.getValues();
             BitSet projectionIndex = rowValueDecoder.getProjectionIndex();
@@ -64,6 +64,7 @@ public class CubeStorageEngine implements IStorageEngine {
     private static final Logger logger = LoggerFactory.getLogger(CubeStorageEngine.class);
 
     private static final int MERGE_KEYRANGE_THRESHOLD = 100;
+    private static final int MERGE_KEYRANGE_TARGET = 20;
     private static final long MEM_BUDGET_PER_QUERY = 3L * 1024 * 1024 * 1024; // 3G
 
     private final CubeInstance cubeInstance;
@@ -119,16 +120,26 @@ public class CubeStorageEngine implements IStorageEngine {
         TupleFilter flatFilter = flattenToOrAndFilter(filterD);
 
         // translate filter into segment scan ranges
-        List<HBaseKeyRange> scans = buildScanRanges(flatFilter, dimensionsD);
+        List<HBaseKeyRange> scans = buildScanRanges(flatFilter, dimensionsD, context);
 
         // check involved measures, build value decoder for each each family:column
         List<RowValueDecoder> valueDecoders = translateAggregation(cubeDesc.getHBaseMapping(), metrics, context);
 
         setThreshold(dimensionsD, valueDecoders, context); // set cautious threshold to prevent out of memory
-        setCoprocessor(groupsCopD, valueDecoders, context); // enable coprocessor if beneficial
+        setCoprocessor(groupsCopD, valueDecoders, scans, context); // enable coprocessor if beneficial
         setLimit(filter, context);
+        setTopN(filter, groups, groupsD, groupsCopD, scans, context);
+        setSortedMerge(filter, cuboid, singleValuesD, context);
 
         HConnection conn = HBaseConnection.get(context.getConnUrl());
+        if (cubeInstance.getConfig().isParallelScanEnabled() && context.isSortedMergeEnabled() == false) {
+            // split ranges along regions, so a big segment is scanned by all its region servers at once
+            List<List<HBaseKeyRange>> scanUnits = RegionKeyRangeSplitter.splitByRegions(conn, scans);
+            if (scanUnits.size() > 1) {
+                boolean ordered = context.isExactAggregation();
+                return new ParallelHBaseTupleIterator(conn, scanUnits, ordered, cubeInstance, dimensionsD, filterD, groupsCopD, valueDecoders, context);
+            }
+        }
         return new SerializedHBaseTupleIterator(conn, scans, cubeInstance, dimensionsD, filterD, groupsCopD, valueDecoders, context);
     }
 
@@ -377,7 +388,7 @@ public class CubeStorageEngine implements IStorageEngine {
         return flatFilter;
     }
 
-    private List<HBaseKeyRange> buildScanRanges(TupleFilter flatFilter, Collection<TblColRef> dimensionColumns) {
+    private List<HBaseKeyRange> buildScanRanges(TupleFilter flatFilter, Collection<TblColRef> dimensionColumns, StorageContext context) {
 
         List<HBaseKeyRange> result = Lists.newArrayList();
 
@@ -390,6 +401,15 @@ public class CubeStorageEngine implements IStorageEngine {
             if (orAndDimRanges == null) { // has conflict
                 continue;
             }
+            if (orAndDimRanges.isEmpty()) {
+                logger.info("Segment " + cubeSeg.getName() + " is skipped, no value in the segment can match the filter");
+                continue;
+            }
+            if (andMergeBloomFilters(orAndDimRanges, cubeSeg)) {
+                logger.info("Segment " + cubeSeg.getName() + " is skipped, its Bloom filters exclude all filtered values");
+                context.addSegmentSkippedByBloomFilter();
+                continue;
+            }
 
             List<HBaseKeyRange> scanRanges = Lists.newArrayListWithCapacity(orAndDimRanges.size());
             for (Collection<ColumnValueRange> andDimRanges : orAndDimRanges) {
@@ -421,6 +441,7 @@ public class CubeStorageEngine implements IStorageEngine {
             }
 
             Collection<ColumnValueRange> andRanges = translateToAndDimRanges(andFilter.getChildren(), cubeSegment);
+            andMergeZoneMaps(andRanges, cubeSegment);
 
             result.add(andRanges);
         }
@@ -475,6 +496,42 @@ public class CubeStorageEngine implements IStorageEngine {
         return rangeMap.values();
     }
 
+    // the segment has no value out of its zone maps, narrow the ranges accordingly;
+    // a range becomes always false if it misses the segment, see preprocessConstantConditions()
+    private void andMergeZoneMaps(Collection<ColumnValueRange> andRanges, CubeSegment cubeSegment) {
+        for (ColumnValueRange range : andRanges) {
+            if (range.satisfyAll())
+                continue;
+
+            String[] zoneMap = cubeSegment.getZoneMap(range.getColumn());
+            if (zoneMap != null) {
+                range.andMerge(new ColumnValueRange(range.getColumn(), zoneMap[0], zoneMap[1], null));
+            }
+        }
+    }
+
+    // narrow equal values to those might be in the segment, returns true if no branch is left
+    static boolean andMergeBloomFilters(List<Collection<ColumnValueRange>> orAndDimRanges, CubeSegment cubeSegment) {
+        Iterator<Collection<ColumnValueRange>> iterator = orAndDimRanges.iterator();
+        while (iterator.hasNext()) {
+            for (ColumnValueRange range : iterator.next()) {
+                if (range.getEqualValues() == null)
+                    continue;
+
+                Set<String> values = SegmentBloomFilterCache.mightContain(cubeSegment, range.getColumn(), range.getEqualValues());
+                if (values == null)
+                    continue;
+
+                range.andMerge(new ColumnValueRange(range.getColumn(), values, FilterOperatorEnum.IN));
+                if (range.satisfyNone()) {
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+        return orAndDimRanges.isEmpty();
+    }
+
     private void andMerge(ColumnValueRange range, Map<TblColRef, ColumnValueRange> rangeMap) {
         ColumnValueRange columnRange = rangeMap.get(range.getColumn());
         if (columnRange == null) {
@@ -523,7 +580,7 @@ public class CubeStorageEngine implements IStorageEngine {
         return mergedRanges;
     }
 
-    private HBaseKeyRange mergeKeyRange(List<HBaseKeyRange> keyRanges, int from, int to) {
+    static HBaseKeyRange mergeKeyRange(List<HBaseKeyRange> keyRanges, int from, int to) {
         HBaseKeyRange keyRange = keyRanges.get(from);
         int mergeSize = to - from + 1;
         if (mergeSize > 1) {
@@ -535,13 +592,19 @@ public class CubeStorageEngine implements IStorageEngine {
             long partitionColumnStartDate = Long.MAX_VALUE;
             long partitionColumnEndDate = 0;
             List<Pair<byte[], byte[]>> newFuzzyKeys = new ArrayList<Pair<byte[], byte[]>>(mergeSize);
+            List<byte[]> newExactKeys = new ArrayList<byte[]>();
             List<Collection<ColumnValueRange>> newFlatOrAndFilter = Lists.newLinkedList();
 
             boolean hasNonFuzzyRange = false;
+            boolean hasNonExactRange = false;
             for (int k = from; k <= to; k++) {
                 HBaseKeyRange nextRange = keyRanges.get(k);
                 hasNonFuzzyRange = hasNonFuzzyRange || nextRange.getFuzzyKeys().isEmpty();
                 newFuzzyKeys.addAll(nextRange.getFuzzyKeys());
+                hasNonExactRange = hasNonExactRange || nextRange.getExactKeys() == null;
+                if (!hasNonExactRange) {
+                    newExactKeys.addAll(nextRange.getExactKeys());
+                }
                 newFlatOrAndFilter.addAll(nextRange.getFlatOrAndFilter());
                 if (Bytes.compareTo(stopKey, nextRange.getStopKey()) < 0) {
                     stopKey = nextRange.getStopKey();
@@ -559,21 +622,49 @@ public class CubeStorageEngine implements IStorageEngine {
                 newFuzzyKeys.clear();
             }
 
+            // likewise any range to scan makes the merged range a scan
+            if (hasNonExactRange || newExactKeys.size() > cubeSegment.getCubeInstance().getConfig().getExactKeyLookupMaxKeys()) {
+                newExactKeys = null;
+            } else {
+                newExactKeys = dedupSorted(newExactKeys);
+            }
+
             partitionColumnStartDate = (partitionColumnStartDate == Long.MAX_VALUE) ? 0 : partitionColumnStartDate;
             partitionColumnEndDate = (partitionColumnEndDate == 0) ? Long.MAX_VALUE : partitionColumnEndDate;
-            keyRange = new HBaseKeyRange(cubeSegment, cuboid, startKey, stopKey, newFuzzyKeys, newFlatOrAndFilter, partitionColumnStartDate, partitionColumnEndDate);
+            keyRange = new HBaseKeyRange(cubeSegment, cuboid, startKey, stopKey, newFuzzyKeys, newExactKeys, newFlatOrAndFilter, partitionColumnStartDate, partitionColumnEndDate);
         }
         return keyRange;
     }
 
+    // overlapping ranges may bind the same keys
+    private static List<byte[]> dedupSorted(List<byte[]> keys) {
+        Collections.sort(keys, Bytes.BYTES_COMPARATOR);
+        List<byte[]> result = new ArrayList<byte[]>(keys.size());
+        for (byte[] key : keys) {
+            if (result.isEmpty() || Bytes.compareTo(result.get(result.size() - 1), key) != 0) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
     private List<HBaseKeyRange> mergeTooManyRanges(List<HBaseKeyRange> keyRanges) {
         if (keyRanges.size() < MERGE_KEYRANGE_THRESHOLD) {
             return keyRanges;
         }
-        // TODO: check the distance between range. and merge the large distance range
+        // merge across the smallest gaps, ranges far apart are still scanned separately
+        keyRanges = Lists.newArrayList(keyRanges);
+        HBaseKeyRange first = keyRanges.get(0);
+        boolean[] mergeWithNext = new KeyRangeGapMerger(first.getCubeSegment(), first.getCuboid()).planMerge(keyRanges, MERGE_KEYRANGE_TARGET);
+
         List<HBaseKeyRange> mergedRanges = new LinkedList<HBaseKeyRange>();
-        HBaseKeyRange mergedRange = mergeKeyRange(keyRanges, 0, keyRanges.size() - 1);
-        mergedRanges.add(mergedRange);
+        int from = 0;
+        for (int i = 0; i < keyRanges.size(); i++) {
+            if (i == keyRanges.size() - 1 || mergeWithNext[i] == false) {
+                mergedRanges.add(mergeKeyRange(keyRanges, from, i));
+                from = i + 1;
+            }
+        }
         return mergedRanges;
     }
 
@@ -618,8 +709,62 @@ public class CubeStorageEngine implements IStorageEngine {
         }
     }
 
-    private void setCoprocessor(Set<TblColRef> groupsCopD, List<RowValueDecoder> valueDecoders, StorageContext context) {
-        ObserverEnabler.enableCoprocessorIfBeneficial(cubeInstance, groupsCopD, valueDecoders, context);
+    private void setTopN(TupleFilter filter, Collection<TblColRef> groups, Set<TblColRef> groupsD, Set<TblColRef> groupsCopD, List<HBaseKeyRange> scans, StorageContext context) {
+        // top groups picked by coprocessor are exact only if nothing changes the groups or their
+        // order afterwards: no further filtering, no derived re-grouping, no merge across segments
+        boolean goodSort = context.isSortOnMeasuresOnly() && context.getSortMeasures().size() == 1 && context.hasPostAggregationFilter() == false;
+        boolean goodLimit = context.getLimit() <= cubeInstance.getConfig().getCoprocessorTopNMaxLimit();
+        boolean goodFilter = filter == null || TupleFilter.isEvaluableRecursively(filter);
+        boolean goodGroups = groupsD.equals(Sets.newHashSet(groups)) && groupsCopD.equals(groupsD);
+        Set<CubeSegment> segments = Sets.newHashSet();
+        for (HBaseKeyRange scan : scans) {
+            segments.add(scan.getCubeSegment());
+        }
+        boolean goodSegments = segments.size() == 1;
+        if (context.isCoprocessorEnabled() && goodSort && goodLimit && goodFilter && goodGroups && goodSegments) {
+            logger.info("Enable coprocessor top " + context.getLimit() + " by " + context.getSortMeasures().get(0).getName());
+            context.enableTopN();
+        }
+    }
+
+    void setSortedMerge(TupleFilter filter, Cuboid cuboid, Set<TblColRef> singleValuesD, StorageContext context) {
+        // like limit, every row from storage has to be a final group that no one filters out later
+        boolean goodAggr = context.isExactAggregation() && context.hasPostAggregationFilter() == false;
+        boolean goodFilter = filter == null || (TupleFilter.isEvaluableRecursively(filter) && context.isCoprocessorEnabled());
+        // null IDs are the greatest in dictionaries, SortedMergeTupleIterator puts nulls last too
+        boolean goodSort = context.hasLimit() && context.isSortOnDimensionsOnly() && context.getSortDimensionOrders().contains(StorageContext.OrderEnum.DESCENDING) == false && context.getSortDimensionNullsFirst().contains(Boolean.TRUE) == false;
+        if (goodAggr && goodFilter && goodSort && isRowKeyOrder(context.getSortDimensions(), cuboid, singleValuesD)) {
+            logger.info("Enable sorted merge of segments by " + context.getSortDimensions() + ", limit " + context.getLimit());
+            context.enableSortedMerge();
+        }
+    }
+
+    // rows of a segment are in sort order if the sort columns lead the rowkey, single value columns aside,
+    // and are dictionary encoded, whose IDs keep the value order
+    boolean isRowKeyOrder(List<TblColRef> sortColumns, Cuboid cuboid, Set<TblColRef> singleValuesD) {
+        int matched = 0;
+        for (TblColRef column : cuboid.getColumns()) {
+            if (matched == sortColumns.size()) {
+                break;
+            }
+            if (column.equals(sortColumns.get(matched))) {
+                if (cubeDesc.getRowkey().isUseDictionary(column) == false) {
+                    return false;
+                }
+                matched++;
+            } else if (singleValuesD.contains(column) == false) {
+                return false;
+            }
+        }
+        return matched == sortColumns.size();
+    }
+
+    private void setCoprocessor(Set<TblColRef> groupsCopD, List<RowValueDecoder> valueDecoders, List<HBaseKeyRange> scans, StorageContext context) {
+        Set<CubeSegment> segments = Sets.newHashSet();
+        for (HBaseKeyRange scan : scans) {
+            segments.add(scan.getCubeSegment());
+        }
+        ObserverEnabler.enableCoprocessorIfBeneficial(cubeInstance, segments, groupsCopD, valueDecoders, context);
     }
 
 }
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Array;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.RowValueDecoder;
+import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.tuple.DimensionValueCache;
+import org.apache.kylin.storage.tuple.Tuple;
+import org.apache.kylin.storage.tuple.Tuple.IDerivedColumnFiller;
+import org.apache.kylin.storage.tuple.TupleInfo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The immutable layout of scanning a cuboid: tuple fields, row key column
+ * names and the derived columns to fill. Shared by all segments, key ranges
+ * and queries asking for the same columns and measures.
+ *
+ * Only the layout is cached here. Lookup tables, derived values and
+ * dimension values are resolved per scan through their own caches, so they
+ * are released when those caches evict them.
+ */
+public class CuboidScanInfo {
+
+    private static volatile Cache<String, CuboidScanInfo> CACHE;
+
+    private static Cache<String, CuboidScanInfo> getCache(KylinConfig config) {
+        if (CACHE == null) {
+            synchronized (CuboidScanInfo.class) {
+                if (CACHE == null) {
+                    CACHE = CacheBuilder.newBuilder().maximumSize(config.getCuboidScanInfoCacheSize()).build();
+                }
+            }
+        }
+        return CACHE;
+    }
+
+    public static CuboidScanInfo get(final CubeSegment cubeSeg, final Cuboid cuboid, final Collection<TblColRef> dimensions, final Collection<RowValueDecoder> rowValueDecoders, final Map<TblColRef, String> aliasMap) {
+        String key = getKey(cubeSeg, cuboid, dimensions, rowValueDecoders, aliasMap);
+        try {
+            return getCache(cubeSeg.getCubeInstance().getConfig()).get(key, new Callable<CuboidScanInfo>() {
+                @Override
+                public CuboidScanInfo call() throws Exception {
+                    return new CuboidScanInfo(cubeSeg, cuboid, dimensions, rowValueDecoders, aliasMap);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to build scan info of cuboid " + cuboid.getId() + " on segment " + cubeSeg, e.getCause());
+        }
+    }
+
+    private static String getKey(CubeSegment cubeSeg, Cuboid cuboid, Collection<TblColRef> dimensions, Collection<RowValueDecoder> rowValueDecoders, Map<TblColRef, String> aliasMap) {
+        StringBuilder key = new StringBuilder();
+        key.append(cubeSeg.getCubeInstance().getName()).append('/').append(cuboid.getId());
+        key.append('/');
+        for (TblColRef column : cuboid.getColumns()) {
+            key.append(dimensions.contains(column) ? '1' : '0');
+        }
+        for (RowValueDecoder rowValueDecoder : rowValueDecoders) {
+            key.append('/').append(rowValueDecoder.getHBaseColumn().getColumnFamilyName()).append(':').append(rowValueDecoder.getHBaseColumn().getQualifier());
+        }
+        // aliases decide the field names
+        if (aliasMap != null && !aliasMap.isEmpty()) {
+            TreeSet<String> aliases = new TreeSet<String>();
+            for (Entry<TblColRef, String> entry : aliasMap.entrySet()) {
+                aliases.add(entry.getKey().getCanonicalName() + "=" + entry.getValue());
+            }
+            key.append('/').append(aliases);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Drops the entries of a cube, called when the cube changes.
+     */
+    public static void invalidate(String cubeName) {
+        if (CACHE == null)
+            return;
+
+        String prefix = cubeName + "/";
+        for (String key : CACHE.asMap().keySet()) {
+            if (key.startsWith(prefix)) {
+                CACHE.invalidate(key);
+            }
+        }
+    }
+
+    public static void clear() {
+        if (CACHE != null) {
+            CACHE.invalidateAll();
+        }
+    }
+
+    private final TupleInfo tupleInfo;
+    private final List<TblColRef> rowColumns;
+    private final List<String> dimensionNames;
+    // whether each row key column is a queried dimension
+    private final boolean[] isDimension;
+    private final List<TblColRef[]> derivedHostCols;
+    private final List<DeriveInfo> derivedInfos;
+
+    CuboidScanInfo(CubeSegment cubeSeg, Cuboid cuboid, Collection<TblColRef> dimensions, Collection<RowValueDecoder> rowValueDecoders, Map<TblColRef, String> aliasMap) {
+        TupleInfo info = new TupleInfo();
+        int index = 0;
+        List<TblColRef> rowColumns = cuboid.getColumns();
+        List<String> colNames = new ArrayList<String>(rowColumns.size());
+        isDimension = new boolean[rowColumns.size()];
+        for (int i = 0; i < rowColumns.size(); i++) {
+            TblColRef column = rowColumns.get(i);
+            colNames.add(getFieldName(column, aliasMap));
+            if (!dimensions.contains(column)) {
+                continue;
+            }
+            isDimension[i] = true;
+            // add normal column
+            info.setField(colNames.get(i), column, column.getType().getName(), index++);
+        }
+
+        // derived columns, fillers are made per scan
+        derivedHostCols = new ArrayList<TblColRef[]>();
+        derivedInfos = new ArrayList<DeriveInfo>();
+        Map<Array<TblColRef>, List<DeriveInfo>> hostToDerivedInfo = cubeSeg.getCubeDesc().getHostToDerivedInfo(rowColumns, null);
+        for (Entry<Array<TblColRef>, List<DeriveInfo>> entry : hostToDerivedInfo.entrySet()) {
+            TblColRef[] hostCols = entry.getKey().data;
+            for (DeriveInfo deriveInfo : entry.getValue()) {
+                // mark name for each derived field
+                for (TblColRef derivedCol : deriveInfo.columns) {
+                    String derivedField = getFieldName(derivedCol, aliasMap);
+                    info.setField(derivedField, derivedCol, derivedCol.getType().getName(), index++);
+                }
+                derivedHostCols.add(hostCols);
+                derivedInfos.add(deriveInfo);
+            }
+        }
+
+        for (RowValueDecoder rowValueDecoder : rowValueDecoders) {
+            List<String> names = rowValueDecoder.getNames();
+            MeasureDesc[] measures = rowValueDecoder.getMeasures();
+            for (int i = 0; i < measures.length; i++) {
+                String dataType = measures[i].getFunction().getSQLType();
+                info.setField(names.get(i), null, dataType, index++);
+            }
+        }
+
+        this.tupleInfo = info;
+        this.rowColumns = rowColumns;
+        this.dimensionNames = colNames;
+    }
+
+    private static String getFieldName(TblColRef column, Map<TblColRef, String> aliasMap) {
+        String name = null;
+        if (aliasMap != null) {
+            name = aliasMap.get(column);
+        }
+        if (name == null) {
+            name = column.getName();
+        }
+        return name;
+    }
+
+    public TupleInfo getTupleInfo() {
+        return tupleInfo;
+    }
+
+    /**
+     * @return field names of the row key columns, same as RowKeyDecoder.getNames()
+     */
+    public List<String> getDimensionNames() {
+        return dimensionNames;
+    }
+
+    /**
+     * @return typed values by dictionary ID of each row key column of the
+     *         segment, null for a column not queried or not dictionary encoded
+     */
+    public DimensionValueCache[] getDimensionValueCaches(CubeSegment cubeSeg) {
+        DimensionValueCache[] dimensionValueCaches = new DimensionValueCache[rowColumns.size()];
+        for (int i = 0; i < dimensionValueCaches.length; i++) {
+            if (isDimension[i]) {
+                dimensionValueCaches[i] = DimensionValueCache.get(cubeSeg, rowColumns.get(i));
+            }
+        }
+        return dimensionValueCaches;
+    }
+
+    public List<IDerivedColumnFiller> getDerivedColumnFillers(CubeSegment cubeSeg) {
+        CubeManager cubeMgr = CubeManager.getInstance(cubeSeg.getCubeInstance().getConfig());
+        List<IDerivedColumnFiller> fillers = new ArrayList<IDerivedColumnFiller>(derivedInfos.size());
+        for (int i = 0; i < derivedInfos.size(); i++) {
+            fillers.add(Tuple.newDerivedColumnFiller(rowColumns, derivedHostCols.get(i), derivedInfos.get(i), tupleInfo, cubeMgr, cubeSeg));
+        }
+        return fillers;
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.apache.kylin.storage.hbase;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -73,7 +74,7 @@ public class DerivedFilterTranslator {
 
         Set<Array<String>> satisfyingHostRecords = Sets.newHashSet();
         SingleColumnTuple tuple = new SingleColumnTuple(derivedCol);
-        for (String[] row : lookup.getAllRows()) {
+        for (String[] row : candidateRows(lookup, di, compf)) {
             tuple.value = row[di];
             if (compf.evaluate(tuple)) {
                 collect(row, pi, satisfyingHostRecords);
@@ -93,6 +94,30 @@ public class DerivedFilterTranslator {
         return new Pair<TupleFilter, Boolean>(translated, loosened);
     }
 
+    /**
+     * Narrows down the lookup rows by column index, the filter is still
+     * evaluated on every candidate
+     */
+    private static Collection<String[]> candidateRows(LookupStringTable lookup, int di, CompareTupleFilter compf) {
+        Collection<String> values = compf.getValues();
+        if (values == null || values.isEmpty() || values.contains(null)) {
+            return lookup.getAllRows();
+        }
+        switch (compf.getOperator()) {
+        case EQ:
+        case IN:
+            return lookup.getRowsEqualTo(di, values);
+        case LT:
+        case LTE:
+            return lookup.getRowsBetween(di, null, compf.getFirstValue());
+        case GT:
+        case GTE:
+            return lookup.getRowsBetween(di, compf.getFirstValue(), null);
+        default:
+            return lookup.getAllRows();
+        }
+    }
+
     private static void collect(String[] row, int[] pi, Set<Array<String>> satisfyingHostRecords) {
         // TODO when go beyond IN_THRESHOLD, only keep min/max is enough
         String[] rec = new String[pi.length];
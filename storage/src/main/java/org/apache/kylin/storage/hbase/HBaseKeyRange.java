@@ -20,6 +20,7 @@ package org.apache.kylin.storage.hbase;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -38,6 +39,7 @@ import org.apache.kylin.cube.kv.FuzzyMaskEncoder;
 import org.apache.kylin.cube.kv.RowConstants;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.dict.DateStrDictionary;
+import org.apache.kylin.dict.Dictionary;
 import org.apache.kylin.metadata.model.TblColRef;
 
 /**
@@ -67,6 +69,8 @@ public class HBaseKeyRange implements Comparable<HBaseKeyRange> {
     private byte[] startKey;
     private byte[] stopKey;
     private List<Pair<byte[], byte[]>> fuzzyKeys;
+    // sorted, null unless every row key column is bound to equal values
+    private List<byte[]> exactKeys;
 
     private String startKeyString;
     private String stopKeyString;
@@ -76,11 +80,16 @@ public class HBaseKeyRange implements Comparable<HBaseKeyRange> {
     private long partitionColumnEndDate = Long.MAX_VALUE;
 
     public HBaseKeyRange(CubeSegment cubeSeg, Cuboid cuboid, byte[] startKey, byte[] stopKey, List<Pair<byte[], byte[]>> fuzzyKeys, List<Collection<ColumnValueRange>> flatColumnValueFilter, long partitionColumnStartDate, long partitionColumnEndDate) {
+        this(cubeSeg, cuboid, startKey, stopKey, fuzzyKeys, null, flatColumnValueFilter, partitionColumnStartDate, partitionColumnEndDate);
+    }
+
+    public HBaseKeyRange(CubeSegment cubeSeg, Cuboid cuboid, byte[] startKey, byte[] stopKey, List<Pair<byte[], byte[]>> fuzzyKeys, List<byte[]> exactKeys, List<Collection<ColumnValueRange>> flatColumnValueFilter, long partitionColumnStartDate, long partitionColumnEndDate) {
         this.cubeSeg = cubeSeg;
         this.cuboid = cuboid;
         this.startKey = startKey;
         this.stopKey = stopKey;
         this.fuzzyKeys = fuzzyKeys;
+        this.exactKeys = exactKeys;
         this.flatOrAndFilter = flatColumnValueFilter;
         this.partitionColumnStartDate = partitionColumnStartDate;
         this.partitionColumnEndDate = partitionColumnEndDate;
@@ -141,6 +150,8 @@ public class HBaseKeyRange implements Comparable<HBaseKeyRange> {
 
         // always fuzzy match cuboid ID to lock on the selected cuboid
         this.fuzzyKeys = buildFuzzyKeys(fuzzyValues);
+
+        this.exactKeys = buildExactKeys(fuzzyValues);
     }
 
     private void initPartitionRange(ColumnValueRange dimRange) {
@@ -177,6 +188,65 @@ public class HBaseKeyRange implements Comparable<HBaseKeyRange> {
         return result;
     }
 
+    private List<byte[]> buildExactKeys(Map<TblColRef, Set<String>> equalValueSet) {
+        int maxKeys = cubeSeg.getCubeInstance().getConfig().getExactKeyLookupMaxKeys();
+        if (maxKeys <= 0) {
+            return null;
+        }
+
+        List<TblColRef> columns = cuboid.getColumns();
+        List<List<String>> columnValues = Lists.newArrayListWithCapacity(columns.size());
+        long combinations = 1;
+        for (TblColRef column : columns) {
+            Set<String> equalValues = equalValueSet.get(column);
+            if (equalValues == null || equalValues.contains(null)) {
+                return null;
+            }
+            // a value missing in the dictionary is not in the segment
+            Dictionary<?> dict = cubeSeg.getDictionary(column);
+            List<String> values = Lists.newArrayListWithCapacity(equalValues.size());
+            for (String value : equalValues) {
+                if (dict == null || containsValue(dict, value)) {
+                    values.add(value);
+                }
+            }
+            columnValues.add(values);
+            combinations *= values.size();
+            if (combinations > maxKeys) {
+                return null;
+            }
+        }
+
+        AbstractRowKeyEncoder encoder = AbstractRowKeyEncoder.createInstance(cubeSeg, cuboid);
+        List<byte[]> result = Lists.newArrayListWithCapacity((int) combinations);
+        Map<TblColRef, String> valueMap = Maps.newHashMapWithExpectedSize(columns.size());
+        int[] index = new int[columns.size()];
+        for (long n = 0; n < combinations; n++) {
+            for (int i = 0; i < columns.size(); i++) {
+                valueMap.put(columns.get(i), columnValues.get(i).get(index[i]));
+            }
+            result.add(encoder.encode(valueMap));
+            // next combination, the last column changes fastest
+            for (int i = columns.size() - 1; i >= 0; i--) {
+                if (++index[i] < columnValues.get(i).size())
+                    break;
+                index[i] = 0;
+            }
+        }
+        Collections.sort(result, Bytes.BYTES_COMPARATOR);
+        return result;
+    }
+
+    private static boolean containsValue(Dictionary<?> dict, String value) {
+        byte[] valueBytes = Bytes.toBytes(value);
+        try {
+            dict.getIdFromValueBytes(valueBytes, 0, valueBytes.length);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     public CubeSegment getCubeSegment() {
         return this.cubeSeg;
     }
@@ -197,6 +267,15 @@ public class HBaseKeyRange implements Comparable<HBaseKeyRange> {
         return fuzzyKeys;
     }
 
+    /**
+     * @return the sorted row keys of the range if every row key column is
+     *         bound to equal values, so the rows can be fetched by get; or
+     *         null if the range has to be scanned
+     */
+    public List<byte[]> getExactKeys() {
+        return exactKeys;
+    }
+
     public String getStartKeyAsString() {
         return startKeyString;
     }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.client.metrics.ScanMetrics;
+
+/**
+ * HBase scan metrics of a query summed over all segments and key ranges,
+ * updated by concurrent segment scans.
+ */
+public class HBaseScanStats {
+
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicLong rpcCalls = new AtomicLong();
+    private final AtomicLong rpcRetries = new AtomicLong();
+    private final AtomicLong remoteRpcCalls = new AtomicLong();
+    private final AtomicLong bytesInResults = new AtomicLong();
+    private final AtomicLong remoteBytesInResults = new AtomicLong();
+    private final AtomicLong regions = new AtomicLong();
+    private final AtomicLong notServingRegionErrors = new AtomicLong();
+    private final AtomicLong millisBetweenNexts = new AtomicLong();
+    private final AtomicLong coprocessorInputRows = new AtomicLong();
+    private final AtomicLong coprocessorOutputRows = new AtomicLong();
+    private final AtomicLong cachedSegmentScans = new AtomicLong();
+    private final AtomicLong gets = new AtomicLong();
+    private final AtomicLong getHits = new AtomicLong();
+
+    public void add(ScanMetrics metrics) {
+        scans.incrementAndGet();
+        rpcCalls.addAndGet(metrics.countOfRPCcalls.get());
+        rpcRetries.addAndGet(metrics.countOfRPCRetries.get());
+        remoteRpcCalls.addAndGet(metrics.countOfRemoteRPCcalls.get());
+        bytesInResults.addAndGet(metrics.countOfBytesInResults.get());
+        remoteBytesInResults.addAndGet(metrics.countOfBytesInRemoteResults.get());
+        regions.addAndGet(metrics.countOfRegions.get());
+        notServingRegionErrors.addAndGet(metrics.countOfNSRE.get());
+        millisBetweenNexts.addAndGet(metrics.sumOfMillisSecBetweenNexts.get());
+    }
+
+    public void addCoprocessorRows(long inputRows, long outputRows) {
+        coprocessorInputRows.addAndGet(inputRows);
+        coprocessorOutputRows.addAndGet(outputRows);
+    }
+
+    public void addCachedSegmentScan() {
+        cachedSegmentScans.incrementAndGet();
+    }
+
+    public void addGets(long keys, long hits) {
+        gets.addAndGet(keys);
+        getHits.addAndGet(hits);
+    }
+
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new LinkedHashMap<String, Long>();
+        map.put("scans", scans.get());
+        map.put("rpcCalls", rpcCalls.get());
+        map.put("rpcRetries", rpcRetries.get());
+        map.put("remoteRpcCalls", remoteRpcCalls.get());
+        map.put("bytesInResults", bytesInResults.get());
+        map.put("remoteBytesInResults", remoteBytesInResults.get());
+        map.put("regions", regions.get());
+        map.put("notServingRegionErrors", notServingRegionErrors.get());
+        map.put("millisBetweenNexts", millisBetweenNexts.get());
+        map.put("coprocessorInputRows", coprocessorInputRows.get());
+        map.put("coprocessorOutputRows", coprocessorOutputRows.get());
+        map.put("cachedSegmentScans", cachedSegmentScans.get());
+        map.put("gets", gets.get());
+        map.put("getHits", getHits.get());
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.RowConstants;
+import org.apache.kylin.dict.Dictionary;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plans which adjacent key ranges of a segment to merge when there are too
+ * many of them. The gap between two ranges is measured in the dictionary ID
+ * space of the cuboid columns, i.e. as the estimated number of rows in
+ * between, and ranges are merged across the smallest gaps first.
+ */
+public class KeyRangeGapMerger {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyRangeGapMerger.class);
+
+    private static final int MAX_RAW_BYTES = 6; // of a non-dictionary column taken into its position
+
+    private final int[] colLengths;
+    private final long[] minIds;
+    private final double[] cardinalities;
+    private final double estimatedRows;
+
+    public KeyRangeGapMerger(CubeSegment segment, Cuboid cuboid) {
+        List<TblColRef> columns = cuboid.getColumns();
+        this.colLengths = new int[columns.size()];
+        this.minIds = new long[columns.size()];
+        this.cardinalities = new double[columns.size()];
+
+        double rows = 1;
+        for (int i = 0; i < columns.size(); i++) {
+            TblColRef col = columns.get(i);
+            colLengths[i] = segment.getColumnLength(col);
+            Dictionary<?> dict = segment.getDictionary(col);
+            if (dict != null) {
+                minIds[i] = dict.getMinId();
+                cardinalities[i] = dict.getMaxId() - dict.getMinId() + 1;
+            } else {
+                cardinalities[i] = Math.pow(256, Math.min(colLengths[i], MAX_RAW_BYTES));
+            }
+            rows *= cardinalities[i];
+        }
+        if (segment.getInputRecords() > 0) {
+            rows = Math.min(rows, segment.getInputRecords());
+        }
+        this.estimatedRows = rows;
+    }
+
+    KeyRangeGapMerger(int[] colLengths, long[] minIds, double[] cardinalities, double estimatedRows) {
+        this.colLengths = colLengths;
+        this.minIds = minIds;
+        this.cardinalities = cardinalities;
+        this.estimatedRows = estimatedRows;
+    }
+
+    /**
+     * @param keyRanges non-overlapping ranges sorted by start key
+     * @return for each range but the last, whether it should be merged with the next one
+     */
+    public boolean[] planMerge(List<HBaseKeyRange> keyRanges, int targetCount) {
+        int n = keyRanges.size();
+        boolean[] mergeWithNext = new boolean[Math.max(0, n - 1)];
+        if (n <= targetCount)
+            return mergeWithNext;
+
+        final double[] gaps = new double[n - 1];
+        Integer[] byGap = new Integer[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            gaps[i] = getGapRows(keyRanges.get(i).getStopKey(), keyRanges.get(i + 1).getStartKey());
+            byGap[i] = i;
+        }
+        Arrays.sort(byGap, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(gaps[o1], gaps[o2]);
+            }
+        });
+
+        double mergedGapRows = 0;
+        for (int i = 0, toMerge = n - Math.max(1, targetCount); i < toMerge; i++) {
+            mergeWithNext[byGap[i]] = true;
+            mergedGapRows += gaps[byGap[i]];
+        }
+        logger.info("Merging " + n + " key ranges into " + Math.max(1, targetCount) + ", est. " + Math.round(mergedGapRows) + " more rows to scan in merged gaps");
+        return mergeWithNext;
+    }
+
+    /**
+     * Estimated rows between the stop key of a range and the start key of the next.
+     */
+    double getGapRows(byte[] stopKey, byte[] nextStartKey) {
+        return Math.max(0, getPosition(nextStartKey) - getPosition(stopKey)) * estimatedRows;
+    }
+
+    /**
+     * Position of the key in the cuboid, from 0 (first row) to 1 (last row).
+     * Each column is an ID in its dictionary, the key is a mixed radix number
+     * of those IDs.
+     */
+    double getPosition(byte[] key) {
+        double position = 0;
+        double scale = 1;
+        int offset = RowConstants.ROWKEY_CUBOIDID_LEN;
+        for (int i = 0; i < colLengths.length && offset + colLengths[i] <= key.length; i++) {
+            int len = Math.min(colLengths[i], MAX_RAW_BYTES);
+            long id = 0;
+            for (int j = 0; j < len; j++) {
+                id = (id << 8) | (key[offset + j] & 0xff);
+            }
+            scale /= cardinalities[i];
+            // blank bytes of open ranges fall outside of the dictionary
+            if (id - minIds[i] >= cardinalities[i]) {
+                position += cardinalities[i] * scale;
+                break;
+            }
+            position += Math.max(0, id - minIds[i]) * scale;
+            offset += colLengths[i];
+        }
+        return position;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.hbase.client.HConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.StorageException;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.kv.RowValueDecoder;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.tuple.Tuple;
+
+/**
+ * Scans cube segments, or region sized pieces of them, concurrently on a
+ * shared, bounded thread pool. Tuples are handed over to the query thread
+ * through bounded queues, so a slow consumer throttles the scanners. Limit,
+ * partial result and threshold are checked the same way as in
+ * {@link SerializedHBaseTupleIterator}.
+ *
+ * In ordered mode, each scan unit has its own queue and the units are
+ * consumed one after another in the given order, which keeps rowkey order of
+ * the ranges while still fetching ahead.
+ */
+public class ParallelHBaseTupleIterator implements ITupleIterator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelHBaseTupleIterator.class);
+
+    private static final int PARTIAL_DEFAULT_LIMIT = 10000;
+    private static final int MIN_UNIT_QUEUE_SIZE = 256;
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private static ExecutorService scanPool;
+
+    private final HConnection conn;
+    private final Collection<TblColRef> dimensions;
+    private final TupleFilter filter;
+    private final Collection<TblColRef> groupBy;
+    private final Collection<RowValueDecoder> rowValueDecoders;
+    private final StorageContext context;
+    private final int partialResultLimit;
+    private final boolean ordered;
+
+    private final List<ScanTask> scanTasks;
+    private final List<Future<?>> scanFutures;
+    private final AtomicInteger runningScans;
+    private final AtomicReference<Throwable> scanError;
+    private volatile boolean cancelled;
+
+    private int consumeIndex;
+    private Tuple nextTuple;
+    private int scanCount;
+
+    public ParallelHBaseTupleIterator(HConnection conn, List<List<HBaseKeyRange>> scanUnits, boolean ordered, CubeInstance cube, Collection<TblColRef> dimensions, TupleFilter filter, Collection<TblColRef> groupBy, Collection<RowValueDecoder> rowValueDecoders, StorageContext context) {
+
+        this.conn = conn;
+        this.dimensions = dimensions;
+        this.filter = filter;
+        this.groupBy = groupBy;
+        this.rowValueDecoders = rowValueDecoders;
+        this.context = context;
+        this.ordered = ordered;
+        int limit = context.getLimit();
+        this.partialResultLimit = Math.max(limit, PARTIAL_DEFAULT_LIMIT);
+
+        KylinConfig config = cube.getConfig();
+        int queueSize = config.getParallelScanQueueSize();
+        this.runningScans = new AtomicInteger();
+        this.scanError = new AtomicReference<Throwable>();
+        this.cancelled = false;
+        this.consumeIndex = 0;
+
+        this.scanTasks = Lists.newArrayListWithCapacity(scanUnits.size());
+        BlockingQueue<Tuple> sharedQueue = ordered ? null : new ArrayBlockingQueue<Tuple>(queueSize);
+        int unitQueueSize = Math.max(MIN_UNIT_QUEUE_SIZE, queueSize / Math.max(1, scanUnits.size()));
+        for (List<HBaseKeyRange> unit : scanUnits) {
+            BlockingQueue<Tuple> queue = ordered ? new ArrayBlockingQueue<Tuple>(unitQueueSize) : sharedQueue;
+            scanTasks.add(new ScanTask(unit.get(0).getCubeSegment(), unit, queue));
+        }
+
+        // tasks are submitted in consuming order, the pool runs them FIFO
+        this.scanFutures = Lists.newArrayListWithCapacity(scanTasks.size());
+        ExecutorService pool = getScanPool(config);
+        for (ScanTask task : scanTasks) {
+            runningScans.incrementAndGet();
+            try {
+                scanFutures.add(pool.submit(task));
+            } catch (RuntimeException e) {
+                runningScans.decrementAndGet();
+                cancel();
+                throw e;
+            }
+        }
+        logger.info("Scanning " + scanTasks.size() + " units in parallel" + (ordered ? ", preserving rowkey order" : ""));
+    }
+
+    private static synchronized ExecutorService getScanPool(KylinConfig config) {
+        if (scanPool == null) {
+            int threads = config.getConcurrentScanThreadCount();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), //
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kylin-segment-scan-%d").build());
+            pool.allowCoreThreadTimeOut(true);
+            scanPool = pool;
+        }
+        return scanPool;
+    }
+
+    /**
+     * Opens the scanner of one scan unit, runs on a pool thread
+     */
+    ITupleIterator newSegmentIterator(CubeSegment cubeSeg, List<HBaseKeyRange> keyRanges, List<RowValueDecoder> decoders) {
+        return new CubeSegmentTupleIterator(cubeSeg, keyRanges, conn, dimensions, filter, groupBy, decoders, context);
+    }
+
+    @Override
+    public boolean hasNext() {
+        // 1. check limit
+        if (context.isLimitEnabled() && scanCount >= context.getLimit()) {
+            cancel();
+            return false;
+        }
+        // 2. check partial result
+        if (context.isAcceptPartialResult() && scanCount > partialResultLimit) {
+            context.setPartialResultReturned(true);
+            cancel();
+            return false;
+        }
+        // 3. check threshold
+        if (scanCount >= context.getThreshold()) {
+            cancel();
+            throw new ScanOutOfLimitException("Scan row count exceeded threshold: " + context.getThreshold() + ", please add filter condition to narrow down backend scan range, like where clause.");
+        }
+        // 4. wait for the scanners
+        return fetchNext();
+    }
+
+    private boolean fetchNext() {
+        int nQueues = ordered ? scanTasks.size() : Math.min(1, scanTasks.size());
+        while (nextTuple == null) {
+            rethrowScanError();
+            if (consumeIndex >= nQueues) {
+                return false;
+            }
+
+            ScanTask task = scanTasks.get(consumeIndex);
+            // producers finished before the poll means nothing else will arrive
+            boolean allDone = cancelled || (ordered ? task.done : runningScans.get() == 0);
+            try {
+                nextTuple = allDone ? task.queue.poll() : task.queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new StorageException("Interrupted when waiting for segment scan result", e);
+            }
+            if (nextTuple == null && allDone) {
+                rethrowScanError();
+                consumeIndex++;
+            }
+        }
+        return true;
+    }
+
+    private void rethrowScanError() {
+        Throwable t = scanError.get();
+        if (t == null)
+            return;
+
+        cancel();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        throw new StorageException("Error when scan segments in parallel", t);
+    }
+
+    @Override
+    public ITuple next() {
+        if (hasNext() == false) {
+            return null;
+        }
+        Tuple t = nextTuple;
+        nextTuple = null;
+        scanCount++;
+        return t;
+    }
+
+    @Override
+    public void close() {
+        context.setTotalScanCount(scanCount);
+        cancel();
+    }
+
+    private void cancel() {
+        if (cancelled)
+            return;
+
+        cancelled = true;
+        // don't interrupt running scans, HBase client does not like it; they will stop on the flag
+        for (Future<?> future : scanFutures) {
+            future.cancel(false);
+        }
+        for (ScanTask task : scanTasks) {
+            task.queue.clear();
+        }
+    }
+
+    private class ScanTask implements Runnable {
+
+        private final CubeSegment cubeSeg;
+        private final List<HBaseKeyRange> keyRanges;
+        private final BlockingQueue<Tuple> queue;
+        private volatile boolean done;
+
+        ScanTask(CubeSegment cubeSeg, List<HBaseKeyRange> keyRanges, BlockingQueue<Tuple> queue) {
+            this.cubeSeg = cubeSeg;
+            this.keyRanges = keyRanges;
+            this.queue = queue;
+            this.done = false;
+        }
+
+        @Override
+        public void run() {
+            ITupleIterator segmentIterator = null;
+            try {
+                if (cancelled)
+                    return;
+
+                // value decoders hold decoding state, each scanner needs its own copy
+                List<RowValueDecoder> decoders = Lists.newArrayListWithCapacity(rowValueDecoders.size());
+                for (RowValueDecoder decoder : rowValueDecoders) {
+                    decoders.add(new RowValueDecoder(decoder));
+                }
+
+                segmentIterator = newSegmentIterator(cubeSeg, keyRanges, decoders);
+                while (cancelled == false && segmentIterator.hasNext()) {
+                    Tuple tuple = (Tuple) segmentIterator.next();
+                    if (tuple == null)
+                        break;
+                    if (offer(tuple.copy()) == false)
+                        break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                if (cancelled == false) {
+                    scanError.compareAndSet(null, t);
+                }
+            } finally {
+                if (segmentIterator != null) {
+                    try {
+                        segmentIterator.close();
+                    } catch (Throwable t) {
+                        logger.warn("Error when close scanner of segment " + cubeSeg, t);
+                    }
+                }
+                done = true;
+                runningScans.decrementAndGet();
+            }
+        }
+
+        private boolean offer(Tuple tuple) throws InterruptedException {
+            while (queue.offer(tuple, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS) == false) {
+                if (cancelled)
+                    return false;
+            }
+            return true;
+        }
+    }
+}
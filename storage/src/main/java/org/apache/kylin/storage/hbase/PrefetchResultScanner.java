@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Wraps a ResultScanner and fetches the next batches of Results in background,
+ * so the RPC round trips overlap with the decoding done by the caller.
+ *
+ * The underlying scanner is only touched by the prefetch thread, and is closed
+ * by it as well; {@link #close()} waits for that to happen. Created through
+ * {@link #prefetch}, which falls back to the plain scanner when the pool is full.
+ */
+public class PrefetchResultScanner implements ResultScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrefetchResultScanner.class);
+
+    private static final Result[] END_OF_SCAN = new Result[0];
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    // one thread per open scanner, they are idle most of the time waiting for RPC;
+    // bounded by the config of the first scanner, the size is fixed once created
+    private static ExecutorService prefetchPool;
+
+    private static synchronized ExecutorService getPrefetchPool(int maxThreads) {
+        if (prefetchPool == null) {
+            prefetchPool = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), //
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kylin-scan-prefetch-%d").build());
+        }
+        return prefetchPool;
+    }
+
+    /**
+     * Wraps the scanner to prefetch in background, or returns it as is if all
+     * prefetch threads are taken, so the caller fetches synchronously.
+     */
+    public static ResultScanner prefetch(ResultScanner scanner, int batchSize, int queueDepth, int maxThreads) {
+        final PrefetchResultScanner prefetchScanner = new PrefetchResultScanner(scanner, batchSize, queueDepth);
+        try {
+            getPrefetchPool(maxThreads).execute(new Runnable() {
+                @Override
+                public void run() {
+                    prefetchScanner.prefetch();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("All " + maxThreads + " prefetch threads are busy, fetch synchronously");
+            return scanner;
+        }
+        return prefetchScanner;
+    }
+
+    private final ResultScanner scanner;
+    private final int batchSize;
+    private final BlockingQueue<Result[]> batches;
+    private final CountDownLatch prefetchDone;
+
+    private volatile boolean closed;
+    private volatile Throwable error;
+
+    private Result[] current;
+    private int currentIndex;
+    private boolean exhausted;
+
+    private PrefetchResultScanner(ResultScanner scanner, int batchSize, int queueDepth) {
+        this.scanner = scanner;
+        this.batchSize = batchSize;
+        this.batches = new ArrayBlockingQueue<Result[]>(queueDepth);
+        this.prefetchDone = new CountDownLatch(1);
+        this.closed = false;
+        this.exhausted = false;
+    }
+
+    private void prefetch() {
+        try {
+            while (closed == false) {
+                Result[] batch = scanner.next(batchSize);
+                if (batch == null || batch.length == 0)
+                    break;
+                if (offer(batch) == false)
+                    return;
+            }
+        } catch (Throwable t) {
+            error = t;
+        } finally {
+            try {
+                scanner.close();
+            } catch (Throwable t) {
+                logger.warn("Error when close the underlying scanner", t);
+            }
+            try {
+                offer(END_OF_SCAN);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            prefetchDone.countDown();
+        }
+    }
+
+    private boolean offer(Result[] batch) throws InterruptedException {
+        while (batches.offer(batch, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS) == false) {
+            if (closed)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Result next() throws IOException {
+        while (current == null || currentIndex >= current.length) {
+            if (exhausted)
+                return null;
+
+            Result[] batch;
+            try {
+                batch = batches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted when waiting for prefetched results", e);
+            }
+
+            if (batch == END_OF_SCAN) {
+                exhausted = true;
+                if (error != null) {
+                    throw (error instanceof IOException) ? (IOException) error : new IOException("Error when prefetch results", error);
+                }
+                return null;
+            }
+            current = batch;
+            currentIndex = 0;
+        }
+        return current[currentIndex++];
+    }
+
+    @Override
+    public Result[] next(int nbRows) throws IOException {
+        List<Result> results = Lists.newArrayListWithCapacity(nbRows);
+        for (int i = 0; i < nbRows; i++) {
+            Result r = next();
+            if (r == null)
+                break;
+            results.add(r);
+        }
+        return results.toArray(new Result[results.size()]);
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+        return new Iterator<Result>() {
+
+            Result next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = PrefetchResultScanner.this.next();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Result next() {
+                Result r = next;
+                next = null;
+                return r;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        batches.clear();
+        current = null;
+        exhausted = true;
+        try {
+            // the prefetch thread owns the underlying scanner, let it finish closing
+            prefetchDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
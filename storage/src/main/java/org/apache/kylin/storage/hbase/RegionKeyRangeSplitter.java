@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.StorageException;
+import org.apache.kylin.cube.CubeSegment;
+
+/**
+ * Splits segment key ranges along the region boundaries of the segment
+ * HTable, and groups the pieces into scan units, one per (segment, region).
+ * Units of a segment are in rowkey order, so scanning them one after another
+ * gives the same order as scanning the original ranges.
+ *
+ * Region boundaries are cached per table for a short while, instead of
+ * reading hbase:meta on every query. Stale boundaries only make the units
+ * less even, each scan still finds its regions through the HBase client.
+ */
+public class RegionKeyRangeSplitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegionKeyRangeSplitter.class);
+
+    private static volatile Cache<String, byte[][]> REGION_START_KEYS;
+
+    private static Cache<String, byte[][]> getCache(KylinConfig config) {
+        if (REGION_START_KEYS == null) {
+            synchronized (RegionKeyRangeSplitter.class) {
+                if (REGION_START_KEYS == null) {
+                    REGION_START_KEYS = CacheBuilder.newBuilder().maximumSize(10000).expireAfterWrite(config.getRegionBoundaryCacheSeconds(), TimeUnit.SECONDS).build();
+                }
+            }
+        }
+        return REGION_START_KEYS;
+    }
+
+    public static List<List<HBaseKeyRange>> splitByRegions(HConnection conn, List<HBaseKeyRange> keyRanges) {
+        List<List<HBaseKeyRange>> result = Lists.newArrayList();
+        Map<CubeSegment, List<HBaseKeyRange>> rangesMap = SerializedHBaseTupleIterator.makeRangesMap(keyRanges);
+        for (Map.Entry<CubeSegment, List<HBaseKeyRange>> entry : rangesMap.entrySet()) {
+            String tableName = entry.getKey().getStorageLocationIdentifier();
+            byte[][] regionStartKeys = getRegionStartKeys(conn, tableName, entry.getKey().getCubeInstance().getConfig());
+            List<List<HBaseKeyRange>> units = splitByRegions(entry.getValue(), regionStartKeys);
+            logger.debug("Segment " + tableName + " has " + regionStartKeys.length + " regions, " + entry.getValue().size() + " key ranges are split into " + units.size() + " scan units");
+            result.addAll(units);
+        }
+        return result;
+    }
+
+    /**
+     * @param keyRanges ranges of the same segment
+     * @param regionStartKeys start keys of all regions in the segment HTable
+     */
+    static List<List<HBaseKeyRange>> splitByRegions(List<HBaseKeyRange> keyRanges, byte[][] regionStartKeys) {
+        byte[][] boundaries = Arrays.copyOf(regionStartKeys, regionStartKeys.length);
+        Arrays.sort(boundaries, Bytes.BYTES_COMPARATOR);
+
+        List<HBaseKeyRange> sorted = Lists.newArrayList(keyRanges);
+        Collections.sort(sorted);
+
+        TreeMap<Integer, List<HBaseKeyRange>> regionToRanges = new TreeMap<Integer, List<HBaseKeyRange>>();
+        for (HBaseKeyRange range : sorted) {
+            byte[] start = range.getStartKey();
+            int region = findRegion(boundaries, start);
+            // cut at every boundary strictly inside (start, stop)
+            for (int i = region + 1; i < boundaries.length && Bytes.compareTo(boundaries[i], range.getStopKey()) < 0; i++) {
+                addToRegion(regionToRanges, region, subRange(range, start, boundaries[i]));
+                start = boundaries[i];
+                region = i;
+            }
+            addToRegion(regionToRanges, region, start == range.getStartKey() ? range : subRange(range, start, range.getStopKey()));
+        }
+        return Lists.newArrayList(regionToRanges.values());
+    }
+
+    private static int findRegion(byte[][] boundaries, byte[] key) {
+        int idx = Arrays.binarySearch(boundaries, key, Bytes.BYTES_COMPARATOR);
+        if (idx < 0) {
+            // the region whose start key is right before the insertion point
+            idx = -idx - 2;
+        }
+        return Math.max(idx, 0);
+    }
+
+    private static void addToRegion(TreeMap<Integer, List<HBaseKeyRange>> regionToRanges, int region, HBaseKeyRange range) {
+        List<HBaseKeyRange> list = regionToRanges.get(region);
+        if (list == null) {
+            list = Lists.newArrayList();
+            regionToRanges.put(region, list);
+        }
+        list.add(range);
+    }
+
+    private static HBaseKeyRange subRange(HBaseKeyRange range, byte[] startKey, byte[] stopKey) {
+        List<byte[]> exactKeys = null;
+        if (range.getExactKeys() != null) {
+            exactKeys = Lists.newArrayList();
+            for (byte[] key : range.getExactKeys()) {
+                if (Bytes.compareTo(key, startKey) >= 0 && Bytes.compareTo(key, stopKey) < 0) {
+                    exactKeys.add(key);
+                }
+            }
+        }
+        return new HBaseKeyRange(range.getCubeSegment(), range.getCuboid(), startKey, stopKey, range.getFuzzyKeys(), exactKeys, range.getFlatOrAndFilter(), range.getPartitionColumnStartDate(), range.getPartitionColumnEndDate());
+    }
+
+    private static byte[][] getRegionStartKeys(final HConnection conn, final String tableName, KylinConfig config) {
+        try {
+            return getCache(config).get(tableName, new Callable<byte[][]>() {
+                @Override
+                public byte[][] call() throws Exception {
+                    List<HRegionLocation> locations = conn.locateRegions(TableName.valueOf(tableName));
+                    byte[][] startKeys = new byte[locations.size()][];
+                    for (int i = 0; i < startKeys.length; i++) {
+                        startKeys[i] = locations.get(i).getRegionInfo().getStartKey();
+                    }
+                    return startKeys;
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new StorageException("Error when locate regions of table " + tableName, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Set;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.kv.ColumnBloomFilter;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Sets;
+
+/**
+ * Lazily loads segment Bloom filters from the resource store, keeps them
+ * within a memory bound.
+ */
+public class SegmentBloomFilterCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentBloomFilterCache.class);
+
+    private static volatile Cache<String, ColumnBloomFilter> CACHE;
+
+    private static Cache<String, ColumnBloomFilter> getCache(KylinConfig config) {
+        if (CACHE == null) {
+            synchronized (SegmentBloomFilterCache.class) {
+                if (CACHE == null) {
+                    CACHE = CacheBuilder.newBuilder().maximumWeight(config.getBloomFilterCacheBytes()).weigher(new Weigher<String, ColumnBloomFilter>() {
+                        @Override
+                        public int weigh(String key, ColumnBloomFilter value) {
+                            return value.getSizeInBytes();
+                        }
+                    }).build();
+                }
+            }
+        }
+        return CACHE;
+    }
+
+    /**
+     * @return the values that might be in the segment, or null if the column
+     *         has no Bloom filter in the segment
+     */
+    public static Set<String> mightContain(CubeSegment segment, TblColRef col, Collection<String> values) {
+        String[] resPaths = segment.getBloomFilterResPaths(col);
+        if (resPaths == null || ColumnBloomFilter.isApplicable(col) == false)
+            return null;
+
+        KylinConfig config = segment.getCubeInstance().getConfig();
+        ColumnBloomFilter[] bloomFilters = new ColumnBloomFilter[resPaths.length];
+        for (int i = 0; i < resPaths.length; i++) {
+            bloomFilters[i] = getBloomFilter(config, resPaths[i]);
+            if (bloomFilters[i] == null)
+                return null;
+        }
+
+        Set<String> result = Sets.newHashSet();
+        for (String value : values) {
+            for (ColumnBloomFilter bloomFilter : bloomFilters) {
+                if (bloomFilter.mightContain(value)) {
+                    result.add(value);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ColumnBloomFilter getBloomFilter(KylinConfig config, String resPath) {
+        Cache<String, ColumnBloomFilter> cache = getCache(config);
+        ColumnBloomFilter bloomFilter = cache.getIfPresent(resPath);
+        if (bloomFilter != null)
+            return bloomFilter;
+
+        try {
+            InputStream in = ResourceStore.getStore(config).getResource(resPath);
+            if (in == null) {
+                logger.warn("Bloom filter " + resPath + " not found");
+                return null;
+            }
+            try {
+                bloomFilter = ColumnBloomFilter.read(new DataInputStream(in));
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to load Bloom filter " + resPath, e);
+            return null;
+        }
+        cache.put(resPath, bloomFilter);
+        return bloomFilter;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.hll.HyperLogLogPlusCounter;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.kv.RowValueDecoder;
+import org.apache.kylin.cube.model.HBaseColumnDesc;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilterSerializer;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.tuple.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Caches the decoded tuples of segment scans. A ready segment never changes,
+ * so an entry is valid until the segment is merged away or dropped.
+ */
+public class SegmentResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentResultCache.class);
+
+    private static volatile Cache<Key, List<Object[]>> CACHE;
+
+    private static Cache<Key, List<Object[]>> getCache(KylinConfig config) {
+        if (CACHE == null) {
+            synchronized (SegmentResultCache.class) {
+                if (CACHE == null) {
+                    CACHE = CacheBuilder.newBuilder().maximumWeight(config.getSegmentResultCacheBytes()).weigher(new Weigher<Key, List<Object[]>>() {
+                        @Override
+                        public int weigh(Key key, List<Object[]> value) {
+                            long bytes = estimateBytes(value) + key.signature.length() * 2;
+                            return (int) Math.min(bytes, Integer.MAX_VALUE);
+                        }
+                    }).build();
+                }
+            }
+        }
+        return CACHE;
+    }
+
+    public static boolean isCacheable(CubeSegment segment) {
+        return segment.getStatus() == SegmentStatusEnum.READY && segment.getCubeInstance().getConfig().isSegmentResultCacheEnabled();
+    }
+
+    public static List<Object[]> get(CubeSegment segment, String signature) {
+        return getCache(segment.getCubeInstance().getConfig()).getIfPresent(new Key(segment, signature));
+    }
+
+    public static void put(CubeSegment segment, String signature, List<Object[]> values) {
+        getCache(segment.getCubeInstance().getConfig()).put(new Key(segment, signature), values);
+    }
+
+    public static Recording record(CubeSegment segment, String signature) {
+        return new Recording(segment, signature, segment.getCubeInstance().getConfig().getSegmentResultCacheMaxEntryValues());
+    }
+
+    /**
+     * Collects the tuples of a segment scan. Only a scan read to the end is
+     * cached, on {@link #finish()}; one cut off by limit never gets there.
+     */
+    public static class Recording {
+        private final CubeSegment segment;
+        private final String signature;
+        private final int maxValues;
+        private List<Object[]> tuples;
+        private int valueCount;
+
+        Recording(CubeSegment segment, String signature, int maxValues) {
+            this.segment = segment;
+            this.signature = signature;
+            this.maxValues = maxValues;
+            this.tuples = Lists.newArrayList();
+        }
+
+        public void add(Object[] values) {
+            if (tuples == null)
+                return;
+
+            valueCount += values.length;
+            if (valueCount > maxValues) {
+                // too big to be worth caching
+                tuples = null;
+                return;
+            }
+            Object[] copy = new Object[values.length];
+            Tuple.copyValues(values, copy);
+            tuples.add(copy);
+        }
+
+        public void finish() {
+            if (tuples != null) {
+                put(segment, signature, tuples);
+                tuples = null;
+            }
+        }
+    }
+
+    /**
+     * Drops the entries of segments that are no longer ready in the cube,
+     * e.g. after a merge.
+     */
+    public static void retainSegments(CubeInstance cube) {
+        if (CACHE == null)
+            return;
+
+        Set<String> readySegments = Sets.newHashSet();
+        for (CubeSegment segment : cube.getSegments(SegmentStatusEnum.READY)) {
+            readySegments.add(segment.getUuid());
+        }
+        int removed = 0;
+        for (Key key : CACHE.asMap().keySet()) {
+            if (key.cubeName.equals(cube.getName()) && !readySegments.contains(key.segmentUuid)) {
+                CACHE.invalidate(key);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            logger.info("Removed " + removed + " cached segment results of cube " + cube.getName());
+        }
+    }
+
+    public static void invalidate(String cubeName) {
+        if (CACHE == null)
+            return;
+
+        for (Key key : CACHE.asMap().keySet()) {
+            if (key.cubeName.equals(cubeName)) {
+                CACHE.invalidate(key);
+            }
+        }
+    }
+
+    public static void clear() {
+        if (CACHE != null) {
+            CACHE.invalidateAll();
+        }
+    }
+
+    /**
+     * @return what determines the tuples of a segment scan, or null if the
+     *         scan can't be described
+     */
+    public static String getSignature(Collection<HBaseKeyRange> keyRanges, Collection<TblColRef> dimensions, TupleFilter filter, Collection<TblColRef> groupBy, Collection<RowValueDecoder> rowValueDecoders, StorageContext context) {
+        StringBuilder buf = new StringBuilder();
+        for (HBaseKeyRange keyRange : keyRanges) {
+            buf.append(keyRange.getCuboid().getId()).append(':');
+            buf.append(Bytes.toStringBinary(keyRange.getStartKey())).append('-');
+            buf.append(Bytes.toStringBinary(keyRange.getStopKey()));
+            if (keyRange.getFuzzyKeys() != null && !keyRange.getFuzzyKeys().isEmpty()) {
+                buf.append('~').append(keyRange.getFuzzyKeyAsString());
+            }
+            buf.append(';');
+        }
+        buf.append("|dims=").append(canonicalNames(dimensions));
+        buf.append("|groupBy=").append(canonicalNames(groupBy));
+        if (filter != null) {
+            try {
+                buf.append("|filter=").append(Bytes.toStringBinary(TupleFilterSerializer.serialize(filter)));
+            } catch (RuntimeException e) {
+                logger.debug("Filter " + filter + " not serializable, skip result cache", e);
+                return null;
+            }
+        }
+        buf.append("|measures=");
+        for (RowValueDecoder rowValueDecoder : rowValueDecoders) {
+            HBaseColumnDesc hbaseColumn = rowValueDecoder.getHBaseColumn();
+            buf.append(hbaseColumn.getColumnFamilyName()).append(':').append(hbaseColumn.getQualifier());
+            buf.append(rowValueDecoder.getProjectionIndex()).append(',');
+        }
+        // the coprocessor aggregates and may cut off rows
+        if (context.isCoprocessorEnabled()) {
+            buf.append("|coprocessor");
+            if (context.isTopNEnabled()) {
+                buf.append("|top=").append(context.getLimit());
+                for (MeasureDesc measure : context.getSortMeasures()) {
+                    buf.append(',').append(measure.getName());
+                }
+                buf.append(context.getSortOrders());
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Rough heap size of the tuples, good enough to bound the cache; an HLL
+     * counter of a count distinct can outweigh the rest of the tuple by far.
+     */
+    static long estimateBytes(List<Object[]> tuples) {
+        long bytes = 16 + tuples.size() * 4L;
+        for (Object[] values : tuples) {
+            bytes += 16 + values.length * 4;
+            for (Object value : values) {
+                bytes += estimateBytes(value);
+            }
+        }
+        return bytes;
+    }
+
+    private static int estimateBytes(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + ((String) value).length() * 2;
+        } else if (value instanceof HyperLogLogPlusCounter) {
+            return 16 + ((HyperLogLogPlusCounter) value).getMemBytes();
+        } else if (value instanceof BigDecimal) {
+            return 64;
+        } else {
+            return 16; // boxed primitives and the like
+        }
+    }
+
+    private static Set<String> canonicalNames(Collection<TblColRef> columns) {
+        Set<String> names = new TreeSet<String>();
+        for (TblColRef column : columns) {
+            names.add(column.getCanonicalName());
+        }
+        return names;
+    }
+
+    private static class Key {
+        final String cubeName;
+        final String segmentUuid;
+        final String signature;
+
+        Key(CubeSegment segment, String signature) {
+            this.cubeName = segment.getCubeInstance().getName();
+            this.segmentUuid = segment.getUuid();
+            this.signature = signature;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(cubeName, segmentUuid, signature);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return cubeName.equals(other.cubeName) && segmentUuid.equals(other.segmentUuid) && signature.equals(other.signature);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.kylin.storage.hbase;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +66,13 @@ public class SerializedHBaseTupleIterator implements ITupleIterator {
             this.segmentIteratorList.add(segIter);
         }
 
+        if (context.isSortedMergeEnabled()) {
+            // segments are in sort order each, merge instead of concatenating them
+            this.segmentIteratorIterator = Collections.<CubeSegmentTupleIterator> emptyList().iterator();
+            this.segmentIterator = new SortedMergeTupleIterator(segmentIteratorList, context.getSortDimensions(), limit);
+            return;
+        }
+
         this.segmentIteratorIterator = this.segmentIteratorList.iterator();
         if (this.segmentIteratorIterator.hasNext()) {
             this.segmentIterator = this.segmentIteratorIterator.next();
@@ -73,7 +81,7 @@ public class SerializedHBaseTupleIterator implements ITupleIterator {
         }
     }
 
-    private Map<CubeSegment, List<HBaseKeyRange>> makeRangesMap(List<HBaseKeyRange> segmentKeyRanges) {
+    static Map<CubeSegment, List<HBaseKeyRange>> makeRangesMap(List<HBaseKeyRange> segmentKeyRanges) {
         Map<CubeSegment, List<HBaseKeyRange>> map = Maps.newHashMap();
         for (HBaseKeyRange range : segmentKeyRanges) {
             List<HBaseKeyRange> list = map.get(range.getCubeSegment());
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+
+/**
+ * K-way merges iterators that each return tuples in ascending order of the
+ * sort columns, like segments scanned in rowkey order when the sort columns
+ * lead the rowkey. Nulls sort last, as the null dictionary ID does.
+ *
+ * With a limit, stops after that many distinct sort keys, but never in the
+ * middle of a key. The same group may come from several segments, rows of a
+ * key are all returned so the query engine can aggregate them.
+ *
+ * Tuples are reused by the inputs, so an input is advanced only when the
+ * next tuple is asked for, after the caller is done with the previous one.
+ */
+public class SortedMergeTupleIterator implements ITupleIterator {
+
+    private final List<? extends ITupleIterator> inputs;
+    private final List<TblColRef> sortColumns;
+    private final int limit;
+    private final PriorityQueue<Head> heads;
+
+    private Head last; // the head returned last, to advance
+    private Object[] lastKey;
+    private int keyCount;
+
+    /**
+     * @param limit number of distinct sort keys to return, 0 for all
+     */
+    public SortedMergeTupleIterator(List<? extends ITupleIterator> inputs, List<TblColRef> sortColumns, int limit) {
+        this.inputs = inputs;
+        this.sortColumns = sortColumns;
+        this.limit = limit;
+        this.heads = new PriorityQueue<Head>(Math.max(1, inputs.size()), new Comparator<Head>() {
+            @Override
+            public int compare(Head h1, Head h2) {
+                int comp = compareKeys(h1.key, h2.key);
+                return comp != 0 ? comp : h1.index - h2.index;
+            }
+        });
+        for (int i = 0; i < inputs.size(); i++) {
+            advance(new Head(inputs.get(i), i));
+        }
+    }
+
+    private void advance(Head head) {
+        ITuple tuple = head.input.hasNext() ? head.input.next() : null;
+        if (tuple != null) {
+            head.tuple = tuple;
+            head.key = new Object[sortColumns.size()];
+            for (int i = 0; i < head.key.length; i++) {
+                head.key[i] = tuple.getValue(sortColumns.get(i));
+            }
+            heads.add(head);
+        }
+    }
+
+    private void advanceLast() {
+        if (last != null) {
+            advance(last);
+            last = null;
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static int compareKeys(Object[] k1, Object[] k2) {
+        for (int i = 0; i < k1.length; i++) {
+            Object v1 = k1[i];
+            Object v2 = k2[i];
+            if (v1 == v2)
+                continue;
+            if (v1 == null)
+                return 1;
+            if (v2 == null)
+                return -1;
+            int comp = ((Comparable) v1).compareTo(v2);
+            if (comp != 0)
+                return comp;
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        advanceLast();
+        Head head = heads.peek();
+        if (head == null) {
+            return false;
+        }
+        // limit reached, and the next row starts a new key
+        if (limit > 0 && keyCount >= limit && compareKeys(head.key, lastKey) != 0) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public ITuple next() {
+        if (!hasNext()) {
+            return null;
+        }
+        Head head = heads.poll();
+        if (lastKey == null || compareKeys(head.key, lastKey) != 0) {
+            keyCount++;
+            lastKey = head.key;
+        }
+        last = head;
+        return head.tuple;
+    }
+
+    @Override
+    public void close() {
+        for (ITupleIterator input : inputs) {
+            input.close();
+        }
+    }
+
+    private static class Head {
+        final ITupleIterator input;
+        final int index;
+        ITuple tuple;
+        Object[] key;
+
+        Head(ITupleIterator input, int index) {
+            this.input = input;
+            this.index = index;
+        }
+    }
+}
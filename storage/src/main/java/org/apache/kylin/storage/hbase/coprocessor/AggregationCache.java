@@ -18,10 +18,23 @@
 
 package org.apache.kylin.storage.hbase.coprocessor;
 
-import com.google.common.collect.Maps;
 import org.apache.kylin.metadata.measure.MeasureAggregator;
 
-import java.util.SortedMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 /**
  * Created by Hongbin Ma(Binmahone) on 11/27/14.
@@ -29,44 +42,246 @@ import java.util.SortedMap;
 @SuppressWarnings("rawtypes")
 public abstract class AggregationCache {
     transient int rowMemBytes;
-    static final int MEMORY_USAGE_CAP = 500 * 1024 * 1024; // 500 MB
-    protected final SortedMap<CoprocessorProjector.AggrKey, MeasureAggregator[]> aggBufMap;
+    static final long MEMORY_USAGE_CAP = 500 * 1024 * 1024; // 500 MB
+    static final int SPILL_BUFFER_SIZE = 64 * 1024;
+    protected AggregationHashTable aggBufTable;
+    private long memoryBudget = MEMORY_USAGE_CAP;
+
+    // sorted runs of partial aggregates written when over memory budget
+    private final List<File> spillFiles = new ArrayList<File>();
+    private final List<DataInputStream> spillInputs = new ArrayList<DataInputStream>();
+    private CoprocessorProjector.AggrKey keyTemplate;
+    private long spilledRows;
 
     public AggregationCache() {
-        this.aggBufMap = Maps.newTreeMap();
+        this.aggBufTable = new AggregationHashTable();
     }
 
     public abstract MeasureAggregator[] createBuffer();
 
+    /**
+     * Whether aggregation buffers can be written to and merged back from disk,
+     * if not the aggregation aborts when the memory budget is exceeded.
+     */
+    protected boolean isSpillSupported() {
+        return false;
+    }
+
+    protected void writeBuffer(MeasureAggregator[] aggBuf, DataOutputStream out) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Reads one buffer written by {@link #writeBuffer} and aggregates it into the given buffer.
+     */
+    protected void mergeBuffer(DataInputStream in, MeasureAggregator[] aggBuf) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
     public MeasureAggregator[] getBuffer(CoprocessorProjector.AggrKey aggkey) {
-        MeasureAggregator[] aggBuf = aggBufMap.get(aggkey);
+        MeasureAggregator[] aggBuf = aggBufTable.get(aggkey);
         if (aggBuf == null) {
             aggBuf = createBuffer();
-            aggBufMap.put(aggkey.copy(), aggBuf);
+            aggBufTable.put(aggkey, aggBuf);
+            if (keyTemplate == null) {
+                keyTemplate = aggkey.copy();
+            }
         }
         return aggBuf;
     }
 
+    /**
+     * Number of groups in memory, groups spilled to disk are not counted.
+     */
     public long getSize() {
-        return aggBufMap.size();
+        return aggBufTable.size();
+    }
+
+    public int getSpillCount() {
+        return spillFiles.size();
+    }
+
+    public long getSpilledRows() {
+        return spilledRows;
+    }
+
+    /**
+     * Iterates the aggregated groups in key order, sorting is done on each call.
+     * If anything was spilled, the groups in memory are spilled too and all the
+     * runs are merged from disk, the iterator can be taken only once in that case.
+     */
+    public Iterator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> sortedIterator() {
+        if (spillFiles.isEmpty()) {
+            return aggBufTable.sortedIterator();
+        }
+
+        try {
+            if (aggBufTable.size() > 0) {
+                spill();
+            }
+            return new SpillMergeIterator();
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Kylin coprocessor failed to merge spilled aggregation", e);
+        }
     }
 
     public void checkMemoryUsage() {
         // about memory calculation,
         // http://seniorjava.wordpress.com/2013/09/01/java-objects-memory-size-reference/
         if (rowMemBytes <= 0) {
-            if (aggBufMap.size() > 0) {
-                rowMemBytes = 0;
-                MeasureAggregator[] measureAggregators = aggBufMap.get(aggBufMap.firstKey());
+            if (aggBufTable.size() > 0) {
+                rowMemBytes = aggBufTable.getEntryOverheadBytes();
+                MeasureAggregator[] measureAggregators = aggBufTable.firstValue();
                 for (MeasureAggregator agg : measureAggregators) {
                     rowMemBytes += agg.getMemBytes();
                 }
             }
         }
-        int size = aggBufMap.size();
-        int memUsage = (40 + rowMemBytes) * size;
-        if (memUsage > MEMORY_USAGE_CAP) {
-            throw new RuntimeException("Kylin coprocess memory usage goes beyond cap, (40 + " + rowMemBytes + ") * " + size + " > " + MEMORY_USAGE_CAP + ". Abord coprocessor.");
+        int size = aggBufTable.size();
+        long memUsage = (long) rowMemBytes * size;
+        if (memUsage > memoryBudget) {
+            if (isSpillSupported()) {
+                try {
+                    spill();
+                } catch (IOException e) {
+                    close();
+                    throw new RuntimeException("Kylin coprocessor failed to spill aggregation to disk", e);
+                }
+            } else {
+                throw new RuntimeException("Kylin coprocess memory usage goes beyond cap, " + rowMemBytes + " * " + size + " > " + memoryBudget + ". Abord coprocessor.");
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        File file = File.createTempFile("kylin_aggr_spill_", ".tmp");
+        spillFiles.add(file);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), SPILL_BUFFER_SIZE));
+        try {
+            out.writeInt(aggBufTable.size());
+            Iterator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> it = aggBufTable.sortedIterator();
+            while (it.hasNext()) {
+                Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> entry = it.next();
+                CoprocessorProjector.AggrKey key = entry.getKey();
+                out.write(key.get(), key.offset(), key.length());
+                writeBuffer(entry.getValue(), out);
+            }
+        } finally {
+            out.close();
+        }
+
+        spilledRows += aggBufTable.size();
+        aggBufTable = new AggregationHashTable();
+    }
+
+    /**
+     * Deletes spilled files, if any.
+     */
+    public void close() {
+        for (DataInputStream in : spillInputs) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        spillInputs.clear();
+        for (File file : spillFiles) {
+            file.delete();
+        }
+        spillFiles.clear();
+    }
+
+    private class SpillRun implements Comparable<SpillRun> {
+        final DataInputStream in;
+        final byte[] keyBytes;
+        final CoprocessorProjector.AggrKey key;
+        int remaining;
+
+        SpillRun(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), SPILL_BUFFER_SIZE));
+            spillInputs.add(in);
+            this.keyBytes = new byte[keyTemplate.length()];
+            this.key = keyTemplate.wrap(keyBytes, 0);
+            this.remaining = in.readInt();
+        }
+
+        // reads the key of the next record, its buffer is left for mergeInto()
+        boolean advance() throws IOException {
+            if (remaining == 0)
+                return false;
+            remaining--;
+            in.readFully(keyBytes);
+            return true;
+        }
+
+        void mergeInto(MeasureAggregator[] aggBuf) throws IOException {
+            mergeBuffer(in, aggBuf);
+        }
+
+        @Override
+        public int compareTo(SpillRun o) {
+            return key.compareTo(o.key);
+        }
+    }
+
+    private class SpillMergeIterator implements Iterator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> {
+        final PriorityQueue<SpillRun> heap;
+
+        SpillMergeIterator() throws IOException {
+            heap = new PriorityQueue<SpillRun>(spillFiles.size());
+            for (File file : spillFiles) {
+                SpillRun run = new SpillRun(file);
+                if (run.advance()) {
+                    heap.add(run);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heap.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> next() {
+            if (heap.isEmpty())
+                throw new NoSuchElementException();
+
+            try {
+                SpillRun run = heap.poll();
+                CoprocessorProjector.AggrKey key = run.key.copy();
+                MeasureAggregator[] aggBuf = createBuffer();
+                consume(run, aggBuf);
+                while (!heap.isEmpty() && heap.peek().key.compareTo(key) == 0) {
+                    consume(heap.poll(), aggBuf);
+                }
+                if (heap.isEmpty()) {
+                    close();
+                }
+                return new AbstractMap.SimpleImmutableEntry<CoprocessorProjector.AggrKey, MeasureAggregator[]>(key, aggBuf);
+            } catch (IOException e) {
+                close();
+                throw new RuntimeException("Kylin coprocessor failed to merge spilled aggregation", e);
+            }
+        }
+
+        private void consume(SpillRun run, MeasureAggregator[] aggBuf) throws IOException {
+            run.mergeInto(aggBuf);
+            if (run.advance()) {
+                heap.add(run);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
         }
     }
 }
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.metadata.measure.MeasureAggregator;
+
+/**
+ * An open addressing (linear probing) hash table from group key to aggregation
+ * buffer. Group keys are copied into large byte pages instead of one byte array
+ * per group, and there is no entry object per group. Hashing and equality only
+ * look at the group by bytes of the key, same as {@link CoprocessorProjector.AggrKey}.
+ *
+ * Groups are kept in insertion order; sorting happens once, when iterating
+ * with {@link #sortedIterator()}.
+ */
+@SuppressWarnings("rawtypes")
+public class AggregationHashTable {
+
+    private static final int KEY_PAGE_BYTES = 1024 * 1024;
+    private static final int INIT_CAPACITY = 1024;
+    private static final int MAX_LOAD_PERCENT = 60;
+
+    // bound to the projector of the first key, used to compare stored keys
+    private CoprocessorProjector.AggrKey probe;
+    private CoprocessorProjector.AggrKey probe2;
+    private int keyLength;
+    private int keysPerPage;
+    private byte[][] keyPages;
+
+    private int[] slots; // group id + 1, 0 means empty
+    private int slotMask;
+    private int[] hashes; // by group id
+    private MeasureAggregator[][] values; // by group id
+    private int size;
+
+    public AggregationHashTable() {
+        this.slots = new int[INIT_CAPACITY * 2];
+        this.slotMask = slots.length - 1;
+        this.hashes = new int[INIT_CAPACITY];
+        this.values = new MeasureAggregator[INIT_CAPACITY][];
+        this.keyPages = new byte[16][];
+        this.size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public MeasureAggregator[] get(CoprocessorProjector.AggrKey key) {
+        if (size == 0)
+            return null;
+
+        int hash = mix(key.hashCode());
+        for (int s = hash & slotMask;; s = (s + 1) & slotMask) {
+            int id = slots[s] - 1;
+            if (id < 0)
+                return null;
+            if (hashes[id] == hash && key.compareTo(keyAt(id)) == 0)
+                return values[id];
+        }
+    }
+
+    /**
+     * Adds a new group, the key must not be in the table yet.
+     */
+    public void put(CoprocessorProjector.AggrKey key, MeasureAggregator[] value) {
+        if (probe == null) {
+            init(key);
+        }
+        if ((size + 1) * 100L > slots.length * (long) MAX_LOAD_PERCENT) {
+            rehash(slots.length * 2);
+        }
+
+        int id = size;
+        if (id == values.length) {
+            hashes = Arrays.copyOf(hashes, id * 2);
+            values = Arrays.copyOf(values, id * 2);
+        }
+
+        int page = id / keysPerPage;
+        if (page == keyPages.length) {
+            keyPages = Arrays.copyOf(keyPages, page * 2);
+        }
+        if (keyPages[page] == null) {
+            keyPages[page] = new byte[keysPerPage * keyLength];
+        }
+        System.arraycopy(key.get(), key.offset(), keyPages[page], (id % keysPerPage) * keyLength, keyLength);
+
+        int hash = mix(key.hashCode());
+        hashes[id] = hash;
+        values[id] = value;
+        size++;
+
+        int s = hash & slotMask;
+        while (slots[s] != 0) {
+            s = (s + 1) & slotMask;
+        }
+        slots[s] = id + 1;
+    }
+
+    private void init(CoprocessorProjector.AggrKey key) {
+        this.keyLength = key.length();
+        this.keysPerPage = Math.max(1, KEY_PAGE_BYTES / Math.max(1, keyLength));
+        this.probe = key.copy();
+        this.probe2 = key.copy();
+    }
+
+    private void rehash(int newCapacity) {
+        slots = new int[newCapacity];
+        slotMask = newCapacity - 1;
+        for (int id = 0; id < size; id++) {
+            int s = hashes[id] & slotMask;
+            while (slots[s] != 0) {
+                s = (s + 1) & slotMask;
+            }
+            slots[s] = id + 1;
+        }
+    }
+
+    private CoprocessorProjector.AggrKey keyAt(int id) {
+        probe.set(keyPages[id / keysPerPage], (id % keysPerPage) * keyLength);
+        return probe;
+    }
+
+    public MeasureAggregator[] firstValue() {
+        return size == 0 ? null : values[0];
+    }
+
+    /**
+     * Approximate bytes taken by the table itself per group, excluding the
+     * measure aggregators.
+     */
+    public int getEntryOverheadBytes() {
+        // key bytes, slot (at load factor), hash, value reference, value array header
+        return keyLength + 4 * 100 / MAX_LOAD_PERCENT + 4 + 8 + 16;
+    }
+
+    /**
+     * Iterates groups in key order. The returned keys point into the table
+     * pages, no copy is made.
+     */
+    public Iterator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> sortedIterator() {
+        final int[] sorted = sortedIds();
+        return new Iterator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < sorted.length;
+            }
+
+            @Override
+            public Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> next() {
+                if (i >= sorted.length)
+                    throw new NoSuchElementException();
+                int id = sorted[i++];
+                CoprocessorProjector.AggrKey key = probe.wrap(keyPages[id / keysPerPage], (id % keysPerPage) * keyLength);
+                return new AbstractMap.SimpleImmutableEntry<CoprocessorProjector.AggrKey, MeasureAggregator[]>(key, values[id]);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private int[] sortedIds() {
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+        }
+        if (size > 1) {
+            mergeSort(ids, new int[size], 0, size);
+        }
+        return ids;
+    }
+
+    private void mergeSort(int[] ids, int[] tmp, int from, int to) {
+        if (to - from <= 1)
+            return;
+
+        int mid = (from + to) >>> 1;
+        mergeSort(ids, tmp, from, mid);
+        mergeSort(ids, tmp, mid, to);
+        if (compare(ids[mid - 1], ids[mid]) <= 0)
+            return;
+
+        System.arraycopy(ids, from, tmp, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            ids[k++] = compare(tmp[i], tmp[j]) <= 0 ? tmp[i++] : tmp[j++];
+        }
+        while (i < mid) {
+            ids[k++] = tmp[i++];
+        }
+        while (j < to) {
+            ids[k++] = tmp[j++];
+        }
+    }
+
+    private int compare(int id1, int id2) {
+        probe2.set(keyPages[id1 / keysPerPage], (id1 % keysPerPage) * keyLength);
+        return probe2.compareTo(keyAt(id2));
+    }
+
+    // spread the bits of the simple polynomial hash of AggrKey
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -202,6 +202,17 @@ public class CoprocessorFilter {
 
     private final TupleFilter filter;
     private final Set<TblColRef> unstrictlyFilteredColumns;
+    private volatile Compiled compiled; // of the last row type compiled against
+
+    private static class Compiled {
+        final CoprocessorRowType type;
+        final RowKeyFilter rowKeyFilter;
+
+        Compiled(CoprocessorRowType type, RowKeyFilter rowKeyFilter) {
+            this.type = type;
+            this.rowKeyFilter = rowKeyFilter;
+        }
+    }
 
     public CoprocessorFilter(TupleFilter filter, Set<TblColRef> unstrictlyFilteredColumns) {
         this.filter = filter;
@@ -216,6 +227,20 @@ public class CoprocessorFilter {
         return unstrictlyFilteredColumns;
     }
 
+    /**
+     * Compiles the filter to evaluate on row key bytes, returns null if that is
+     * not possible and the filter must be evaluated on tuples. The result is
+     * kept for the next call with the same row type, it is immutable.
+     */
+    public RowKeyFilter compile(CoprocessorRowType type) {
+        Compiled c = compiled;
+        if (c == null || c.type != type) {
+            c = new Compiled(type, RowKeyFilter.compile(filter, type));
+            compiled = c;
+        }
+        return c.rowKeyFilter;
+    }
+
     public boolean evaluate(ITuple tuple) {
         if (filter == null)
             return true;
@@ -108,6 +108,46 @@ public class CoprocessorProjector {
         this.groupByMask = groupByMask;
     }
 
+    /**
+     * A projector of the same mask with its own aggregation key, for another
+     * scan. The mask is shared, it is never changed.
+     */
+    public CoprocessorProjector copy() {
+        return new CoprocessorProjector(groupByMask);
+    }
+
+    /**
+     * Whether the group by bytes are a prefix of the row key. If so, rows of the
+     * same group are adjacent in a scan and can be aggregated as they stream by.
+     */
+    public boolean isGroupByPrefix() {
+        int i = 0;
+        while (i < groupByMask.length && groupByMask[i] != 0)
+            i++;
+        while (i < groupByMask.length && groupByMask[i] == 0)
+            i++;
+        return i == groupByMask.length;
+    }
+
+    /**
+     * For a group by on row key prefix, the least row key after all rows of
+     * the group of the given row, or null if there is none.
+     */
+    public byte[] getNextGroupStartRow(byte[] row) {
+        int prefixLength = 0;
+        while (prefixLength < groupByMask.length && groupByMask[prefixLength] != 0)
+            prefixLength++;
+
+        // the prefix plus one, the rest of the row key is zero
+        byte[] next = new byte[groupByMask.length];
+        System.arraycopy(row, 0, next, 0, prefixLength);
+        for (int i = prefixLength - 1; i >= 0; i--) {
+            if (++next[i] != 0)
+                return next;
+        }
+        return null;
+    }
+
     public AggrKey getAggrKey(List<Cell> rowCells) {
         int length = groupByMask.length;
         Cell cell = rowCells.get(0);
@@ -145,6 +185,12 @@ public class CoprocessorProjector {
             this.offset = offset;
         }
 
+        AggrKey wrap(byte[] data, int offset) {
+            AggrKey key = new AggrKey();
+            key.set(data, offset);
+            return key;
+        }
+
         public AggrKey copy() {
             AggrKey copy = new AggrKey();
             copy.set(new byte[length()], 0);
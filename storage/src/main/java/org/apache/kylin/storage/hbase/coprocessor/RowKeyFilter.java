@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+
+/**
+ * A {@link CoprocessorFilter} compiled against a {@link CoprocessorRowType},
+ * evaluates directly on the dictionary ID bytes of a row key without building
+ * a tuple of strings. Gives the same result as evaluating the filter on an
+ * ObserverTuple of the row.
+ */
+public abstract class RowKeyFilter {
+
+    public static final RowKeyFilter TRUE = new ConstantFilter(true);
+    public static final RowKeyFilter FALSE = new ConstantFilter(false);
+
+    /**
+     * @return the compiled filter, or null if the filter contains something
+     *         that can only be evaluated on a tuple
+     */
+    public static RowKeyFilter compile(TupleFilter filter, CoprocessorRowType type) {
+        if (filter == null)
+            return TRUE;
+
+        if (filter instanceof LogicalTupleFilter) {
+            List<? extends TupleFilter> children = filter.getChildren();
+            RowKeyFilter[] compiled = new RowKeyFilter[children.size()];
+            for (int i = 0; i < compiled.length; i++) {
+                compiled[i] = compile(children.get(i), type);
+                if (compiled[i] == null)
+                    return null;
+            }
+            switch (filter.getOperator()) {
+            case AND:
+                return new AndFilter(compiled);
+            case OR:
+                return new OrFilter(compiled);
+            case NOT:
+                return new NotFilter(compiled[0]);
+            default:
+                return null;
+            }
+        } else if (filter instanceof ConstantTupleFilter) {
+            return filter.getValues().isEmpty() ? FALSE : TRUE;
+        } else if (filter instanceof CompareTupleFilter) {
+            return compileCompare((CompareTupleFilter) filter, type);
+        } else {
+            return null;
+        }
+    }
+
+    private static RowKeyFilter compileCompare(CompareTupleFilter compf, CoprocessorRowType type) {
+        // only COLUMN {op} CONST, like CompareTupleFilter.evaluate()
+        for (TupleFilter child : compf.getChildren()) {
+            if (!(child instanceof ColumnTupleFilter) && !(child instanceof ConstantTupleFilter))
+                return null;
+        }
+        TblColRef column = compf.getColumn();
+        if (column == null || compf.getValues().isEmpty())
+            return null;
+        Integer colIdx = type.columnIdxMap.get(column);
+        if (colIdx == null)
+            return null;
+
+        FilterOperatorEnum op = compf.getOperator();
+        switch (op) {
+        case EQ:
+        case NEQ:
+        case LT:
+        case LTE:
+        case GT:
+        case GTE:
+        case IN:
+        case NOTIN:
+            break;
+        default:
+            return null;
+        }
+
+        byte[] nullBytes = compf.getNullString() == null ? null : toBytes(compf.getNullString());
+        byte[] firstValue = toBytes(compf.getFirstValue());
+        if (nullBytes != null && Arrays.equals(nullBytes, firstValue)) {
+            // compare to null is always false, and so is a null column value
+            return FALSE;
+        }
+
+        int offset = type.columnOffsets[colIdx];
+        int length = type.columnSizes[colIdx];
+        if (op == FilterOperatorEnum.IN || op == FilterOperatorEnum.NOTIN) {
+            return new InFilter(offset, length, nullBytes, compf.getValues(), op == FilterOperatorEnum.NOTIN);
+        } else {
+            return new CompareFilter(offset, length, nullBytes, firstValue, op);
+        }
+    }
+
+    // the reverse of Dictionary.dictIdToString()
+    private static byte[] toBytes(String dictIdString) {
+        try {
+            return dictIdString.getBytes("ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            // never happen
+            throw new RuntimeException(e);
+        }
+    }
+
+    // ============================================================================
+
+    /**
+     * @param row the row key, starting with the cuboid ID
+     */
+    public abstract boolean evaluate(byte[] row, int offset);
+
+    private static class ConstantFilter extends RowKeyFilter {
+        final boolean value;
+
+        ConstantFilter(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean evaluate(byte[] row, int offset) {
+            return value;
+        }
+    }
+
+    private static class AndFilter extends RowKeyFilter {
+        final RowKeyFilter[] children;
+
+        AndFilter(RowKeyFilter[] children) {
+            this.children = children;
+        }
+
+        @Override
+        public boolean evaluate(byte[] row, int offset) {
+            for (RowKeyFilter child : children) {
+                if (!child.evaluate(row, offset))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private static class OrFilter extends RowKeyFilter {
+        final RowKeyFilter[] children;
+
+        OrFilter(RowKeyFilter[] children) {
+            this.children = children;
+        }
+
+        @Override
+        public boolean evaluate(byte[] row, int offset) {
+            for (RowKeyFilter child : children) {
+                if (child.evaluate(row, offset))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    private static class NotFilter extends RowKeyFilter {
+        final RowKeyFilter child;
+
+        NotFilter(RowKeyFilter child) {
+            this.child = child;
+        }
+
+        @Override
+        public boolean evaluate(byte[] row, int offset) {
+            return !child.evaluate(row, offset);
+        }
+    }
+
+    private static abstract class ColumnFilter extends RowKeyFilter {
+        final int colOffset;
+        final int colLength;
+        final byte[] nullBytes;
+
+        ColumnFilter(int colOffset, int colLength, byte[] nullBytes) {
+            this.colOffset = colOffset;
+            this.colLength = colLength;
+            this.nullBytes = nullBytes;
+        }
+
+        boolean isNull(byte[] row, int offset) {
+            return nullBytes != null && Bytes.equals(nullBytes, 0, nullBytes.length, row, offset + colOffset, colLength);
+        }
+    }
+
+    private static class CompareFilter extends ColumnFilter {
+        final byte[] value;
+        final FilterOperatorEnum op;
+
+        CompareFilter(int colOffset, int colLength, byte[] nullBytes, byte[] value, FilterOperatorEnum op) {
+            super(colOffset, colLength, nullBytes);
+            this.value = value;
+            this.op = op;
+        }
+
+        @Override
+        public boolean evaluate(byte[] row, int offset) {
+            if (isNull(row, offset))
+                return false;
+
+            // same order as comparing the ID strings
+            int comp = Bytes.compareTo(row, offset + colOffset, colLength, value, 0, value.length);
+            switch (op) {
+            case EQ:
+                return comp == 0;
+            case NEQ:
+                return comp != 0;
+            case LT:
+                return comp < 0;
+            case LTE:
+                return comp <= 0;
+            case GT:
+                return comp > 0;
+            case GTE:
+                return comp >= 0;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class InFilter extends ColumnFilter {
+        final boolean not;
+        final int[] intValues; // sorted, when the column fits in an int
+        final byte[][] values; // sorted, otherwise
+
+        InFilter(int colOffset, int colLength, byte[] nullBytes, Collection<String> values, boolean not) {
+            super(colOffset, colLength, nullBytes);
+            this.not = not;
+
+            // values of a different length never match
+            byte[][] sameLength = new byte[values.size()][];
+            int n = 0;
+            for (String v : values) {
+                byte[] bytes = toBytes(v);
+                if (bytes.length == colLength)
+                    sameLength[n++] = bytes;
+            }
+
+            if (colLength <= 4) {
+                int[] ints = new int[n];
+                for (int i = 0; i < n; i++) {
+                    ints[i] = BytesUtil.readUnsigned(sameLength[i], 0, colLength);
+                }
+                Arrays.sort(ints);
+                this.intValues = ints;
+                this.values = null;
+            } else {
+                byte[][] sorted = Arrays.copyOf(sameLength, n);
+                Arrays.sort(sorted, Bytes.BYTES_COMPARATOR);
+                this.intValues = null;
+                this.values = sorted;
+            }
+        }
+
+        @Override
+        public boolean evaluate(byte[] row, int offset) {
+            if (isNull(row, offset))
+                return false;
+
+            return contains(row, offset + colOffset) != not;
+        }
+
+        private boolean contains(byte[] row, int colStart) {
+            if (intValues != null) {
+                return Arrays.binarySearch(intValues, BytesUtil.readUnsigned(row, colStart, colLength)) >= 0;
+            }
+
+            int low = 0, high = values.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int comp = Bytes.compareTo(values[mid], 0, colLength, row, colStart, colLength);
+                if (comp < 0)
+                    low = mid + 1;
+                else if (comp > 0)
+                    high = mid - 1;
+                else
+                    return true;
+            }
+            return false;
+        }
+    }
+}
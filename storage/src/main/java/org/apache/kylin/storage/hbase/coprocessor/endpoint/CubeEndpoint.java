@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.endpoint;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.Coprocessor;
+import org.apache.hadoop.hbase.CoprocessorEnvironment;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.CoprocessorException;
+import org.apache.hadoop.hbase.coprocessor.CoprocessorService;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.protobuf.ResponseConverter;
+import org.apache.hadoop.hbase.protobuf.generated.ClientProtos;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.storage.hbase.coprocessor.endpoint.generated.CubeVisitProtos;
+import org.apache.kylin.storage.hbase.coprocessor.observer.AggregateRegionObserver;
+import org.apache.kylin.storage.hbase.coprocessor.observer.AggregationScanner;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.RpcCallback;
+import com.google.protobuf.RpcController;
+import com.google.protobuf.Service;
+
+/**
+ * Runs a cube scan with the aggregation of AggregateRegionObserver on one
+ * region and returns the aggregated cells in pages, so that the client can
+ * visit the regions of a key range in parallel. A page that is full carries a
+ * continuation. If the groups are on a row key prefix, the next page is a new
+ * scan that starts after the last group returned. Otherwise the scanner that
+ * holds the aggregated groups is kept open under a lease for the next page;
+ * if the lease expires first, the next page runs the scan again and skips the
+ * rows returned.
+ */
+public class CubeEndpoint extends CubeVisitProtos.CubeVisitService implements Coprocessor, CoprocessorService {
+
+    // HBase uses common logging (vs. Kylin uses slf4j)
+    private static final Log LOG = LogFactory.getLog(CubeEndpoint.class);
+
+    private static final int MAX_LEASED_SCANNERS = 1000;
+
+    // scanners of all regions kept open between pages, by scanner ID
+    private static volatile Cache<Long, LeasedScanner> LEASED_SCANNERS;
+
+    private static final Random SCANNER_IDS = new Random();
+
+    private static Cache<Long, LeasedScanner> getLeasedScanners(Configuration conf) {
+        if (LEASED_SCANNERS == null) {
+            synchronized (CubeEndpoint.class) {
+                if (LEASED_SCANNERS == null) {
+                    // the lease of the scanners of HBase clients
+                    long leasePeriod = conf.getLong(HConstants.HBASE_CLIENT_SCANNER_TIMEOUT_PERIOD, HConstants.DEFAULT_HBASE_CLIENT_SCANNER_TIMEOUT_PERIOD);
+                    LEASED_SCANNERS = CacheBuilder.newBuilder().maximumSize(MAX_LEASED_SCANNERS).expireAfterAccess(leasePeriod, TimeUnit.MILLISECONDS) //
+                            .removalListener(new RemovalListener<Long, LeasedScanner>() {
+                                @Override
+                                public void onRemoval(RemovalNotification<Long, LeasedScanner> notification) {
+                                    // a scanner taken out for the next page is not closed
+                                    if (notification.wasEvicted()) {
+                                        LOG.info("Lease of scanner " + notification.getKey() + " expired");
+                                        notification.getValue().close();
+                                    }
+                                }
+                            }).build();
+                }
+            }
+        }
+        return LEASED_SCANNERS;
+    }
+
+    private RegionCoprocessorEnvironment env;
+
+    public CubeEndpoint() {
+    }
+
+    @Override
+    public void visitCube(RpcController controller, CubeVisitProtos.CubeVisitRequest request, RpcCallback<CubeVisitProtos.CubeVisitResponse> done) {
+
+        CubeVisitProtos.CubeVisitResponse response = null;
+        LeasedScanner scanner = null;
+        HRegion region = env.getRegion();
+        try {
+            Cache<Long, LeasedScanner> leasedScanners = getLeasedScanners(env.getConfiguration());
+            // closes the scanners of expired leases
+            leasedScanners.cleanUp();
+            if (request.hasScannerId()) {
+                scanner = leasedScanners.asMap().remove(request.getScannerId());
+                if (scanner != null && scanner.region != region) {
+                    leasedScanners.put(request.getScannerId(), scanner);
+                    scanner = null;
+                }
+            }
+
+            CubeVisitProtos.CubeVisitResponse.Builder builder = CubeVisitProtos.CubeVisitResponse.newBuilder();
+            if (request.getCloseScanner()) {
+                // closed below
+                response = builder.setCells(ByteString.EMPTY).build();
+            } else {
+                LeasedScanner leased = scanner;
+                scanner = null;
+                response = visitPage(request, leased, builder);
+            }
+        } catch (IOException ioe) {
+            LOG.error("Kylin Cube Endpoint Error", ioe);
+            ResponseConverter.setControllerException(controller, ioe);
+        } finally {
+            if (scanner != null) {
+                scanner.close();
+            }
+        }
+
+        done.run(response);
+    }
+
+    /**
+     * @param scanner the scanner left open by the previous page, or null
+     */
+    private CubeVisitProtos.CubeVisitResponse visitPage(CubeVisitProtos.CubeVisitRequest request, LeasedScanner scanner, CubeVisitProtos.CubeVisitResponse.Builder builder) throws IOException {
+        HRegion region = env.getRegion();
+        boolean regionOperation = false;
+        try {
+            region.startRegionOperation();
+            regionOperation = true;
+            byte[] resumeAfter = null;
+            if (scanner == null) {
+                scanner = new LeasedScanner(region);
+                scanner.open(env.getConfiguration(), ProtobufUtil.toScan(ClientProtos.Scan.parseFrom(request.getScan())));
+                if (request.hasResumeAfter()) {
+                    // the lease expired, or the region moved
+                    resumeAfter = request.getResumeAfter().toByteArray();
+                    LOG.info("Scanner to resume after " + Bytes.toStringBinary(resumeAfter) + " not found, scan again");
+                }
+            }
+
+            long maxPageBytes = request.hasMaxPageBytes() ? request.getMaxPageBytes() : Long.MAX_VALUE;
+            synchronized (scanner.innerScanner) {
+                page(scanner.scanner, resumeAfter, maxPageBytes, builder);
+            }
+            if (builder.hasContinuation()) {
+                byte[] nextStartRow = nextStartRow(scanner.scanner, builder.getContinuation().toByteArray());
+                if (nextStartRow != null) {
+                    builder.setNextStartRow(ByteString.copyFrom(nextStartRow));
+                } else {
+                    builder.setScannerId(lease(getLeasedScanners(env.getConfiguration()), scanner));
+                    scanner = null;
+                }
+            }
+            return builder.setRegionEndKey(ByteString.copyFrom(region.getEndKey())).build();
+        } finally {
+            if (scanner != null) {
+                scanner.close();
+            }
+            if (regionOperation) {
+                region.closeRegionOperation();
+            }
+        }
+    }
+
+    private static long lease(Cache<Long, LeasedScanner> leasedScanners, LeasedScanner scanner) {
+        while (true) {
+            long scannerId = SCANNER_IDS.nextLong();
+            if (leasedScanners.asMap().putIfAbsent(scannerId, scanner) == null)
+                return scannerId;
+        }
+    }
+
+    /**
+     * @return the row to scan from for the rows after the given returned row,
+     *         or null if the scanner must be kept open for them
+     */
+    static byte[] nextStartRow(RegionScanner scanner, byte[] row) {
+        if (scanner instanceof AggregationScanner) {
+            return ((AggregationScanner) scanner).getNextStartRow(row);
+        }
+        // rows as stored, their keys are unique
+        return Bytes.add(row, new byte[] { 0 });
+    }
+
+    /**
+     * Writes the cells of the rows after resumeAfter, each as a length
+     * prefixed KeyValue, see CubeEndpointScanner. Stops after the row that
+     * reaches maxPageBytes, and sets it as the continuation if more follow.
+     * The rows of a scan come in the same order each time, the aggregated
+     * ones included, and their keys are unique.
+     */
+    static void page(RegionScanner scanner, byte[] resumeAfter, long maxPageBytes, CubeVisitProtos.CubeVisitResponse.Builder response) throws IOException {
+        // written into the response as is, no copy of the whole page
+        ByteString.Output buf = ByteString.newOutput();
+        DataOutputStream out = new DataOutputStream(buf);
+        List<Cell> cells = new ArrayList<Cell>();
+        boolean skipping = resumeAfter != null;
+        boolean hasMore;
+        do {
+            cells.clear();
+            hasMore = scanner.nextRaw(cells);
+            if (cells.isEmpty())
+                continue;
+
+            Cell first = cells.get(0);
+            if (skipping) {
+                // returned by the previous pages
+                skipping = Bytes.equals(first.getRowArray(), first.getRowOffset(), first.getRowLength(), resumeAfter, 0, resumeAfter.length) == false;
+                continue;
+            }
+
+            for (Cell cell : cells) {
+                KeyValue.write(KeyValueUtil.ensureKeyValue(cell), out);
+            }
+            if (hasMore && out.size() >= maxPageBytes) {
+                response.setContinuation(ByteString.copyFrom(CellUtil.cloneRow(first)));
+                break;
+            }
+        } while (hasMore);
+
+        if (skipping) {
+            throw new DoNotRetryIOException("Row to resume after not found: " + Bytes.toStringBinary(resumeAfter));
+        }
+        out.flush();
+        response.setCells(buf.toByteString());
+    }
+
+    @Override
+    public void start(CoprocessorEnvironment env) throws IOException {
+        if (env instanceof RegionCoprocessorEnvironment) {
+            this.env = (RegionCoprocessorEnvironment) env;
+        } else {
+            throw new CoprocessorException("Must be loaded on a table region!");
+        }
+    }
+
+    @Override
+    public void stop(CoprocessorEnvironment env) throws IOException {
+        if (LEASED_SCANNERS == null)
+            return;
+
+        // the region is closing
+        HRegion region = this.env.getRegion();
+        for (Iterator<LeasedScanner> it = LEASED_SCANNERS.asMap().values().iterator(); it.hasNext();) {
+            LeasedScanner scanner = it.next();
+            if (scanner.region == region) {
+                it.remove();
+                scanner.close();
+            }
+        }
+    }
+
+    @Override
+    public Service getService() {
+        return this;
+    }
+
+    /**
+     * The scanners of a cube scan on a region, open from page to page.
+     */
+    private static class LeasedScanner {
+
+        final HRegion region;
+        RegionScanner innerScanner;
+        RegionScanner scanner;
+
+        LeasedScanner(HRegion region) {
+            this.region = region;
+        }
+
+        void open(Configuration conf, Scan scan) throws IOException {
+            innerScanner = region.getScanner(scan);
+            synchronized (innerScanner) {
+                scanner = AggregateRegionObserver.wrapScanner(conf, scan, innerScanner);
+            }
+        }
+
+        void close() {
+            IOUtils.closeQuietly(scanner);
+            IOUtils.closeQuietly(innerScanner);
+        }
+    }
+}
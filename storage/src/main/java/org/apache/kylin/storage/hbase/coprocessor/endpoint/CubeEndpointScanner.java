@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.endpoint;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.storage.hbase.coprocessor.endpoint.generated.CubeVisitProtos;
+import org.apache.kylin.storage.hbase.coprocessor.observer.ArtifactsMissingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ServiceException;
+
+/**
+ * Visits the regions of a scan through CubeEndpoint and serves the results in
+ * region order, as a table scanner would. The first pages of the next few
+ * regions are fetched in parallel ahead of the reader, and a region is read
+ * page by page, so at most a page per region visited is held in memory.
+ */
+public class CubeEndpointScanner implements ResultScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CubeEndpointScanner.class);
+
+    private static final int MAX_VISIT_THREADS = 64;
+
+    // shared by all scanners; when all threads are busy, the reader visits by itself
+    private static ExecutorService visitPool;
+
+    private static synchronized ExecutorService getVisitPool() {
+        if (visitPool == null) {
+            visitPool = new ThreadPoolExecutor(0, MAX_VISIT_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), //
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kylin-cube-endpoint-%d").build(), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return visitPool;
+    }
+
+    /**
+     * @param pageScan the scan of the pages after the first of a region, it
+     *            must carry everything the region server may have cached for
+     *            the first one, so that a region never fails half way. A
+     *            first page that fails with ArtifactsMissingException is
+     *            fetched again with it.
+     */
+    public static CubeEndpointScanner scan(HTable table, Scan scan, Scan pageScan, long maxPageBytes, int parallelRegions) throws IOException {
+        CubeEndpointScanner scanner = new CubeEndpointScanner(table, scan, pageScan, maxPageBytes, parallelRegions);
+        for (HRegionLocation region : table.getRegionsInRange(scan.getStartRow(), scan.getStopRow())) {
+            byte[] startRow = region.getRegionInfo().getStartKey();
+            if (Bytes.compareTo(scan.getStartRow(), startRow) > 0) {
+                startRow = scan.getStartRow();
+            }
+            // empty is the end of table
+            byte[] stopRow = region.getRegionInfo().getEndKey();
+            if (stopRow.length == 0 || (scan.getStopRow().length > 0 && Bytes.compareTo(scan.getStopRow(), stopRow) < 0)) {
+                stopRow = scan.getStopRow();
+            }
+            scanner.waiting.add(scanner.new RegionVisit(startRow, stopRow));
+        }
+        scanner.visitAhead();
+        return scanner;
+    }
+
+    // cells of a page are length prefixed KeyValues, grouped by row
+    static void decode(ByteString cells, List<Result> rows) throws IOException {
+        DataInputStream in = new DataInputStream(cells.newInput());
+        List<Cell> row = new ArrayList<Cell>();
+        while (in.available() > 0) {
+            KeyValue kv = KeyValue.create(in);
+            if (!row.isEmpty() && !CellUtil.matchingRow(row.get(0), kv)) {
+                rows.add(Result.create(row));
+                row = new ArrayList<Cell>();
+            }
+            row.add(kv);
+        }
+        if (!row.isEmpty()) {
+            rows.add(Result.create(row));
+        }
+    }
+
+    private final HTable table;
+    private final Scan scan;
+    private final Scan pageScan;
+    private final long maxPageBytes;
+    private final int parallelRegions;
+
+    // in region order
+    private final LinkedList<RegionVisit> waiting = new LinkedList<RegionVisit>();
+    private final LinkedList<RegionVisit> visiting = new LinkedList<RegionVisit>();
+
+    private final List<Result> rows = new ArrayList<Result>();
+    private int next = 0;
+
+    private CubeEndpointScanner(HTable table, Scan scan, Scan pageScan, long maxPageBytes, int parallelRegions) {
+        this.table = table;
+        this.scan = scan;
+        this.pageScan = pageScan;
+        this.maxPageBytes = maxPageBytes;
+        this.parallelRegions = Math.max(1, parallelRegions);
+    }
+
+    private void visitAhead() {
+        while (visiting.size() < parallelRegions && waiting.isEmpty() == false) {
+            RegionVisit visit = waiting.removeFirst();
+            visit.fetch();
+            visiting.addLast(visit);
+        }
+    }
+
+    // reads the next page of the first region visiting, the rows before are all served
+    private boolean nextPage() throws IOException {
+        if (visiting.isEmpty())
+            return false;
+
+        RegionVisit visit = visiting.getFirst();
+        CubeVisitProtos.CubeVisitResponse response = visit.take();
+        rows.clear();
+        next = 0;
+        decode(response.getCells(), rows);
+
+        if (visit.advance(response)) {
+            visit.fetch();
+        } else {
+            visiting.removeFirst();
+            visitAhead();
+        }
+        return true;
+    }
+
+    @Override
+    public Result next() throws IOException {
+        while (next >= rows.size()) {
+            if (nextPage() == false)
+                return null;
+        }
+        return rows.get(next++);
+    }
+
+    @Override
+    public Result[] next(int nbRows) throws IOException {
+        List<Result> results = new ArrayList<Result>(nbRows);
+        for (int i = 0; i < nbRows; i++) {
+            Result result = next();
+            if (result == null)
+                break;
+            results.add(result);
+        }
+        return results.toArray(new Result[results.size()]);
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+        return new Iterator<Result>() {
+
+            Result next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = CubeEndpointScanner.this.next();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Result next() {
+                Result r = next;
+                next = null;
+                return r;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        for (RegionVisit visit : visiting) {
+            visit.close();
+        }
+        visiting.clear();
+        waiting.clear();
+        rows.clear();
+    }
+
+    /**
+     * Visits the rows of a region from start to stop, a page per call. A page
+     * goes on from the next start row or the scanner left open by the previous
+     * one. If the region has split since listed, goes on with the regions
+     * after it until stop.
+     */
+    private class RegionVisit implements Callable<CubeVisitProtos.CubeVisitResponse> {
+
+        private byte[] startRow;
+        private final byte[] stopRow;
+        private boolean firstPage = true;
+        private ByteString resumeAfter;
+        private Long scannerId; // of the scanner left open on the region server
+        private Future<CubeVisitProtos.CubeVisitResponse> page;
+
+        RegionVisit(byte[] startRow, byte[] stopRow) {
+            this.startRow = startRow;
+            this.stopRow = stopRow;
+        }
+
+        void fetch() {
+            page = getVisitPool().submit(this);
+        }
+
+        /**
+         * Does not interrupt a page being read, HBase client does not like it.
+         * Closes the scanner left open by the previous page, or by the page
+         * being read once it is done.
+         */
+        void close() {
+            if (page == null)
+                return;
+
+            final boolean cancelled = page.cancel(false);
+            if (cancelled && scannerId == null)
+                return;
+
+            final Future<CubeVisitProtos.CubeVisitResponse> lastPage = page;
+            final Long previousScannerId = scannerId;
+            getVisitPool().submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled) {
+                        release(previousScannerId);
+                        return;
+                    }
+                    try {
+                        CubeVisitProtos.CubeVisitResponse response = lastPage.get();
+                        if (response.hasScannerId()) {
+                            release(response.getScannerId());
+                        }
+                    } catch (Exception e) {
+                        // failed, nothing left open
+                    }
+                }
+            });
+        }
+
+        private void release(long id) {
+            CubeVisitProtos.CubeVisitRequest.Builder request = CubeVisitProtos.CubeVisitRequest.newBuilder();
+            request.setScan(ByteString.EMPTY);
+            request.setScannerId(id);
+            request.setCloseScanner(true);
+            try {
+                CubeVisitProtos.CubeVisitService.newBlockingStub(table.coprocessorService(startRow)).visitCube(null, request.build());
+            } catch (ServiceException e) {
+                // the lease expires anyway
+                logger.warn("Failed to close scanner " + id + " on table " + table.getName(), e);
+            }
+        }
+
+        CubeVisitProtos.CubeVisitResponse take() throws IOException {
+            try {
+                return page.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted when visit cube on table " + table.getName() + " through endpoint", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to visit cube on table " + table.getName() + " through endpoint", e.getCause());
+            }
+        }
+
+        /**
+         * @return true if there are more pages
+         */
+        boolean advance(CubeVisitProtos.CubeVisitResponse response) {
+            resumeAfter = null;
+            scannerId = null;
+            byte[] regionEndKey = response.getRegionEndKey().toByteArray();
+            if (response.hasContinuation()) {
+                if (response.hasNextStartRow() == false) {
+                    firstPage = false;
+                    resumeAfter = response.getContinuation();
+                    scannerId = response.hasScannerId() ? response.getScannerId() : null;
+                    return true;
+                }
+                byte[] nextStartRow = response.getNextStartRow().toByteArray();
+                if (isBefore(nextStartRow, regionEndKey) && isBefore(nextStartRow, stopRow)) {
+                    firstPage = false;
+                    startRow = nextStartRow;
+                    return true;
+                }
+                // no group starts in the region after the last one returned
+            }
+
+            if (regionEndKey.length > 0 && isBefore(regionEndKey, stopRow)) {
+                firstPage = true;
+                startRow = regionEndKey;
+                return true;
+            }
+            return false;
+        }
+
+        // empty is the end of table
+        private boolean isBefore(byte[] row, byte[] stop) {
+            return stop.length == 0 || Bytes.compareTo(row, stop) < 0;
+        }
+
+        @Override
+        public CubeVisitProtos.CubeVisitResponse call() throws IOException {
+            try {
+                return visit(firstPage ? scan : pageScan);
+            } catch (IOException e) {
+                if (firstPage == false || scan == pageScan || ArtifactsMissingException.isCauseOf(e) == false)
+                    throw e;
+                // nothing of the region returned yet
+                return visit(pageScan);
+            }
+        }
+
+        private CubeVisitProtos.CubeVisitResponse visit(Scan visitScan) throws IOException {
+            Scan regionScan = new Scan(visitScan);
+            regionScan.setStartRow(startRow);
+            regionScan.setStopRow(stopRow);
+
+            CubeVisitProtos.CubeVisitRequest.Builder request = CubeVisitProtos.CubeVisitRequest.newBuilder();
+            request.setScan(ProtobufUtil.toScan(regionScan).toByteString());
+            request.setMaxPageBytes(maxPageBytes);
+            if (resumeAfter != null) {
+                request.setResumeAfter(resumeAfter);
+            }
+            if (scannerId != null) {
+                request.setScannerId(scannerId);
+            }
+
+            try {
+                return CubeVisitProtos.CubeVisitService.newBlockingStub(table.coprocessorService(startRow)).visitCube(null, request.build());
+            } catch (ServiceException e) {
+                throw ProtobufUtil.getRemoteException(e);
+            }
+        }
+    }
+}
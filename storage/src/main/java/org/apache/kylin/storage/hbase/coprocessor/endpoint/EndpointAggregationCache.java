@@ -22,8 +22,10 @@ import org.apache.kylin.metadata.measure.MeasureAggregator;
 import org.apache.kylin.storage.hbase.coprocessor.AggregationCache;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorProjector;
 
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Created by Hongbin Ma(Binmahone) on 11/27/14.
@@ -41,7 +43,17 @@ public class EndpointAggregationCache extends AggregationCache {
         return this.aggregators.createBuffer();
     }
 
-    public Set<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> getAllEntries() {
-        return aggBufMap.entrySet();
+    public Collection<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> getAllEntries() {
+        return new AbstractCollection<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>>() {
+            @Override
+            public Iterator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> iterator() {
+                return sortedIterator();
+            }
+
+            @Override
+            public int size() {
+                return (int) getSize();
+            }
+        };
     }
 }
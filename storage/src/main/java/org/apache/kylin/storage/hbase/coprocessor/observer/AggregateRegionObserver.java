@@ -25,6 +25,9 @@ import org.apache.kylin.storage.hbase.coprocessor.CoprocessorProjector;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorRowType;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
@@ -32,6 +35,7 @@ import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.RegionCoprocessorHost;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
 
 /**
  * @author yangli9
@@ -46,6 +50,14 @@ public class AggregateRegionObserver extends BaseRegionObserver {
     static final String PROJECTOR = "_Projector";
     static final String AGGREGATORS = "_Aggregators";
     static final String FILTER = "_Filter";
+    static final String MEMORY_BUDGET = "_MemoryBudget";
+    static final String TOPN = "_TopN";
+    static final String STATS = "_Stats";
+    // digest of type, projector, aggregators, filter and top N, which may be left out if the region server has them cached
+    static final String DIGEST = "_Digest";
+
+    // qualifier of the stats cell appended to the last row, sorts after any real qualifier
+    static final byte[] STATS_QUALIFIER = new byte[] { (byte) 0xff, 'S', 'T', 'A', 'T', 'S' };
 
     @Override
     public final RegionScanner postScannerOpen(final ObserverContext<RegionCoprocessorEnvironment> ctxt, final Scan scan, final RegionScanner innerScanner) throws IOException {
@@ -56,33 +68,26 @@ public class AggregateRegionObserver extends BaseRegionObserver {
         if (copAbortOnError) {
             try {
                 return doPostScannerObserver(ctxt, scan, innerScanner);
+            } catch (ArtifactsMissingException e) {
+                // an IOException, does not abort; the client scans again with the artifacts
+                innerScanner.close();
+                throw e;
             } catch (Throwable e) {
                 LOG.error("Kylin Coprocessor Error", e);
                 return innerScanner;
             }
         } else {
-            return doPostScannerObserver(ctxt, scan, innerScanner);
+            try {
+                return doPostScannerObserver(ctxt, scan, innerScanner);
+            } catch (ArtifactsMissingException e) {
+                // the region server does not close a scanner that failed to open
+                innerScanner.close();
+                throw e;
+            }
         }
     }
 
     private RegionScanner doPostScannerObserver(final ObserverContext<RegionCoprocessorEnvironment> ctxt, final Scan scan, final RegionScanner innerScanner) throws IOException {
-        byte[] coprocessorEnableBytes = scan.getAttribute(COPROCESSOR_ENABLE);
-        if (coprocessorEnableBytes == null || coprocessorEnableBytes.length == 0 || coprocessorEnableBytes[0] == 0) {
-            return innerScanner;
-        }
-
-        byte[] typeBytes = scan.getAttribute(TYPE);
-        CoprocessorRowType type = CoprocessorRowType.deserialize(typeBytes);
-
-        byte[] projectorBytes = scan.getAttribute(PROJECTOR);
-        CoprocessorProjector projector = CoprocessorProjector.deserialize(projectorBytes);
-
-        byte[] aggregatorBytes = scan.getAttribute(AGGREGATORS);
-        ObserverAggregators aggregators = ObserverAggregators.deserialize(aggregatorBytes);
-
-        byte[] filterBytes = scan.getAttribute(FILTER);
-        CoprocessorFilter filter = CoprocessorFilter.deserialize(filterBytes);
-
         // start/end region operation & sync on scanner is suggested by the
         // javadoc of RegionScanner.nextRaw()
         // FIXME: will the lock still work when a iterator is returned? is it safe? Is readonly attribute helping here? by mhb
@@ -90,7 +95,7 @@ public class AggregateRegionObserver extends BaseRegionObserver {
         region.startRegionOperation();
         try {
             synchronized (innerScanner) {
-                return new AggregationScanner(type, filter, projector, aggregators, innerScanner);
+                return wrapScanner(ctxt.getEnvironment().getConfiguration(), scan, innerScanner);
             }
         } finally {
             region.closeRegionOperation();
@@ -98,4 +103,59 @@ public class AggregateRegionObserver extends BaseRegionObserver {
 
     }
 
+    /**
+     * Wraps a region scanner with the aggregation asked by the coprocessor
+     * attributes of the scan, shared with the cube endpoint.
+     * 
+     * @return the inner scanner as is if the scan does not enable coprocessor
+     * @throws ArtifactsMissingException if the scan carries only the digest
+     *         and the artifacts of it are not cached
+     */
+    public static RegionScanner wrapScanner(Configuration conf, Scan scan, RegionScanner innerScanner) throws IOException {
+        byte[] coprocessorEnableBytes = scan.getAttribute(COPROCESSOR_ENABLE);
+        if (coprocessorEnableBytes == null || coprocessorEnableBytes.length == 0 || coprocessorEnableBytes[0] == 0) {
+            return innerScanner;
+        }
+
+        int cacheSize = conf.getInt(ObserverArtifacts.CACHE_SIZE_KEY, ObserverArtifacts.DEFAULT_CACHE_SIZE);
+        byte[] digest = scan.getAttribute(DIGEST);
+        byte[] typeBytes = scan.getAttribute(TYPE);
+        ObserverArtifacts artifacts;
+        if (typeBytes != null) {
+            artifacts = new ObserverArtifacts(typeBytes, scan.getAttribute(PROJECTOR), scan.getAttribute(AGGREGATORS), scan.getAttribute(FILTER), scan.getAttribute(TOPN));
+            if (digest != null) {
+                ObserverArtifacts.put(digest, artifacts, cacheSize);
+            }
+        } else {
+            artifacts = digest == null ? null : ObserverArtifacts.get(digest, cacheSize);
+            if (artifacts == null) {
+                // evicted, or the region moved here after the client sent the payload;
+                // plain rows would break the limit and sorted merge of the client, ask for the payload
+                LOG.info("Coprocessor attributes of digest " + Bytes.toStringBinary(digest) + " not cached");
+                HRegionInfo regionInfo = innerScanner.getRegionInfo();
+                byte[] startKey = regionInfo == null ? HConstants.EMPTY_START_ROW : regionInfo.getStartKey();
+                // the cube endpoint scans part of a region
+                if (Bytes.compareTo(scan.getStartRow(), startKey) > 0) {
+                    startKey = scan.getStartRow();
+                }
+                throw ArtifactsMissingException.forRegion(startKey);
+            }
+        }
+
+        CoprocessorRowType type = artifacts.getType();
+        CoprocessorProjector projector = artifacts.newProjector();
+        ObserverAggregators aggregators = artifacts.newAggregators();
+        CoprocessorFilter filter = artifacts.newFilter();
+
+        // aggregation spills to disk beyond the budget, fall back to the default cap for older clients
+        byte[] memoryBudgetBytes = scan.getAttribute(MEMORY_BUDGET);
+        long memoryBudget = memoryBudgetBytes == null ? AggregationScanner.DEFAULT_MEMORY_BUDGET : Bytes.toLong(memoryBudgetBytes);
+
+        ObserverTopN topN = artifacts.getTopN();
+
+        AggregationScanner aggrScanner = new AggregationScanner(type, filter, projector, aggregators, memoryBudget, topN, innerScanner);
+        aggrScanner.setReturnStats(scan.getAttribute(STATS) != null);
+        return aggrScanner;
+    }
+
 }
@@ -25,9 +25,14 @@ import java.util.List;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorFilter;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorProjector;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorRowType;
+import org.apache.kylin.storage.hbase.coprocessor.RowKeyFilter;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValue.Type;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
 
 import org.apache.kylin.metadata.measure.MeasureAggregator;
 
@@ -37,71 +42,142 @@ import org.apache.kylin.metadata.measure.MeasureAggregator;
  */
 public class AggregationScanner implements RegionScanner {
 
+    static final long DEFAULT_MEMORY_BUDGET = 500 * 1024 * 1024; // 500 MB
+
     private RegionScanner outerScanner;
+    private CoprocessorProjector streamingGroupBy; // null unless groups stream by in row key order
+    private Stats stats = new Stats();
+    private boolean returnStats = false;
 
     public AggregationScanner(CoprocessorRowType type, CoprocessorFilter filter, CoprocessorProjector groupBy, ObserverAggregators aggrs, RegionScanner innerScanner) throws IOException {
+        this(type, filter, groupBy, aggrs, DEFAULT_MEMORY_BUDGET, innerScanner);
+    }
+
+    public AggregationScanner(CoprocessorRowType type, CoprocessorFilter filter, CoprocessorProjector groupBy, ObserverAggregators aggrs, long memoryBudget, RegionScanner innerScanner) throws IOException {
+        this(type, filter, groupBy, aggrs, memoryBudget, null, innerScanner);
+    }
+
+    /**
+     * @param topN if not null, returns only the top groups, works only when group by is a row key prefix
+     */
+    public AggregationScanner(CoprocessorRowType type, CoprocessorFilter filter, CoprocessorProjector groupBy, ObserverAggregators aggrs, long memoryBudget, ObserverTopN topN, RegionScanner innerScanner) throws IOException {
+
+        if (groupBy.isGroupByPrefix()) {
+            AggregateRegionObserver.LOG.info("Kylin Coprocessor start, streaming aggregation on row key prefix" + (topN == null ? "" : ", " + topN));
+            this.outerScanner = new StreamingAggregationScanner(type, filter, groupBy, aggrs, topN, innerScanner, stats);
+            if (topN == null) {
+                this.streamingGroupBy = groupBy;
+            }
+            return;
+        }
 
         AggregateRegionObserver.LOG.info("Kylin Coprocessor start");
 
         ObserverAggregationCache aggCache;
-        Stats stats = new Stats();
 
-        aggCache = buildAggrCache(innerScanner, type, groupBy, aggrs, filter, stats);
-        stats.countOutputRow(aggCache.getSize());
+        aggCache = buildAggrCache(innerScanner, type, groupBy, aggrs, filter, memoryBudget, stats);
+        // groups spilled in different runs may merge, so this is an upper bound when spilled
+        stats.countOutputRow(aggCache.getSize() + aggCache.getSpilledRows());
+        stats.countSpill(aggCache.getSpillCount(), aggCache.getSpilledRows());
         this.outerScanner = aggCache.getScanner(innerScanner);
 
         AggregateRegionObserver.LOG.info("Kylin Coprocessor aggregation done: " + stats);
     }
 
     @SuppressWarnings("rawtypes")
-    ObserverAggregationCache buildAggrCache(final RegionScanner innerScanner, CoprocessorRowType type, CoprocessorProjector projector, ObserverAggregators aggregators, CoprocessorFilter filter, Stats stats) throws IOException {
+    ObserverAggregationCache buildAggrCache(final RegionScanner innerScanner, CoprocessorRowType type, CoprocessorProjector projector, ObserverAggregators aggregators, CoprocessorFilter filter, long memoryBudget, Stats stats) throws IOException {
 
         ObserverAggregationCache aggCache = new ObserverAggregationCache(aggregators);
+        aggCache.setMemoryBudget(memoryBudget);
 
         ObserverTuple tuple = new ObserverTuple(type);
+        RowKeyFilter rowKeyFilter = filter == null ? RowKeyFilter.TRUE : filter.compile(type);
         boolean hasMore = true;
+        boolean done = false;
         List<Cell> results = new ArrayList<Cell>();
-        while (hasMore) {
-            results.clear();
-            hasMore = innerScanner.nextRaw(results);
-            if (results.isEmpty())
-                continue;
-
-            if (stats != null)
-                stats.countInputRow(results);
+        try {
+            while (hasMore) {
+                results.clear();
+                hasMore = innerScanner.nextRaw(results);
+                if (results.isEmpty())
+                    continue;
+
+                if (stats != null)
+                    stats.countInputRow(results);
+
+                Cell cell = results.get(0);
+                if (rowKeyFilter != null) {
+                    if (rowKeyFilter.evaluate(cell.getRowArray(), cell.getRowOffset()) == false)
+                        continue;
+                } else {
+                    tuple.setUnderlying(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength());
+                    if (filter.evaluate(tuple) == false)
+                        continue;
+                }
+
+                CoprocessorProjector.AggrKey aggKey = projector.getAggrKey(results);
+                MeasureAggregator[] bufs = aggCache.getBuffer(aggKey);
+                aggregators.aggregate(bufs, results);
+
+                aggCache.checkMemoryUsage();
+            }
+            done = true;
+        } finally {
+            // nobody else will close the cache to delete spill files
+            if (done == false)
+                aggCache.close();
+        }
+        return aggCache;
+    }
 
-            Cell cell = results.get(0);
-            tuple.setUnderlying(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength());
-            if (filter != null && filter.evaluate(tuple) == false)
-                continue;
+    /**
+     * @return the row to scan from for the groups after the given returned
+     *         row, or null if they can only be read from this scanner, as
+     *         groups aggregated in memory or ranked for top N are
+     */
+    public byte[] getNextStartRow(byte[] row) {
+        return streamingGroupBy == null ? null : streamingGroupBy.getNextGroupStartRow(row);
+    }
 
-            CoprocessorProjector.AggrKey aggKey = projector.getAggrKey(results);
-            MeasureAggregator[] bufs = aggCache.getBuffer(aggKey);
-            aggregators.aggregate(bufs, results);
+    /**
+     * If set, a stats cell with input and output row counts is appended to
+     * the last returned row, for the client to learn the aggregation ratio.
+     */
+    public void setReturnStats(boolean returnStats) {
+        this.returnStats = returnStats;
+    }
 
-            aggCache.checkMemoryUsage();
+    private boolean appendStatsIfLast(boolean hasMore, List<Cell> results) {
+        if (hasMore == false && returnStats && results.isEmpty() == false) {
+            Cell last = results.get(results.size() - 1);
+            byte[] value = Bytes.add(Bytes.toBytes(stats.inputRows), Bytes.toBytes(stats.outputRows));
+            results.add(new KeyValue(last.getRowArray(), last.getRowOffset(), last.getRowLength(), //
+                    last.getFamilyArray(), last.getFamilyOffset(), last.getFamilyLength(), //
+                    AggregateRegionObserver.STATS_QUALIFIER, 0, AggregateRegionObserver.STATS_QUALIFIER.length, //
+                    HConstants.LATEST_TIMESTAMP, Type.Put, //
+                    value, 0, value.length));
         }
-        return aggCache;
+        return hasMore;
     }
 
     @Override
     public boolean next(List<Cell> results) throws IOException {
-        return outerScanner.next(results);
+        return appendStatsIfLast(outerScanner.next(results), results);
     }
 
     @Override
     public boolean next(List<Cell> result, int limit) throws IOException {
-        return outerScanner.next(result, limit);
+        return appendStatsIfLast(outerScanner.next(result, limit), result);
     }
 
     @Override
     public boolean nextRaw(List<Cell> result) throws IOException {
-        return outerScanner.nextRaw(result);
+        return appendStatsIfLast(outerScanner.nextRaw(result), result);
     }
 
     @Override
     public boolean nextRaw(List<Cell> result, int limit) throws IOException {
-        return outerScanner.nextRaw(result, limit);
+        return appendStatsIfLast(outerScanner.nextRaw(result, limit), result);
     }
 
     @Override
@@ -134,10 +210,12 @@ public class AggregationScanner implements RegionScanner {
         return outerScanner.getMvccReadPoint();
     }
 
-    private static class Stats {
+    static class Stats {
         long inputRows = 0;
         long inputBytes = 0;
         long outputRows = 0;
+        int spills = 0;
+        long spilledRows = 0;
 
         // have no outputBytes because that requires actual serialize all the
         // aggregator buffers
@@ -154,9 +232,17 @@ public class AggregationScanner implements RegionScanner {
             outputRows += rowCount;
         }
 
+        public void countSpill(int spillCount, long spilledRowCount) {
+            spills += spillCount;
+            spilledRows += spilledRowCount;
+        }
+
         public String toString() {
             double percent = (double) outputRows / inputRows * 100;
-            return Math.round(percent) + "% = " + outputRows + " (out rows) / " + inputRows + " (in rows); in bytes = " + inputBytes + "; est. out bytes = " + Math.round(inputBytes * percent / 100);
+            String str = Math.round(percent) + "% = " + outputRows + " (out rows) / " + inputRows + " (in rows); in bytes = " + inputBytes + "; est. out bytes = " + Math.round(inputBytes * percent / 100);
+            if (spills > 0)
+                str += "; spilled " + spilledRows + " rows to disk in " + spills + " runs";
+            return str;
         }
     }
 }
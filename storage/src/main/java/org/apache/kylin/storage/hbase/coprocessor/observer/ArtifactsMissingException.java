@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.observer;
+
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.ipc.RemoteException;
+
+/**
+ * Thrown by a region server asked to scan with a digest whose coprocessor
+ * artifacts it does not have, so that the client scans that region again with
+ * the full artifacts. Only the class and the message survive the RPC, so the
+ * client scans region by region and knows the region from the key range it
+ * asked for.
+ */
+public class ArtifactsMissingException extends DoNotRetryIOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String PREFIX = "Coprocessor artifacts not cached, region start key: ";
+
+    // for the RPC client to recreate the exception
+    public ArtifactsMissingException(String message) {
+        super(message);
+    }
+
+    static ArtifactsMissingException forRegion(byte[] regionStartKey) {
+        return new ArtifactsMissingException(PREFIX + Bytes.toStringBinary(regionStartKey));
+    }
+
+    /**
+     * @return true if the error is caused by a region server missing the
+     *         artifacts, as received by the client
+     */
+    public static boolean isCauseOf(Throwable e) {
+        for (; e != null; e = e.getCause()) {
+            if (e instanceof ArtifactsMissingException)
+                return true;
+            // not unwrapped by the RPC client
+            if (e instanceof RemoteException && ArtifactsMissingException.class.getName().equals(((RemoteException) e).getClassName()))
+                return true;
+        }
+        return false;
+    }
+}
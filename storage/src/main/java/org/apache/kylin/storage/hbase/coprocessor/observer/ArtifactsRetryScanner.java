@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.observer;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.storage.hbase.coprocessor.endpoint.CubeEndpointScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+
+/**
+ * Scans with the digest alone if all region servers of the scan are known to
+ * have the coprocessor artifacts, or else with the full artifacts. The digest
+ * scan goes region by region, a region that misses the artifacts anyway fails
+ * with ArtifactsMissingException before returning anything, and is scanned
+ * again with the full artifacts together with the regions after it. Through
+ * the cube endpoint, CubeEndpointScanner visits such a region again by itself.
+ * 
+ * The region servers are known to have the artifacts once a scan that carries
+ * them has run to the end; a restarted region server has a new start code and
+ * is asked for them again.
+ */
+class ArtifactsRetryScanner implements ResultScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArtifactsRetryScanner.class);
+
+    // (region server with start code, digest) of the artifacts sent, see AggregateRegionObserver.DIGEST
+    static final Cache<String, Boolean> SENT_ARTIFACTS = CacheBuilder.newBuilder().maximumSize(100000).expireAfterWrite(1, TimeUnit.HOURS).build();
+
+    static ResultScanner scan(HTable table, Scan digestScan, Scan fullScan, KylinConfig config) throws IOException {
+        String digest = Bytes.toStringBinary(digestScan.getAttribute(AggregateRegionObserver.DIGEST));
+        boolean sent = isArtifactsSent(table, fullScan, digest);
+        ArtifactsRetryScanner scanner = new ArtifactsRetryScanner(table, digestScan, fullScan, digest);
+        if (config.isCubeEndpointEnabled()) {
+            // later pages of a region carry the full artifacts, a region that misses them is visited again from its start
+            scanner.scanner = CubeEndpointScanner.scan(table, sent ? digestScan : fullScan, fullScan, config.getCubeEndpointPageBytes(), config.getCubeEndpointParallelRegions());
+            scanner.full = true;
+        } else if (sent) {
+            // a range always lies in one region or more
+            scanner.regions = regionRanges(table, fullScan);
+            scanner.nextRegion();
+        } else {
+            scanner.scanner = table.getScanner(fullScan);
+            scanner.full = true;
+        }
+        return scanner;
+    }
+
+    private static boolean isArtifactsSent(HTable table, Scan scan, String digest) throws IOException {
+        for (HRegionLocation region : table.getRegionsInRange(scan.getStartRow(), scan.getStopRow())) {
+            if (SENT_ARTIFACTS.getIfPresent(key(region, digest)) == null)
+                return false;
+        }
+        return true;
+    }
+
+    private static void markArtifactsSent(HTable table, Scan scan, String digest) throws IOException {
+        for (HRegionLocation region : table.getRegionsInRange(scan.getStartRow(), scan.getStopRow())) {
+            SENT_ARTIFACTS.put(key(region, digest), Boolean.TRUE);
+        }
+    }
+
+    private static String key(HRegionLocation region, String digest) {
+        // host, port and start code
+        return region.getServerName() + "/" + digest;
+    }
+
+    // the (start, stop) rows of the scan in each region, in order
+    private static LinkedList<byte[][]> regionRanges(HTable table, Scan scan) throws IOException {
+        LinkedList<byte[][]> ranges = Lists.newLinkedList();
+        for (HRegionLocation region : table.getRegionsInRange(scan.getStartRow(), scan.getStopRow())) {
+            byte[] startRow = region.getRegionInfo().getStartKey();
+            if (Bytes.compareTo(scan.getStartRow(), startRow) > 0) {
+                startRow = scan.getStartRow();
+            }
+            // empty is the end of table
+            byte[] stopRow = region.getRegionInfo().getEndKey();
+            if (stopRow.length == 0 || (scan.getStopRow().length > 0 && Bytes.compareTo(scan.getStopRow(), stopRow) < 0)) {
+                stopRow = scan.getStopRow();
+            }
+            ranges.add(new byte[][] { startRow, stopRow });
+        }
+        return ranges;
+    }
+
+    private final HTable table;
+    private final Scan digestScan;
+    private final Scan fullScan;
+    private final String digest;
+
+    private ResultScanner scanner;
+    private boolean full;
+    private boolean exhausted;
+
+    // of the digest scan, the regions after the current one
+    private LinkedList<byte[][]> regions;
+    private byte[] regionStartRow;
+    private boolean regionReturned;
+
+    private ArtifactsRetryScanner(HTable table, Scan digestScan, Scan fullScan, String digest) {
+        this.table = table;
+        this.digestScan = digestScan;
+        this.fullScan = fullScan;
+        this.digest = digest;
+    }
+
+    @Override
+    public Result next() throws IOException {
+        while (true) {
+            Result result;
+            try {
+                result = scanner.next();
+            } catch (IOException e) {
+                // a region that split since listed cannot be scanned again once rows of it are returned
+                if (full || regionReturned || ArtifactsMissingException.isCauseOf(e) == false)
+                    throw e;
+                retryFrom(regionStartRow);
+                continue;
+            }
+
+            if (result != null) {
+                regionReturned = true;
+                return result;
+            }
+            if (full == false && regions.isEmpty() == false) {
+                scanner.close();
+                nextRegion();
+                continue;
+            }
+            if (exhausted == false) {
+                exhausted = true;
+                // every region has been scanned with the artifacts, or with the digest of them
+                markArtifactsSent(table, fullScan, digest);
+            }
+            return null;
+        }
+    }
+
+    private void nextRegion() throws IOException {
+        byte[][] range = regions.removeFirst();
+        regionStartRow = range[0];
+        regionReturned = false;
+
+        Scan regionScan = new Scan(digestScan);
+        regionScan.setStartRow(range[0]);
+        regionScan.setStopRow(range[1]);
+        scanner = null;
+        try {
+            scanner = table.getScanner(regionScan);
+        } catch (IOException e) {
+            if (ArtifactsMissingException.isCauseOf(e) == false)
+                throw e;
+            retryFrom(regionStartRow);
+        }
+    }
+
+    // the rows before the start row of the region have all been returned
+    private void retryFrom(byte[] startRow) throws IOException {
+        logger.info("Coprocessor artifacts missing on region server, scan again with them from " + Bytes.toStringBinary(startRow));
+        if (scanner != null) {
+            scanner.close();
+        }
+
+        Scan retry = new Scan(fullScan);
+        retry.setStartRow(startRow);
+        scanner = table.getScanner(retry);
+        full = true;
+    }
+
+    @Override
+    public Result[] next(int nbRows) throws IOException {
+        List<Result> results = Lists.newArrayListWithCapacity(nbRows);
+        for (int i = 0; i < nbRows; i++) {
+            Result result = next();
+            if (result == null)
+                break;
+            results.add(result);
+        }
+        return results.toArray(new Result[results.size()]);
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+        return new Iterator<Result>() {
+
+            Result next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = ArtifactsRetryScanner.this.next();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Result next() {
+                Result r = next;
+                next = null;
+                return r;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (scanner != null) {
+            scanner.close();
+        }
+    }
+}
@@ -18,6 +18,8 @@
 
 package org.apache.kylin.storage.hbase.coprocessor.observer;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
@@ -27,10 +29,7 @@ import java.util.Map.Entry;
 import org.apache.kylin.storage.hbase.coprocessor.AggregationCache;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorProjector;
 import org.apache.hadoop.hbase.Cell;
-import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionInfo;
-import org.apache.hadoop.hbase.KeyValue;
-import org.apache.hadoop.hbase.KeyValue.Type;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 
 import org.apache.kylin.metadata.measure.MeasureAggregator;
@@ -42,9 +41,11 @@ import org.apache.kylin.metadata.measure.MeasureAggregator;
 public class ObserverAggregationCache extends AggregationCache {
 
     private final ObserverAggregators aggregators;
+    private final ByteBuffer[] spillValues;
 
     public ObserverAggregationCache(ObserverAggregators aggregators) {
         this.aggregators = aggregators;
+        this.spillValues = new ByteBuffer[aggregators.getHColsNum()];
     }
 
     public RegionScanner getScanner(RegionScanner innerScanner) {
@@ -56,6 +57,34 @@ public class ObserverAggregationCache extends AggregationCache {
         return aggregators.createBuffer();
     }
 
+    @Override
+    protected boolean isSpillSupported() {
+        return true;
+    }
+
+    @Override
+    protected void writeBuffer(MeasureAggregator[] aggBuf, DataOutputStream out) throws IOException {
+        ByteBuffer[] values = aggregators.getHColValues(aggBuf);
+        for (ByteBuffer value : values) {
+            out.writeInt(value.position());
+            out.write(value.array(), 0, value.position());
+        }
+    }
+
+    @Override
+    protected void mergeBuffer(DataInputStream in, MeasureAggregator[] aggBuf) throws IOException {
+        for (int i = 0; i < spillValues.length; i++) {
+            int len = in.readInt();
+            if (spillValues[i] == null || spillValues[i].capacity() < len) {
+                spillValues[i] = ByteBuffer.allocate(Math.max(len, 64));
+            }
+            in.readFully(spillValues[i].array(), 0, len);
+            spillValues[i].clear();
+            spillValues[i].limit(len);
+        }
+        aggregators.aggregate(aggBuf, spillValues);
+    }
+
     private class AggregationRegionScanner implements RegionScanner {
 
         private final RegionScanner innerScanner;
@@ -63,7 +92,7 @@ public class ObserverAggregationCache extends AggregationCache {
 
         public AggregationRegionScanner(RegionScanner innerScanner) {
             this.innerScanner = innerScanner;
-            this.iterator = aggBufMap.entrySet().iterator();
+            this.iterator = sortedIterator();
         }
 
         @Override
@@ -72,41 +101,13 @@ public class ObserverAggregationCache extends AggregationCache {
             boolean hasMore = false;
             if (iterator.hasNext()) {
                 Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> entry = iterator.next();
-                makeCells(entry, results);
+                aggregators.makeCells(entry.getKey(), entry.getValue(), results);
                 hasMore = iterator.hasNext();
             }
             // AggregateRegionObserver.LOG.info("Kylin Scanner next() done");
             return hasMore;
         }
 
-        private void makeCells(Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> entry, List<Cell> results) {
-            byte[][] families = aggregators.getHColFamilies();
-            byte[][] qualifiers = aggregators.getHColQualifiers();
-            int nHCols = aggregators.getHColsNum();
-
-            CoprocessorProjector.AggrKey rowKey = entry.getKey();
-            MeasureAggregator[] aggBuf = entry.getValue();
-            ByteBuffer[] rowValues = aggregators.getHColValues(aggBuf);
-
-            if (nHCols == 0) {
-                Cell keyValue = new KeyValue(rowKey.get(), rowKey.offset(), rowKey.length(), //
-                        null, 0, 0, //
-                        null, 0, 0, //
-                        HConstants.LATEST_TIMESTAMP, Type.Put, //
-                        null, 0, 0);
-                results.add(keyValue);
-            } else {
-                for (int i = 0; i < nHCols; i++) {
-                    Cell keyValue = new KeyValue(rowKey.get(), rowKey.offset(), rowKey.length(), //
-                            families[i], 0, families[i].length, //
-                            qualifiers[i], 0, qualifiers[i].length, //
-                            HConstants.LATEST_TIMESTAMP, Type.Put, //
-                            rowValues[i].array(), 0, rowValues[i].position());
-                    results.add(keyValue);
-                }
-            }
-        }
-
         @Override
         public boolean next(List<Cell> result, int limit) throws IOException {
             return next(result);
@@ -125,6 +126,7 @@ public class ObserverAggregationCache extends AggregationCache {
         @Override
         public void close() throws IOException {
             // AggregateRegionObserver.LOG.info("Kylin Scanner close()");
+            ObserverAggregationCache.this.close();
             innerScanner.close();
             // AggregateRegionObserver.LOG.info("Kylin Scanner close() done");
         }
@@ -25,8 +25,12 @@ import java.util.Comparator;
 import java.util.List;
 
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorConstants;
+import org.apache.kylin.storage.hbase.coprocessor.CoprocessorProjector;
 
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValue.Type;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import org.apache.kylin.common.util.BytesSerializer;
@@ -136,6 +140,19 @@ public class ObserverAggregators {
         this.nTotalMeasures = nTotalMeasures;
     }
 
+    /**
+     * Aggregators of the same columns with their own codecs and buffers, for
+     * another scan. Nothing is parsed again.
+     */
+    public ObserverAggregators copy() {
+        HCol[] copies = new HCol[nHCols];
+        for (int i = 0; i < nHCols; i++) {
+            HCol col = hcols[i];
+            copies[i] = new HCol(col.family, col.qualifier, col.funcNames, col.dataTypes);
+        }
+        return new ObserverAggregators(copies);
+    }
+
     private HCol[] sort(HCol[] hcols) {
         HCol[] copy = Arrays.copyOf(hcols, hcols.length);
         Arrays.sort(copy, new Comparator<HCol>() {
@@ -173,13 +190,27 @@ public class ObserverAggregators {
             }
 
             ByteBuffer input = ByteBuffer.wrap(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+            i = aggregate(col, input, measureAggrs, i);
+        }
+    }
 
-            col.measureCodec.decode(input, col.measureValues);
-            for (int j = 0; j < col.nMeasures; j++)
-                measureAggrs[i++].aggregate(col.measureValues[j]);
+    /**
+     * Aggregates encoded column values, as returned by {@link #getHColValues}.
+     */
+    public void aggregate(MeasureAggregator[] measureAggrs, ByteBuffer[] hColValues) {
+        int i = 0;
+        for (int ci = 0; ci < nHCols; ci++) {
+            i = aggregate(hcols[ci], hColValues[ci], measureAggrs, i);
         }
     }
 
+    private int aggregate(HCol col, ByteBuffer input, MeasureAggregator[] measureAggrs, int i) {
+        col.measureCodec.decode(input, col.measureValues);
+        for (int j = 0; j < col.nMeasures; j++)
+            measureAggrs[i++].aggregate(col.measureValues[j]);
+        return i;
+    }
+
     private Cell findCell(HCol col, List<Cell> cells) {
         // cells are ordered by timestamp asc, thus search from back, first hit
         // is the latest version
@@ -196,6 +227,19 @@ public class ObserverAggregators {
         return Bytes.compareTo(col.family, 0, col.family.length, cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength()) == 0 && Bytes.compareTo(col.qualifier, 0, col.qualifier.length, cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength()) == 0;
     }
 
+    /**
+     * @return index in aggregation buffer of the j-th measure in a HBase column, or -1 if no such column
+     */
+    public int indexOf(byte[] family, byte[] qualifier, int j) {
+        int i = 0;
+        for (HCol col : hcols) {
+            if (Bytes.equals(col.family, family) && Bytes.equals(col.qualifier, qualifier))
+                return j < col.nMeasures ? i + j : -1;
+            i += col.nMeasures;
+        }
+        return -1;
+    }
+
     public int getHColsNum() {
         return nHCols;
     }
@@ -228,6 +272,33 @@ public class ObserverAggregators {
         return hColValues;
     }
 
+    /**
+     * Makes the output cells of an aggregated group, one per HBase column.
+     */
+    public void makeCells(CoprocessorProjector.AggrKey rowKey, MeasureAggregator[] aggBuf, List<Cell> results) {
+        byte[][] families = getHColFamilies();
+        byte[][] qualifiers = getHColQualifiers();
+        ByteBuffer[] rowValues = getHColValues(aggBuf);
+
+        if (nHCols == 0) {
+            Cell keyValue = new KeyValue(rowKey.get(), rowKey.offset(), rowKey.length(), //
+                    null, 0, 0, //
+                    null, 0, 0, //
+                    HConstants.LATEST_TIMESTAMP, Type.Put, //
+                    null, 0, 0);
+            results.add(keyValue);
+        } else {
+            for (int i = 0; i < nHCols; i++) {
+                Cell keyValue = new KeyValue(rowKey.get(), rowKey.offset(), rowKey.length(), //
+                        families[i], 0, families[i].length, //
+                        qualifiers[i], 0, qualifiers[i].length, //
+                        HConstants.LATEST_TIMESTAMP, Type.Put, //
+                        rowValues[i].array(), 0, rowValues[i].position());
+                results.add(keyValue);
+            }
+        }
+    }
+
     // ============================================================================
 
     public static class HCol {
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.observer;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.storage.hbase.coprocessor.CoprocessorFilter;
+import org.apache.kylin.storage.hbase.coprocessor.CoprocessorProjector;
+import org.apache.kylin.storage.hbase.coprocessor.CoprocessorRowType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The coprocessor attributes of a scan, cached on region servers by digest so
+ * that repeated scans can send the digest alone. They are deserialized once:
+ * row type and top N are shared, projector and aggregators are copied for each
+ * scan since they keep per scan state. The filter is shared too if it compiles
+ * to a row key filter. Otherwise it is still deserialized for each scan, as a
+ * tuple filter keeps the values of the tuple being evaluated.
+ */
+class ObserverArtifacts {
+
+    static final String CACHE_SIZE_KEY = "kylin.coprocessor.artifact.cache.size";
+    static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private static volatile Cache<String, ObserverArtifacts> CACHE;
+
+    private static Cache<String, ObserverArtifacts> getCache(int maxSize) {
+        if (CACHE == null) {
+            synchronized (ObserverArtifacts.class) {
+                if (CACHE == null) {
+                    CACHE = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+                }
+            }
+        }
+        return CACHE;
+    }
+
+    static ObserverArtifacts get(byte[] digest, int maxSize) {
+        return getCache(maxSize).getIfPresent(Bytes.toStringBinary(digest));
+    }
+
+    static void put(byte[] digest, ObserverArtifacts artifacts, int maxSize) {
+        getCache(maxSize).put(Bytes.toStringBinary(digest), artifacts);
+    }
+
+    /**
+     * @param topNBytes null if there is no top N
+     */
+    public static byte[] digest(byte[] typeBytes, byte[] projectorBytes, byte[] aggregatorBytes, byte[] filterBytes, byte[] topNBytes) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            for (byte[] part : new byte[][] { typeBytes, projectorBytes, aggregatorBytes, filterBytes, topNBytes }) {
+                md.update(Bytes.toBytes(part == null ? -1 : part.length));
+                if (part != null) {
+                    md.update(part);
+                }
+            }
+            return md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            // never happen
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final CoprocessorRowType type;
+    private final CoprocessorProjector projector;
+    private final ObserverAggregators aggregators;
+    private final byte[] filterBytes;
+    private final CoprocessorFilter filter; // null if evaluated on tuples
+    private final ObserverTopN topN;
+
+    ObserverArtifacts(byte[] typeBytes, byte[] projectorBytes, byte[] aggregatorBytes, byte[] filterBytes, byte[] topNBytes) {
+        this.type = CoprocessorRowType.deserialize(typeBytes);
+        this.projector = CoprocessorProjector.deserialize(projectorBytes);
+        this.aggregators = ObserverAggregators.deserialize(aggregatorBytes);
+        this.filterBytes = filterBytes;
+        CoprocessorFilter filter = CoprocessorFilter.deserialize(filterBytes);
+        this.filter = filter.compile(type) == null ? null : filter;
+        this.topN = topNBytes == null ? null : ObserverTopN.deserialize(topNBytes);
+    }
+
+    public CoprocessorRowType getType() {
+        return type;
+    }
+
+    public CoprocessorProjector newProjector() {
+        return projector.copy();
+    }
+
+    public ObserverAggregators newAggregators() {
+        return aggregators.copy();
+    }
+
+    public CoprocessorFilter newFilter() {
+        return filter != null ? filter : CoprocessorFilter.deserialize(filterBytes);
+    }
+
+    public ObserverTopN getTopN() {
+        return topN;
+    }
+}
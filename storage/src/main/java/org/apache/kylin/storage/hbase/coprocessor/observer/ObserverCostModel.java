@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.observer;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.dict.Dictionary;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.hbase.HBaseScanStats;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Estimates the output / input row ratio of coprocessor aggregation, the
+ * smaller the ratio the more coprocessor saves. Observed ratios reported back
+ * by the coprocessor take precedence over the estimate from dictionary
+ * cardinalities.
+ *
+ * Observations are kept for a bounded number of (segment, cuboid, group by)
+ * and expire after a while, so dropped segments and rare queries age out.
+ */
+public class ObserverCostModel {
+
+    static final long OBSERVATION_TTL = 3600 * 1000L; // 1 hour
+    static final long MIN_OBSERVED_INPUT_ROWS = 1000; // smaller scans say little about the ratio
+    static final double OBSERVATION_WEIGHT = 0.3; // of the newest observation in the moving average
+    static final int MAX_OBSERVATIONS = 10000;
+
+    static final Cache<String, Observation> OBSERVATIONS = CacheBuilder.newBuilder().maximumSize(MAX_OBSERVATIONS).expireAfterWrite(OBSERVATION_TTL, TimeUnit.MILLISECONDS).build();
+
+    static class Observation {
+        final double ratio;
+        final long timestamp;
+
+        Observation(double ratio, long timestamp) {
+            this.ratio = ratio;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * @return the expected output / input row ratio, or -1 if unknown
+     */
+    public static double getOutputRatio(CubeSegment segment, Cuboid cuboid, Collection<TblColRef> groupBy) {
+        Observation ob = OBSERVATIONS.getIfPresent(key(segment, cuboid, groupBy));
+        if (ob != null && System.currentTimeMillis() - ob.timestamp < OBSERVATION_TTL) {
+            return ob.ratio;
+        }
+        return estimateOutputRatio(segment, cuboid, groupBy);
+    }
+
+    static double estimateOutputRatio(CubeSegment segment, Cuboid cuboid, Collection<TblColRef> groupBy) {
+        double inputRows = 1;
+        double outputRows = 1;
+        for (TblColRef col : cuboid.getColumns()) {
+            Dictionary<?> dict = segment.getDictionary(col);
+            if (dict == null)
+                return -1;
+
+            int cardinality = dict.getMaxId() - dict.getMinId() + 1;
+            inputRows *= cardinality;
+            if (groupBy.contains(col))
+                outputRows *= cardinality;
+        }
+        return estimateOutputRatio(inputRows, outputRows, segment.getInputRecords());
+    }
+
+    /**
+     * @param inputRows input rows if dimensions are independent, i.e. product of all cardinalities
+     * @param outputRows output rows if dimensions are independent, i.e. product of group by cardinalities
+     * @param sourceRecords rows of the fact table, bounds the input rows, 0 if unknown
+     */
+    static double estimateOutputRatio(double inputRows, double outputRows, long sourceRecords) {
+        if (sourceRecords > 0)
+            inputRows = Math.min(inputRows, sourceRecords);
+        if (inputRows <= 0)
+            return -1;
+        return Math.min(1.0, outputRows / inputRows);
+    }
+
+    /**
+     * Counts the stats cell the coprocessor appends to its last row, if any.
+     *
+     * @param learn whether the ratio is remembered for later queries, not when
+     * the output is cut short by something else than aggregation, like top-N
+     */
+    public static void collectStats(CubeSegment segment, Cuboid cuboid, Collection<TblColRef> groupBy, Result result, HBaseScanStats scanStats, boolean learn) {
+        Cell[] cells = result.rawCells();
+        if (cells == null || cells.length == 0)
+            return;
+
+        Cell last = cells[cells.length - 1];
+        if (CellUtil.matchingQualifier(last, AggregateRegionObserver.STATS_QUALIFIER) == false)
+            return;
+
+        byte[] value = CellUtil.cloneValue(last);
+        long inputRows = Bytes.toLong(value, 0);
+        long outputRows = Bytes.toLong(value, Bytes.SIZEOF_LONG);
+        scanStats.addCoprocessorRows(inputRows, outputRows);
+        if (learn)
+            observe(key(segment, cuboid, groupBy), inputRows, outputRows, System.currentTimeMillis());
+    }
+
+    static void observe(String key, long inputRows, long outputRows, long now) {
+        if (inputRows < MIN_OBSERVED_INPUT_ROWS)
+            return;
+
+        double ratio = (double) outputRows / inputRows;
+        Observation old = OBSERVATIONS.getIfPresent(key);
+        if (old != null && now - old.timestamp < OBSERVATION_TTL) {
+            ratio = old.ratio * (1 - OBSERVATION_WEIGHT) + ratio * OBSERVATION_WEIGHT;
+        }
+        OBSERVATIONS.put(key, new Observation(ratio, now));
+    }
+
+    static String key(CubeSegment segment, Cuboid cuboid, Collection<TblColRef> groupBy) {
+        TreeSet<String> names = new TreeSet<String>();
+        for (TblColRef col : groupBy) {
+            names.add(col.getCanonicalName());
+        }
+        return segment.getCubeInstance().getName() + "/" + segment.getName() + "/" + cuboid.getId() + "/" + names;
+    }
+
+    public static void clearObservations() {
+        OBSERVATIONS.invalidateAll();
+    }
+}
@@ -26,10 +26,12 @@ import java.util.Set;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorFilter;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorProjector;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorRowType;
+import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.kylin.storage.StorageContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,42 +65,67 @@ public class ObserverEnabler {
             return table.getScanner(scan);
         }
 
+        if (getOverride(segment.getCubeInstance()) == null && isSegmentBeneficial(segment, cuboid, groupBy) == false) {
+            return table.getScanner(scan);
+        }
+
         CoprocessorRowType type = CoprocessorRowType.fromCuboid(segment, cuboid);
         CoprocessorFilter filter = CoprocessorFilter.fromFilter(segment, tupleFiler);
         CoprocessorProjector projector = CoprocessorProjector.makeForObserver(segment, cuboid, groupBy);
         ObserverAggregators aggrs = ObserverAggregators.fromValueDecoders(rowValueDecoders);
+        long memoryBudget = segment.getCubeInstance().getConfig().getCoprocessorMemoryBudget();
+        ObserverTopN topN = null;
+        if (context.isTopNEnabled() && projector.isGroupByPrefix()) {
+            topN = ObserverTopN.fromSort(aggrs, rowValueDecoders, context.getSortMeasures().get(0), context.getSortOrders().get(0), context.getLimit());
+        }
 
         if (DEBUG_LOCAL_COPROCESSOR) {
             RegionScanner innerScanner = new RegionScannerAdapter(table.getScanner(scan));
-            AggregationScanner aggrScanner = new AggregationScanner(type, filter, projector, aggrs, innerScanner);
+            AggregationScanner aggrScanner = new AggregationScanner(type, filter, projector, aggrs, memoryBudget, topN, innerScanner);
             return new ResultScannerAdapter(aggrScanner);
         } else {
+            byte[] typeBytes = CoprocessorRowType.serialize(type);
+            byte[] projectorBytes = CoprocessorProjector.serialize(projector);
+            byte[] aggrsBytes = ObserverAggregators.serialize(aggrs);
+            byte[] filterBytes = CoprocessorFilter.serialize(filter);
+            byte[] topNBytes = topN == null ? null : ObserverTopN.serialize(topN);
+            byte[] digest = ObserverArtifacts.digest(typeBytes, projectorBytes, aggrsBytes, filterBytes, topNBytes);
+
             scan.setAttribute(AggregateRegionObserver.COPROCESSOR_ENABLE, new byte[] { 0x01 });
-            scan.setAttribute(AggregateRegionObserver.TYPE, CoprocessorRowType.serialize(type));
-            scan.setAttribute(AggregateRegionObserver.PROJECTOR, CoprocessorProjector.serialize(projector));
-            scan.setAttribute(AggregateRegionObserver.AGGREGATORS, ObserverAggregators.serialize(aggrs));
-            scan.setAttribute(AggregateRegionObserver.FILTER, CoprocessorFilter.serialize(filter));
-            return table.getScanner(scan);
+            scan.setAttribute(AggregateRegionObserver.DIGEST, digest);
+            scan.setAttribute(AggregateRegionObserver.MEMORY_BUDGET, Bytes.toBytes(memoryBudget));
+            scan.setAttribute(AggregateRegionObserver.STATS, new byte[] { 0x01 });
+
+            Scan fullScan = new Scan(scan);
+            fullScan.setAttribute(AggregateRegionObserver.TYPE, typeBytes);
+            fullScan.setAttribute(AggregateRegionObserver.PROJECTOR, projectorBytes);
+            fullScan.setAttribute(AggregateRegionObserver.AGGREGATORS, aggrsBytes);
+            fullScan.setAttribute(AggregateRegionObserver.FILTER, filterBytes);
+            if (topNBytes != null) {
+                fullScan.setAttribute(AggregateRegionObserver.TOPN, topNBytes);
+            }
+
+            if (table instanceof HTable == false) {
+                return table.getScanner(fullScan);
+            }
+            return ArtifactsRetryScanner.scan((HTable) table, scan, fullScan, segment.getCubeInstance().getConfig());
         }
     }
 
-    public static void enableCoprocessorIfBeneficial(CubeInstance cube, Collection<TblColRef> groupBy, Collection<RowValueDecoder> rowValueDecoders, StorageContext context) {
-        if (isCoprocessorBeneficial(cube, groupBy, rowValueDecoders, context)) {
+    /**
+     * @param segments the segments the query scans
+     */
+    public static void enableCoprocessorIfBeneficial(CubeInstance cube, Collection<CubeSegment> segments, Collection<TblColRef> groupBy, Collection<RowValueDecoder> rowValueDecoders, StorageContext context) {
+        if (isCoprocessorBeneficial(cube, segments, groupBy, rowValueDecoders, context)) {
             context.enableCoprocessor();
         }
     }
 
-    private static boolean isCoprocessorBeneficial(CubeInstance cube, Collection<TblColRef> groupBy, Collection<RowValueDecoder> rowValueDecoders, StorageContext context) {
-
+    private static boolean isCoprocessorBeneficial(CubeInstance cube, Collection<CubeSegment> segments, Collection<TblColRef> groupBy, Collection<RowValueDecoder> rowValueDecoders, StorageContext context) {
 
-        String forceFlag = System.getProperty(FORCE_COPROCESSOR);
-        if (forceFlag != null) {
-            return Boolean.parseBoolean(forceFlag);
-        }
-
-        Boolean cubeOverride = CUBE_OVERRIDES.get(cube.getName());
-        if (cubeOverride != null) {
-            return cubeOverride.booleanValue();
+        Boolean override = getOverride(cube);
+        if (override != null) {
+            return override.booleanValue();
         }
 
         if (RowValueDecoder.hasMemHungryCountDistinct(rowValueDecoders)) {
@@ -119,10 +146,41 @@ public class ObserverEnabler {
             return false;
         }
 
+        boolean anySegmentBeneficial = false;
+        for (CubeSegment segment : segments) {
+            if (isSegmentBeneficial(segment, cuboid, groupBy)) {
+                anySegmentBeneficial = true;
+                break;
+            }
+        }
+        if (anySegmentBeneficial == false) {
+            logger.info("Coprocessor is disabled because aggregation is not expected to reduce rows in any segment");
+            return false;
+        }
+
         logger.info("Coprocessor is enabled to aggregate " + toAggr + ", returning " + groupBy);
         return true;
     }
 
+    // the force flag and cube overrides take precedence over cost
+    private static Boolean getOverride(CubeInstance cube) {
+        String forceFlag = System.getProperty(FORCE_COPROCESSOR);
+        if (forceFlag != null) {
+            return Boolean.parseBoolean(forceFlag);
+        }
+        return CUBE_OVERRIDES.get(cube.getName());
+    }
+
+    private static boolean isSegmentBeneficial(CubeSegment segment, Cuboid cuboid, Collection<TblColRef> groupBy) {
+        double ratio = ObserverCostModel.getOutputRatio(segment, cuboid, groupBy);
+        double maxRatio = segment.getCubeInstance().getConfig().getCoprocessorMaxOutputRatio();
+        if (ratio > maxRatio) {
+            logger.info("Coprocessor is skipped on segment " + segment.getName() + ", expected output / input rows " + ratio + " is above " + maxRatio);
+            return false;
+        }
+        return true;
+    }
+
     @SuppressWarnings("unused")
     private static int getBitsToScan(byte[] startKey, byte[] stopKey) {
         // find the first bit difference from the beginning
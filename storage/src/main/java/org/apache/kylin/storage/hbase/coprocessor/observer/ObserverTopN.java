@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.observer;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Comparator;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.common.util.BytesSerializer;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.cube.kv.RowValueDecoder;
+import org.apache.kylin.cube.model.HBaseColumnDesc;
+import org.apache.kylin.metadata.measure.MeasureAggregator;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.apache.kylin.storage.StorageContext.OrderEnum;
+import org.apache.kylin.storage.hbase.coprocessor.CoprocessorConstants;
+
+/**
+ * Asks the coprocessor to return only the top groups by one measure. The
+ * measure is identified by its index in the aggregation buffer.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class ObserverTopN {
+
+    /**
+     * @return null if the measure can not be ranked in coprocessor
+     */
+    public static ObserverTopN fromSort(ObserverAggregators aggrs, Collection<RowValueDecoder> rowValueDecoders, MeasureDesc measure, OrderEnum order, int limit) {
+        FunctionDesc func = measure.getFunction();
+        if (!(func.isSum() || func.isCount() || func.isMin() || func.isMax()))
+            return null;
+        String returnType = func.getReturnType();
+        if (!(MeasureAggregator.isInteger(returnType) || MeasureAggregator.isBigDecimal(returnType) || MeasureAggregator.isDouble(returnType)))
+            return null;
+
+        for (RowValueDecoder decoder : rowValueDecoders) {
+            HBaseColumnDesc hbaseCol = decoder.getHBaseColumn();
+            MeasureDesc[] measures = hbaseCol.getMeasures();
+            for (int j = 0; j < measures.length; j++) {
+                if (measures[j].equals(measure)) {
+                    int index = aggrs.indexOf(Bytes.toBytes(hbaseCol.getColumnFamilyName()), Bytes.toBytes(hbaseCol.getQualifier()), j);
+                    return index < 0 ? null : new ObserverTopN(index, order == OrderEnum.DESCENDING, limit);
+                }
+            }
+        }
+        return null;
+    }
+
+    public static byte[] serialize(ObserverTopN o) {
+        ByteBuffer buf = ByteBuffer.allocate(CoprocessorConstants.SERIALIZE_BUFFER_SIZE);
+        serializer.serialize(o, buf);
+        byte[] result = new byte[buf.position()];
+        System.arraycopy(buf.array(), 0, result, 0, buf.position());
+        return result;
+    }
+
+    public static ObserverTopN deserialize(byte[] bytes) {
+        return serializer.deserialize(ByteBuffer.wrap(bytes));
+    }
+
+    private static final Serializer serializer = new Serializer();
+
+    private static class Serializer implements BytesSerializer<ObserverTopN> {
+
+        @Override
+        public void serialize(ObserverTopN value, ByteBuffer out) {
+            BytesUtil.writeVInt(value.measureIndex, out);
+            BytesUtil.writeVInt(value.descending ? 1 : 0, out);
+            BytesUtil.writeVInt(value.limit, out);
+        }
+
+        @Override
+        public ObserverTopN deserialize(ByteBuffer in) {
+            int measureIndex = BytesUtil.readVInt(in);
+            boolean descending = BytesUtil.readVInt(in) != 0;
+            int limit = BytesUtil.readVInt(in);
+            return new ObserverTopN(measureIndex, descending, limit);
+        }
+    }
+
+    // ============================================================================
+
+    final int measureIndex;
+    final boolean descending;
+    final int limit;
+
+    public ObserverTopN(int measureIndex, boolean descending, int limit) {
+        this.measureIndex = measureIndex;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * A group without value of the measure can not be ranked, the query engine decides where null goes.
+     */
+    public boolean isRankable(MeasureAggregator[] aggBuf) {
+        return aggBuf[measureIndex].getState() != null;
+    }
+
+    /**
+     * Orders aggregation buffers from the worst to the best ranked, so the head
+     * of a priority queue is the first to drop.
+     */
+    public Comparator<MeasureAggregator[]> worstFirst() {
+        return new Comparator<MeasureAggregator[]>() {
+            @Override
+            public int compare(MeasureAggregator[] o1, MeasureAggregator[] o2) {
+                Comparable v1 = (Comparable) o1[measureIndex].getState();
+                Comparable v2 = (Comparable) o2[measureIndex].getState();
+                int comp = v1.compareTo(v2);
+                return descending ? comp : -comp;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "ObserverTopN [measureIndex=" + measureIndex + ", descending=" + descending + ", limit=" + limit + "]";
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.observer;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.kylin.metadata.measure.MeasureAggregator;
+import org.apache.kylin.storage.hbase.coprocessor.CoprocessorFilter;
+import org.apache.kylin.storage.hbase.coprocessor.CoprocessorProjector;
+import org.apache.kylin.storage.hbase.coprocessor.CoprocessorRowType;
+import org.apache.kylin.storage.hbase.coprocessor.RowKeyFilter;
+
+/**
+ * Aggregates rows as they are scanned, for when the group by columns are a
+ * prefix of the row key. Rows of a group are then adjacent, so a group is
+ * complete and returned as soon as the next group starts. Holds only one
+ * group in memory.
+ *
+ * With a {@link ObserverTopN}, only the top groups are kept in a bounded heap
+ * and returned at the end of scan.
+ */
+@SuppressWarnings("rawtypes")
+public class StreamingAggregationScanner implements RegionScanner {
+
+    private final RegionScanner innerScanner;
+    private final CoprocessorFilter filter;
+    private final CoprocessorProjector projector;
+    private final ObserverAggregators aggregators;
+    private final ObserverTuple tuple;
+    private final RowKeyFilter rowKeyFilter; // null if the filter must be evaluated on tuple
+    private final AggregationScanner.Stats stats;
+
+    private final List<Cell> rowCells = new ArrayList<Cell>();
+    private boolean innerHasMore = true;
+    private CoprocessorProjector.AggrKey groupKey;
+    private MeasureAggregator[] groupBuf;
+    private CoprocessorProjector.AggrKey doneKey;
+    private MeasureAggregator[] doneBuf;
+
+    private final ObserverTopN topN; // null if all groups are returned
+    private Iterator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> topNResult;
+
+    public StreamingAggregationScanner(CoprocessorRowType type, CoprocessorFilter filter, CoprocessorProjector projector, ObserverAggregators aggregators, ObserverTopN topN, RegionScanner innerScanner, AggregationScanner.Stats stats) {
+        this.innerScanner = innerScanner;
+        this.topN = topN;
+        this.filter = filter;
+        this.projector = projector;
+        this.aggregators = aggregators;
+        this.tuple = new ObserverTuple(type);
+        this.rowKeyFilter = filter == null ? RowKeyFilter.TRUE : filter.compile(type);
+        this.stats = stats;
+    }
+
+    @Override
+    public boolean nextRaw(List<Cell> results) throws IOException {
+        if (topN != null)
+            return nextTopN(results);
+
+        if (nextGroup()) {
+            aggregators.makeCells(doneKey, doneBuf, results);
+            stats.countOutputRow(1);
+        }
+        return innerHasMore || groupBuf != null;
+    }
+
+    // reads rows until a group is complete, returns false at the end of scan
+    private boolean nextGroup() throws IOException {
+        while (innerHasMore) {
+            rowCells.clear();
+            innerHasMore = innerScanner.nextRaw(rowCells);
+            if (rowCells.isEmpty())
+                continue;
+
+            stats.countInputRow(rowCells);
+
+            Cell cell = rowCells.get(0);
+            if (rowKeyFilter != null) {
+                if (rowKeyFilter.evaluate(cell.getRowArray(), cell.getRowOffset()) == false)
+                    continue;
+            } else {
+                tuple.setUnderlying(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength());
+                if (filter.evaluate(tuple) == false)
+                    continue;
+            }
+
+            CoprocessorProjector.AggrKey aggKey = projector.getAggrKey(rowCells);
+            if (groupBuf != null && groupKey.compareTo(aggKey) != 0) {
+                // group changed, the previous one is complete
+                completeGroup();
+                startGroup(aggKey);
+                return true;
+            }
+            if (groupBuf == null) {
+                startGroup(aggKey);
+            } else {
+                aggregators.aggregate(groupBuf, rowCells);
+            }
+        }
+
+        if (groupBuf != null) {
+            completeGroup();
+            return true;
+        }
+        return false;
+    }
+
+    private void startGroup(CoprocessorProjector.AggrKey aggKey) {
+        groupKey = aggKey.copy();
+        groupBuf = aggregators.createBuffer();
+        aggregators.aggregate(groupBuf, rowCells);
+    }
+
+    private void completeGroup() {
+        doneKey = groupKey;
+        doneBuf = groupBuf;
+        groupKey = null;
+        groupBuf = null;
+    }
+
+    private boolean nextTopN(List<Cell> results) throws IOException {
+        if (topNResult == null) {
+            topNResult = collectTopN();
+        }
+        if (topNResult.hasNext()) {
+            Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> entry = topNResult.next();
+            aggregators.makeCells(entry.getKey(), entry.getValue(), results);
+            stats.countOutputRow(1);
+        }
+        return topNResult.hasNext();
+    }
+
+    private Iterator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> collectTopN() throws IOException {
+        final Comparator<MeasureAggregator[]> worstFirst = topN.worstFirst();
+        PriorityQueue<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> heap = new PriorityQueue<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>>(topN.getLimit() + 1, new Comparator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>>() {
+            @Override
+            public int compare(Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> o1, Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> o2) {
+                return worstFirst.compare(o1.getValue(), o2.getValue());
+            }
+        });
+        List<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> result = new ArrayList<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>>();
+
+        // the first and the last group may continue in the neighbor region or key range,
+        // they could be incomplete and are always returned, only groups in between are ranked
+        Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> pending = null;
+        while (nextGroup()) {
+            Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> group = new AbstractMap.SimpleImmutableEntry<CoprocessorProjector.AggrKey, MeasureAggregator[]>(doneKey, doneBuf);
+            if (result.isEmpty() && pending == null) {
+                result.add(group);
+                continue;
+            }
+            if (pending != null) {
+                if (topN.isRankable(pending.getValue())) {
+                    heap.add(pending);
+                    if (heap.size() > topN.getLimit())
+                        heap.poll();
+                } else {
+                    result.add(pending);
+                }
+            }
+            pending = group;
+        }
+        if (pending != null) {
+            result.add(pending);
+        }
+        result.addAll(heap);
+
+        // return in row key order, like a normal scan
+        Collections.sort(result, new Comparator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>>() {
+            @Override
+            public int compare(Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> o1, Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> o2) {
+                return o1.getKey().compareTo(o2.getKey());
+            }
+        });
+        return result.iterator();
+    }
+
+    @Override
+    public boolean nextRaw(List<Cell> result, int limit) throws IOException {
+        return nextRaw(result);
+    }
+
+    @Override
+    public boolean next(List<Cell> results) throws IOException {
+        return nextRaw(results);
+    }
+
+    @Override
+    public boolean next(List<Cell> result, int limit) throws IOException {
+        return nextRaw(result);
+    }
+
+    @Override
+    public void close() throws IOException {
+        AggregateRegionObserver.LOG.info("Kylin Coprocessor streaming aggregation done: " + stats);
+        innerScanner.close();
+    }
+
+    @Override
+    public HRegionInfo getRegionInfo() {
+        return innerScanner.getRegionInfo();
+    }
+
+    @Override
+    public long getMaxResultSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isFilterDone() throws IOException {
+        return false;
+    }
+
+    @Override
+    public boolean reseek(byte[] row) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getMvccReadPoint() {
+        return Long.MAX_VALUE;
+    }
+}
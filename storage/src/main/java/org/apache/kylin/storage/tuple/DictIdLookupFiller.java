@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.tuple;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.SplittedBytes;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
+import org.apache.kylin.dict.Dictionary;
+import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.tuple.Tuple.IDerivedColumnFiller;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+
+/**
+ * Fills derived columns of a dictionary encoded host column straight from
+ * the dictionary ID in row key, through the derived values of each ID.
+ *
+ * The values are built from the lookup rows, encoding each key by the host
+ * dictionary. They are kept in an array indexed by ID when the lookup table
+ * covers most of the ID range, in a map otherwise, e.g. a date dictionary
+ * spanning centuries with a calendar table of a few years. Segments sharing
+ * the dictionary and snapshot share the values.
+ */
+class DictIdLookupFiller implements IDerivedColumnFiller {
+
+    // an array is used if no more than this many IDs per lookup row
+    static final int MAX_DENSE_IDS_PER_ROW = 2;
+
+    private static volatile Cache<String, DerivedValues> CACHE;
+
+    private static Cache<String, DerivedValues> getCache(KylinConfig config) {
+        if (CACHE == null) {
+            synchronized (DictIdLookupFiller.class) {
+                if (CACHE == null) {
+                    CACHE = CacheBuilder.newBuilder().maximumWeight(config.getDerivedValueCacheMaxCells()).weigher(new Weigher<String, DerivedValues>() {
+                        @Override
+                        public int weigh(String key, DerivedValues value) {
+                            return value.getSizeInCells();
+                        }
+                    }).build();
+                }
+            }
+        }
+        return CACHE;
+    }
+
+    /**
+     * @return the filler, or null if the host column is not dictionary
+     *         encoded or the lookup table is too big to keep its values
+     */
+    static DictIdLookupFiller create(int hostIndex, final TblColRef hostCol, final DeriveInfo deriveInfo, String[] derivedFieldNames, CubeManager cubeMgr, CubeSegment cubeSegment) {
+        final Dictionary<?> dict = cubeSegment.getDictionary(hostCol);
+        if (dict == null)
+            return null;
+
+        final LookupStringTable lookupTable = cubeMgr.getLookupTable(cubeSegment, deriveInfo.dimension);
+        KylinConfig config = cubeSegment.getCubeInstance().getConfig();
+        long cells = (long) lookupTable.getAllRows().size() * deriveInfo.columns.length;
+        if (cells > config.getDerivedValueCacheMaxCells() / 4)
+            return null;
+
+        String dictResPath = cubeSegment.getDictResPath(hostCol);
+        StringBuilder key = new StringBuilder();
+        key.append(dictResPath == null ? cubeSegment.getUuid() : dictResPath);
+        key.append('/').append(cubeSegment.getSnapshotResPath(deriveInfo.dimension.getTable()));
+        key.append('/').append(hostCol.getCanonicalName());
+        for (TblColRef derivedCol : deriveInfo.columns) {
+            key.append(',').append(derivedCol.getCanonicalName());
+        }
+
+        DerivedValues derivedValues;
+        try {
+            derivedValues = getCache(config).get(key.toString(), new Callable<DerivedValues>() {
+                @Override
+                public DerivedValues call() throws Exception {
+                    int pkIndex = deriveInfo.dimension.getJoin().getPrimaryKeyColumns()[0].getColumn().getZeroBasedIndex();
+                    return buildDerivedValues(dict, lookupTable.getAllRows(), pkIndex, getDerivedIndex(deriveInfo));
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to build derived values of " + hostCol + " on segment " + cubeSegment, e.getCause());
+        }
+        return new DictIdLookupFiller(hostIndex, derivedValues, derivedFieldNames);
+    }
+
+    private static int[] getDerivedIndex(DeriveInfo deriveInfo) {
+        int[] derivedIndex = new int[deriveInfo.columns.length];
+        for (int i = 0; i < derivedIndex.length; i++) {
+            derivedIndex[i] = deriveInfo.columns[i].getColumn().getZeroBasedIndex();
+        }
+        return derivedIndex;
+    }
+
+    static DerivedValues buildDerivedValues(Dictionary<?> dict, Collection<String[]> lookupRows, int pkIndex, int[] derivedIndex) {
+        Map<Integer, String[]> byId = Maps.newHashMapWithExpectedSize(lookupRows.size());
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        for (String[] row : lookupRows) {
+            int id = getId(dict, row[pkIndex]);
+            if (id < 0)
+                continue;
+            String[] derived = new String[derivedIndex.length];
+            for (int i = 0; i < derivedIndex.length; i++) {
+                derived[i] = row[derivedIndex[i]];
+            }
+            byId.put(id, derived);
+            minId = Math.min(minId, id);
+            maxId = Math.max(maxId, id);
+        }
+
+        if (byId.isEmpty())
+            return new DerivedValues(derivedIndex.length, 0, null, byId);
+
+        long idRange = (long) maxId - minId + 1;
+        if (idRange > (long) byId.size() * MAX_DENSE_IDS_PER_ROW)
+            return new DerivedValues(derivedIndex.length, minId, null, byId);
+
+        String[] dense = new String[(int) idRange * derivedIndex.length];
+        for (Map.Entry<Integer, String[]> entry : byId.entrySet()) {
+            System.arraycopy(entry.getValue(), 0, dense, (entry.getKey() - minId) * derivedIndex.length, derivedIndex.length);
+        }
+        return new DerivedValues(derivedIndex.length, minId, dense, null);
+    }
+
+    // the ID of the key in the host dictionary, encoded as the row key does, or -1 if absent
+    private static int getId(Dictionary<?> dict, String value) {
+        if (value == null)
+            return -1;
+        byte[] valueBytes = Bytes.toBytes(value);
+        try {
+            return dict.getIdFromValueBytes(valueBytes, 0, valueBytes.length);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Derived values by host dictionary ID, in an array or a map.
+     */
+    static class DerivedValues {
+        final int derivedLen;
+        final int minId;
+        final String[] dense; // derivedLen values per ID from minId, null if sparse
+        final Map<Integer, String[]> sparse; // derived values by ID, null if dense
+
+        DerivedValues(int derivedLen, int minId, String[] dense, Map<Integer, String[]> sparse) {
+            this.derivedLen = derivedLen;
+            this.minId = minId;
+            this.dense = dense;
+            this.sparse = sparse;
+        }
+
+        boolean isDense() {
+            return dense != null;
+        }
+
+        int getSizeInCells() {
+            return isDense() ? dense.length : sparse.size() * (derivedLen + 1);
+        }
+
+        /**
+         * @return the derived value, or null if the ID has no lookup row
+         */
+        String get(int id, int derivedIdx) {
+            if (isDense()) {
+                int offset = (id - minId) * derivedLen;
+                return offset < 0 || offset >= dense.length ? null : dense[offset + derivedIdx];
+            } else {
+                String[] derived = sparse.get(id);
+                return derived == null ? null : derived[derivedIdx];
+            }
+        }
+    }
+
+    final int hostSplit;
+    private final DerivedValues derivedValues;
+    private final String[] derivedFieldNames;
+    private final int derivedLen;
+
+    private DictIdLookupFiller(int hostIndex, DerivedValues derivedValues, String[] derivedFieldNames) {
+        this.hostSplit = hostIndex + 1; // the first split is cuboid id
+        this.derivedValues = derivedValues;
+        this.derivedFieldNames = derivedFieldNames;
+        this.derivedLen = derivedFieldNames.length;
+    }
+
+    @Override
+    public void fillDerivedColumns(List<String> rowValues, SplittedBytes[] rowKeySplits, Tuple tuple) {
+        SplittedBytes split = rowKeySplits[hostSplit];
+        int id = BytesUtil.readUnsigned(split.value, 0, split.length);
+        // null or out of the lookup table gives null
+        for (int i = 0; i < derivedLen; i++) {
+            tuple.setDimensionValue(derivedFieldNames[i], derivedValues.get(id, i));
+        }
+    }
+
+    @Override
+    public int[] getRowValueIndexes() {
+        // the host ID is read from the row key bytes, the host is never decoded for this
+        return new int[0];
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.tuple;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.dict.Dictionary;
+import org.apache.kylin.metadata.model.TblColRef;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Maps dictionary IDs of a dimension column in a segment straight to the
+ * typed cell values of Optiq, so numbers and dates are parsed once per ID
+ * instead of once per row.
+ */
+public class DimensionValueCache {
+
+    // dictionaries up to this size get an array indexed by ID
+    static final int DENSE_MAX_IDS = 1 << 20;
+    // values kept per column of a bigger dictionary
+    static final int SPARSE_MAX_IDS = 100000;
+
+    private static final Object NULL_VALUE = new Object();
+
+    private static volatile Cache<String, DimensionValueCache> CACHE;
+
+    private static Cache<String, DimensionValueCache> getCache(KylinConfig config) {
+        if (CACHE == null) {
+            synchronized (DimensionValueCache.class) {
+                if (CACHE == null) {
+                    CACHE = CacheBuilder.newBuilder().maximumWeight(config.getDimensionValueCacheMaxCells()).weigher(new Weigher<String, DimensionValueCache>() {
+                        @Override
+                        public int weigh(String key, DimensionValueCache value) {
+                            return value.dense != null ? value.dense.length : SPARSE_MAX_IDS;
+                        }
+                    }).build();
+                }
+            }
+        }
+        return CACHE;
+    }
+
+    /**
+     * @return the cache of the column in the segment, or null if the column
+     *         is not dictionary encoded
+     */
+    public static DimensionValueCache get(final CubeSegment cubeSegment, final TblColRef column) {
+        final Dictionary<?> dict = cubeSegment.getDictionary(column);
+        if (dict == null)
+            return null;
+
+        try {
+            return getCache(cubeSegment.getCubeInstance().getConfig()).get(cubeSegment.getUuid() + "/" + column.getCanonicalName(), new Callable<DimensionValueCache>() {
+                @Override
+                public DimensionValueCache call() throws Exception {
+                    return new DimensionValueCache(dict, column.getType().getName());
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to create value cache of " + column + " on segment " + cubeSegment, e.getCause());
+        }
+    }
+
+    private final Dictionary<?> dict;
+    private final String dataType;
+    private final int minId;
+    private final int maxId;
+    private final Object[] dense;
+    private final Cache<Integer, Object> sparse;
+
+    DimensionValueCache(Dictionary<?> dict, String dataType) {
+        this.dict = dict;
+        this.dataType = dataType;
+        this.minId = dict.getMinId();
+        this.maxId = dict.getMaxId();
+        long size = (long) maxId - minId + 1;
+        if (size <= DENSE_MAX_IDS) {
+            this.dense = new Object[(int) Math.max(0, size)];
+            this.sparse = null;
+        } else {
+            this.dense = null;
+            this.sparse = CacheBuilder.newBuilder().maximumSize(SPARSE_MAX_IDS).build();
+        }
+    }
+
+    /**
+     * @return the typed value of the dictionary ID in row key bytes
+     */
+    public Object getValue(byte[] idBytes, int length) {
+        final int id = BytesUtil.readUnsigned(idBytes, 0, length);
+        if (id < minId || id > maxId) {
+            // null or out of dictionary
+            return convert(id);
+        }
+
+        Object value;
+        if (dense != null) {
+            // races only compute the same immutable value twice
+            value = dense[id - minId];
+            if (value == null) {
+                value = convertNotNull(id);
+                dense[id - minId] = value;
+            }
+        } else {
+            try {
+                value = sparse.get(id, new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return convertNotNull(id);
+                    }
+                });
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private Object convertNotNull(int id) {
+        Object value = convert(id);
+        return value == null ? NULL_VALUE : value;
+    }
+
+    private Object convert(int id) {
+        String strValue;
+        try {
+            Object value = dict.getValueFromId(id);
+            strValue = value == null ? null : value.toString();
+        } catch (IllegalArgumentException e) {
+            // same as RowKeyColumnIO.readColumnString()
+            strValue = "";
+        }
+        return Tuple.convertOptiqCellValue(strValue, dataType);
+    }
+}
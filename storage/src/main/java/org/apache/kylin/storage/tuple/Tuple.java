@@ -22,7 +22,9 @@ import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
 
+import org.apache.kylin.common.hll.HyperLogLogPlusCounter;
 import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.SplittedBytes;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
@@ -92,6 +94,13 @@ public class Tuple implements ITuple {
         setFieldObjectValue(fieldName, objectValue);
     }
 
+    /**
+     * Sets a dimension value already converted by convertOptiqCellValue()
+     */
+    public void setDimensionTypedValue(String fieldName, Object typedValue) {
+        setFieldObjectValue(fieldName, typedValue);
+    }
+
     public void setMeasureValue(String fieldName, Object fieldValue) {
         String dataType = info.getDataType(fieldName);
         // special handling for BigDecimal, allow double be aggregated as
@@ -111,6 +120,27 @@ public class Tuple implements ITuple {
         return info.hasColumn(column);
     }
 
+    /**
+     * Tuples are reused by the iterators that produce them, take a copy
+     * before handing one over to another thread.
+     */
+    public Tuple copy() {
+        Tuple copy = new Tuple(info);
+        copyValues(values, copy.values);
+        return copy;
+    }
+
+    public static void copyValues(Object[] from, Object[] to) {
+        for (int i = 0; i < from.length; i++) {
+            Object value = from[i];
+            // measure serializers reuse the HLL counter instance
+            if (value instanceof HyperLogLogPlusCounter) {
+                value = new HyperLogLogPlusCounter((HyperLogLogPlusCounter) value);
+            }
+            to[i] = value;
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -173,6 +203,11 @@ public class Tuple implements ITuple {
 
         switch (deriveInfo.type) {
         case LOOKUP:
+            if (hostCols.length == 1) {
+                IDerivedColumnFiller filler = DictIdLookupFiller.create(hostIndex[0], hostCols[0], deriveInfo, derivedFieldNames, cubeMgr, cubeSegment);
+                if (filler != null)
+                    return filler;
+            }
             LookupStringTable lookupTable = cubeMgr.getLookupTable(cubeSegment, deriveInfo.dimension);
             return new LookupFiller(hostIndex, lookupTable, deriveInfo, derivedFieldNames);
         case PK_FK:
@@ -183,8 +218,22 @@ public class Tuple implements ITuple {
         }
     }
 
+    /**
+     * Fillers are shared by concurrent scans and keep no per row state.
+     */
     public interface IDerivedColumnFiller {
-        public void fillDerivedColumns(List<String> rowValues, Tuple tuple);
+        /**
+         * @param rowValues decoded row key values, only those of
+         *            {@link #getRowValueIndexes()} are guaranteed
+         * @param rowKeySplits row key bytes of cuboid id and each column
+         */
+        public void fillDerivedColumns(List<String> rowValues, SplittedBytes[] rowKeySplits, Tuple tuple);
+
+        /**
+         * @return indexes of the row key columns read from the decoded
+         *         rowValues, the others need not be decoded
+         */
+        public int[] getRowValueIndexes();
     }
 
     static class PKFKFiller implements IDerivedColumnFiller {
@@ -197,17 +246,21 @@ public class Tuple implements ITuple {
         }
 
         @Override
-        public void fillDerivedColumns(List<String> rowValues, Tuple tuple) {
+        public void fillDerivedColumns(List<String> rowValues, SplittedBytes[] rowKeySplits, Tuple tuple) {
             String value = rowValues.get(hostIndex);
             tuple.setDimensionValue(derivedFieldName, value);
         }
+
+        @Override
+        public int[] getRowValueIndexes() {
+            return new int[] { hostIndex };
+        }
     }
 
     static class LookupFiller implements IDerivedColumnFiller {
 
         final int[] hostIndex;
         final int hostLen;
-        final Array<String> lookupKey;
         final LookupStringTable lookupTable;
         final int[] derivedIndex;
         final int derivedLen;
@@ -216,7 +269,6 @@ public class Tuple implements ITuple {
         public LookupFiller(int[] hostIndex, LookupStringTable lookupTable, DeriveInfo deriveInfo, String[] derivedFieldNames) {
             this.hostIndex = hostIndex;
             this.hostLen = hostIndex.length;
-            this.lookupKey = new Array<String>(new String[hostLen]);
             this.lookupTable = lookupTable;
             this.derivedIndex = new int[deriveInfo.columns.length];
             this.derivedLen = derivedIndex.length;
@@ -228,7 +280,8 @@ public class Tuple implements ITuple {
         }
 
         @Override
-        public void fillDerivedColumns(List<String> rowValues, Tuple tuple) {
+        public void fillDerivedColumns(List<String> rowValues, SplittedBytes[] rowKeySplits, Tuple tuple) {
+            Array<String> lookupKey = new Array<String>(new String[hostLen]);
             for (int i = 0; i < hostLen; i++) {
                 lookupKey.data[i] = rowValues.get(hostIndex[i]);
             }
@@ -246,5 +299,10 @@ public class Tuple implements ITuple {
                 }
             }
         }
+
+        @Override
+        public int[] getRowValueIndexes() {
+            return hostIndex;
+        }
     }
 }
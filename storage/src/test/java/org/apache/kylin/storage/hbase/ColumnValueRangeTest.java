@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.ColumnDesc;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class ColumnValueRangeTest {
+
+    TblColRef col = newCol("SELLER_ID", "integer");
+
+    @Test
+    public void testAndMergeEqualsWithRange() {
+        ColumnValueRange range = new ColumnValueRange(col, Arrays.asList("5", "50", "500"), FilterOperatorEnum.IN);
+        range.andMerge(new ColumnValueRange(col, "10", "100", null));
+        assertEquals(Sets.newHashSet("50"), range.getEqualValues());
+        assertEquals("50", range.getBeginValue());
+        assertEquals("50", range.getEndValue());
+    }
+
+    @Test
+    public void testMissZoneMap() {
+        // seller_id = 123 on a segment of sellers 200 to 300
+        ColumnValueRange range = new ColumnValueRange(col, Arrays.asList("123"), FilterOperatorEnum.EQ);
+        range.andMerge(new ColumnValueRange(col, "200", "300", null));
+        assertTrue(range.satisfyNone());
+        assertFalse(range.satisfyAll());
+
+        range = new ColumnValueRange(col, Arrays.asList("123"), FilterOperatorEnum.LT);
+        range.andMerge(new ColumnValueRange(col, "200", "300", null));
+        assertTrue(range.satisfyNone());
+
+        range = new ColumnValueRange(col, Arrays.asList("250"), FilterOperatorEnum.GT);
+        range.andMerge(new ColumnValueRange(col, "200", "300", null));
+        assertFalse(range.satisfyNone());
+        assertEquals("250", range.getBeginValue());
+        assertEquals("300", range.getEndValue());
+    }
+
+    private TblColRef newCol(String name, String type) {
+        TableDesc t = new TableDesc();
+        t.setName("TABLE");
+        t.setDatabase("DEFAULT");
+        ColumnDesc col = new ColumnDesc();
+        col.setName(name);
+        col.setDatatype(type);
+        col.setTable(t);
+        return new TblColRef(col);
+    }
+}
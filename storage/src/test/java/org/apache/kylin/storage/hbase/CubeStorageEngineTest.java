@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.StorageContext.OrderEnum;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class CubeStorageEngineTest extends LocalFileMetadataTestCase {
+
+    CubeInstance cube;
+    CubeSegment segment;
+    Cuboid cuboid;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+
+        cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_ready");
+        segment = cube.getLatestReadySegment();
+        cuboid = Cuboid.findById(cube.getDescriptor(), Cuboid.getBaseCuboidId(cube.getDescriptor()));
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testMergeExactKeys() {
+        List<HBaseKeyRange> ranges = Arrays.asList(range("a", "c", keys("a", "b")), range("b", "d", keys("b", "c")));
+        HBaseKeyRange merged = CubeStorageEngine.mergeKeyRange(ranges, 0, 1);
+        assertEquals("a", Bytes.toString(merged.getStartKey()));
+        assertEquals("d", Bytes.toString(merged.getStopKey()));
+        // sorted, shared keys once
+        assertEquals(Arrays.asList("a", "b", "c"), strings(merged.getExactKeys()));
+    }
+
+    @Test
+    public void testMergeExactKeysWithScan() {
+        // a range to scan makes the merged range a scan
+        List<HBaseKeyRange> ranges = Arrays.asList(range("a", "c", keys("a", "b")), range("b", "d", null));
+        assertNull(CubeStorageEngine.mergeKeyRange(ranges, 0, 1).getExactKeys());
+    }
+
+    @Test
+    public void testMergeExactKeysCap() {
+        getTestConfig().setProperty("kylin.query.scan.get.max.keys", "2");
+        List<HBaseKeyRange> ranges = Arrays.asList(range("a", "c", keys("a", "b")), range("b", "d", keys("c")));
+        assertNull(CubeStorageEngine.mergeKeyRange(ranges, 0, 1).getExactKeys());
+    }
+
+    @Test
+    public void testIsRowKeyOrder() {
+        CubeStorageEngine engine = new CubeStorageEngine(cube);
+        TblColRef calDt = column("CAL_DT");
+        TblColRef leafCategId = column("LEAF_CATEG_ID");
+        TblColRef lstgFormatName = column("LSTG_FORMAT_NAME");
+        TblColRef lstgSiteId = column("LSTG_SITE_ID");
+        Set<TblColRef> none = Collections.emptySet();
+
+        assertTrue(engine.isRowKeyOrder(Arrays.asList(calDt), cuboid, none));
+        assertTrue(engine.isRowKeyOrder(Arrays.asList(calDt, leafCategId), cuboid, none));
+        assertFalse(engine.isRowKeyOrder(Arrays.asList(leafCategId), cuboid, none));
+        assertFalse(engine.isRowKeyOrder(Arrays.asList(leafCategId, calDt), cuboid, none));
+
+        // single value columns in between don't change the order
+        assertTrue(engine.isRowKeyOrder(Arrays.asList(leafCategId), cuboid, Sets.newHashSet(calDt)));
+        assertTrue(engine.isRowKeyOrder(Arrays.asList(lstgSiteId), cuboid, columnsBefore(lstgSiteId)));
+
+        // fixed length encoding, no dictionary
+        assertFalse(engine.isRowKeyOrder(Arrays.asList(lstgFormatName), cuboid, columnsBefore(lstgFormatName)));
+    }
+
+    @Test
+    public void testSetSortedMerge() {
+        TblColRef calDt = column("CAL_DT");
+
+        assertTrue(sortedMerge(calDt, OrderEnum.ASCENDING, false, true));
+        // row keys put nulls last
+        assertFalse(sortedMerge(calDt, OrderEnum.ASCENDING, true, true));
+        assertFalse(sortedMerge(calDt, OrderEnum.DESCENDING, false, true));
+        // nothing to stop at
+        assertFalse(sortedMerge(calDt, OrderEnum.ASCENDING, false, false));
+        // not in row key order
+        assertFalse(sortedMerge(column("LEAF_CATEG_ID"), OrderEnum.ASCENDING, false, true));
+    }
+
+    private boolean sortedMerge(TblColRef sortColumn, OrderEnum order, boolean nullsFirst, boolean hasLimit) {
+        StorageContext context = new StorageContext();
+        context.setExactAggregation(true);
+        if (hasLimit) {
+            context.setLimit(10);
+        }
+        context.addSort(sortColumn, order, nullsFirst);
+        context.markSort();
+        new CubeStorageEngine(cube).setSortedMerge(null, cuboid, Collections.<TblColRef> emptySet(), context);
+        return context.isSortedMergeEnabled();
+    }
+
+    private TblColRef column(String name) {
+        return cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", name);
+    }
+
+    private Set<TblColRef> columnsBefore(TblColRef column) {
+        List<TblColRef> columns = cuboid.getColumns();
+        return Sets.newHashSet(columns.subList(0, columns.indexOf(column)));
+    }
+
+    private HBaseKeyRange range(String start, String stop, List<byte[]> exactKeys) {
+        return new HBaseKeyRange(segment, cuboid, Bytes.toBytes(start), Bytes.toBytes(stop), Collections.<Pair<byte[], byte[]>> emptyList(), exactKeys, Collections.<Collection<ColumnValueRange>> emptyList(), 0, Long.MAX_VALUE);
+    }
+
+    private List<byte[]> keys(String... keys) {
+        List<byte[]> result = Lists.newArrayList();
+        for (String key : keys) {
+            result.add(Bytes.toBytes(key));
+        }
+        return result;
+    }
+
+    private List<String> strings(List<byte[]> keys) {
+        List<String> result = Lists.newArrayList();
+        for (byte[] key : keys) {
+            result.add(Bytes.toString(key));
+        }
+        return result;
+    }
+}
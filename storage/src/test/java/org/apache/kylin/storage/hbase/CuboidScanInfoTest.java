@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.RowValueDecoder;
+import org.apache.kylin.cube.model.HBaseColumnDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.tuple.TupleInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class CuboidScanInfoTest extends LocalFileMetadataTestCase {
+
+    CubeSegment segment;
+    Cuboid cuboid;
+    HBaseColumnDesc hbaseCol;
+    TblColRef calDt;
+    TblColRef lstgFormatName;
+    Map<TblColRef, String> noAlias = Collections.emptyMap();
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        CuboidScanInfo.clear();
+
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_ready");
+        segment = cube.getLatestReadySegment();
+        cuboid = Cuboid.findById(cube.getDescriptor(), Cuboid.getBaseCuboidId(cube.getDescriptor()));
+        hbaseCol = cube.getDescriptor().getHBaseMapping().getColumnFamily()[0].getColumns()[0];
+        calDt = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "CAL_DT");
+        lstgFormatName = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "LSTG_FORMAT_NAME");
+    }
+
+    @After
+    public void after() throws Exception {
+        CuboidScanInfo.clear();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testReuse() {
+        CuboidScanInfo scanInfo = CuboidScanInfo.get(segment, cuboid, Arrays.asList(calDt, lstgFormatName), decoders(), noAlias);
+        // another scan, own collections and decoders, same columns
+        assertSame(scanInfo, CuboidScanInfo.get(segment, cuboid, Lists.newArrayList(lstgFormatName, calDt), decoders(), noAlias));
+
+        CuboidScanInfo.invalidate(segment.getCubeInstance().getName());
+        assertNotSame(scanInfo, CuboidScanInfo.get(segment, cuboid, Arrays.asList(calDt, lstgFormatName), decoders(), noAlias));
+    }
+
+    @Test
+    public void testDifferentColumns() {
+        CuboidScanInfo scanInfo = CuboidScanInfo.get(segment, cuboid, Arrays.asList(calDt, lstgFormatName), decoders(), noAlias);
+
+        CuboidScanInfo fewer = CuboidScanInfo.get(segment, cuboid, Arrays.asList(calDt), decoders(), noAlias);
+        assertNotSame(scanInfo, fewer);
+        assertFalse(fewer.getTupleInfo().hasColumn(lstgFormatName));
+
+        CuboidScanInfo noMeasures = CuboidScanInfo.get(segment, cuboid, Arrays.asList(calDt, lstgFormatName), Collections.<RowValueDecoder> emptyList(), noAlias);
+        assertNotSame(scanInfo, noMeasures);
+
+        Map<TblColRef, String> alias = Maps.newHashMap();
+        alias.put(lstgFormatName, "FORMAT");
+        CuboidScanInfo aliased = CuboidScanInfo.get(segment, cuboid, Arrays.asList(calDt, lstgFormatName), decoders(), alias);
+        assertNotSame(scanInfo, aliased);
+        assertEquals("FORMAT", aliased.getTupleInfo().getFieldName(lstgFormatName));
+    }
+
+    @Test
+    public void testSameLayoutAsUncached() {
+        List<TblColRef> dimensions = Arrays.asList(lstgFormatName, calDt);
+        CuboidScanInfo cached = CuboidScanInfo.get(segment, cuboid, dimensions, decoders(), noAlias);
+        CuboidScanInfo built = new CuboidScanInfo(segment, cuboid, dimensions, decoders(), noAlias);
+        assertNotSame(cached, built);
+
+        TupleInfo cachedInfo = cached.getTupleInfo();
+        TupleInfo builtInfo = built.getTupleInfo();
+        assertEquals(builtInfo.getAllFields(), cachedInfo.getAllFields());
+        assertEquals(builtInfo.getAllColumns(), cachedInfo.getAllColumns());
+        for (String field : builtInfo.getAllFields()) {
+            assertEquals(builtInfo.getFieldIndex(field), cachedInfo.getFieldIndex(field));
+            assertEquals(builtInfo.getDataType(field), cachedInfo.getDataType(field));
+        }
+        assertEquals(built.getDimensionNames(), cached.getDimensionNames());
+
+        // dimensions in row key order, then derived columns, then measures
+        assertEquals(0, cachedInfo.getColumnIndex(calDt));
+        assertEquals(1, cachedInfo.getColumnIndex(lstgFormatName));
+        List<String> fields = cachedInfo.getAllFields();
+        List<String> measures = decoders().get(0).getNames();
+        assertEquals(measures, fields.subList(fields.size() - measures.size(), fields.size()));
+    }
+
+    private List<RowValueDecoder> decoders() {
+        return Collections.singletonList(new RowValueDecoder(hbaseCol));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.dict.Dictionary;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HBaseKeyRangeTest extends LocalFileMetadataTestCase {
+
+    CubeInstance cube;
+    CubeSegment segment;
+    TblColRef calDt;
+    TblColRef lstgFormatName;
+    TblColRef lstgSiteId;
+    String siteId;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+
+        cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_ready");
+        segment = cube.getLatestReadySegment();
+        calDt = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "CAL_DT");
+        lstgFormatName = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "LSTG_FORMAT_NAME");
+        lstgSiteId = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "LSTG_SITE_ID");
+        Dictionary<?> siteDict = segment.getDictionary(lstgSiteId);
+        siteId = String.valueOf(siteDict.getValueFromId(siteDict.getMinId()));
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testExactKeysProduct() {
+        HBaseKeyRange range = newRange(//
+                new ColumnValueRange(calDt, Arrays.asList("2012-01-01", "2012-01-02"), FilterOperatorEnum.IN), //
+                new ColumnValueRange(lstgFormatName, Arrays.asList("Auction", "FP-GTC"), FilterOperatorEnum.IN), //
+                new ColumnValueRange(lstgSiteId, Arrays.asList(siteId), FilterOperatorEnum.EQ));
+
+        List<byte[]> keys = range.getExactKeys();
+        assertNotNull(keys);
+        assertEquals(2 * 2 * 1, keys.size());
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(Bytes.compareTo(keys.get(i - 1), keys.get(i)) < 0);
+        }
+        for (byte[] key : keys) {
+            assertTrue(Bytes.compareTo(range.getStartKey(), key) <= 0);
+            assertTrue(Bytes.compareTo(key, range.getStopKey()) < 0);
+        }
+    }
+
+    @Test
+    public void testExactKeysDropValuesNotInDictionary() {
+        HBaseKeyRange range = newRange(//
+                new ColumnValueRange(calDt, Arrays.asList("2012-01-01"), FilterOperatorEnum.EQ), //
+                new ColumnValueRange(lstgFormatName, Arrays.asList("Auction", "FP-GTC"), FilterOperatorEnum.IN), //
+                new ColumnValueRange(lstgSiteId, Arrays.asList(siteId, "no such site"), FilterOperatorEnum.IN));
+        assertEquals(2, range.getExactKeys().size());
+
+        // nothing left of a column, nothing to get
+        range = newRange(//
+                new ColumnValueRange(calDt, Arrays.asList("2012-01-01"), FilterOperatorEnum.EQ), //
+                new ColumnValueRange(lstgFormatName, Arrays.asList("Auction"), FilterOperatorEnum.EQ), //
+                new ColumnValueRange(lstgSiteId, Arrays.asList("no such site"), FilterOperatorEnum.EQ));
+        assertEquals(0, range.getExactKeys().size());
+    }
+
+    @Test
+    public void testExactKeysCap() {
+        getTestConfig().setProperty("kylin.query.scan.get.max.keys", "3");
+        HBaseKeyRange range = newRange(//
+                new ColumnValueRange(calDt, Arrays.asList("2012-01-01", "2012-01-02"), FilterOperatorEnum.IN), //
+                new ColumnValueRange(lstgFormatName, Arrays.asList("Auction", "FP-GTC"), FilterOperatorEnum.IN), //
+                new ColumnValueRange(lstgSiteId, Arrays.asList(siteId), FilterOperatorEnum.EQ));
+        assertNull(range.getExactKeys());
+
+        getTestConfig().setProperty("kylin.query.scan.get.max.keys", "0");
+        range = newRange(//
+                new ColumnValueRange(calDt, Arrays.asList("2012-01-01"), FilterOperatorEnum.EQ), //
+                new ColumnValueRange(lstgFormatName, Arrays.asList("Auction"), FilterOperatorEnum.EQ), //
+                new ColumnValueRange(lstgSiteId, Arrays.asList(siteId), FilterOperatorEnum.EQ));
+        assertNull(range.getExactKeys());
+    }
+
+    @Test
+    public void testExactKeysNeedAllColumnsBound() {
+        // the site is in the cuboid but not bound
+        HBaseKeyRange range = new HBaseKeyRange(Arrays.asList(calDt, lstgFormatName, lstgSiteId), Arrays.asList(//
+                new ColumnValueRange(calDt, Arrays.asList("2012-01-01"), FilterOperatorEnum.EQ), //
+                new ColumnValueRange(lstgFormatName, Arrays.asList("Auction"), FilterOperatorEnum.EQ)), segment, cube.getDescriptor());
+        assertNull(range.getExactKeys());
+    }
+
+    private HBaseKeyRange newRange(ColumnValueRange... ranges) {
+        return new HBaseKeyRange(Arrays.asList(calDt, lstgFormatName, lstgSiteId), Arrays.asList(ranges), segment, cube.getDescriptor());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.client.metrics.ScanMetrics;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class HBaseScanStatsTest {
+
+    @Test
+    public void testAdd() {
+        HBaseScanStats stats = new HBaseScanStats();
+        stats.add(metrics(3, 1000));
+        stats.add(metrics(2, 500));
+        stats.addCoprocessorRows(100, 10);
+        stats.addCachedSegmentScan();
+        stats.addGets(8, 5);
+
+        Map<String, Long> map = stats.toMap();
+        assertEquals(Long.valueOf(2), map.get("scans"));
+        assertEquals(Long.valueOf(5), map.get("rpcCalls"));
+        assertEquals(Long.valueOf(1500), map.get("bytesInResults"));
+        assertEquals(Long.valueOf(2), map.get("regions"));
+        assertEquals(Long.valueOf(100), map.get("coprocessorInputRows"));
+        assertEquals(Long.valueOf(10), map.get("coprocessorOutputRows"));
+        assertEquals(Long.valueOf(1), map.get("cachedSegmentScans"));
+        assertEquals(Long.valueOf(8), map.get("gets"));
+        assertEquals(Long.valueOf(5), map.get("getHits"));
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        // segment scans of one query report from the scan pool threads
+        final HBaseScanStats stats = new HBaseScanStats();
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        stats.add(metrics(1, 10));
+                        stats.addCoprocessorRows(2, 1);
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        Map<String, Long> map = stats.toMap();
+        assertEquals(Long.valueOf(8000), map.get("scans"));
+        assertEquals(Long.valueOf(80000), map.get("bytesInResults"));
+        assertEquals(Long.valueOf(16000), map.get("coprocessorInputRows"));
+    }
+
+    private ScanMetrics metrics(long rpcCalls, long bytes) {
+        ScanMetrics metrics = new ScanMetrics();
+        metrics.countOfRPCcalls.set(rpcCalls);
+        metrics.countOfBytesInResults.set(bytes);
+        metrics.countOfRegions.set(1);
+        return metrics;
+    }
+}
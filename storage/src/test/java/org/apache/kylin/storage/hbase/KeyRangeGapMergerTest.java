@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Pair;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class KeyRangeGapMergerTest {
+
+    // two 1 byte dictionary columns of cardinality 10, 100 rows in total
+    KeyRangeGapMerger merger = new KeyRangeGapMerger(new int[] { 1, 1 }, new long[] { 0, 0 }, new double[] { 10, 10 }, 100);
+
+    @Test
+    public void testPosition() {
+        assertEquals(0, merger.getPosition(key(0, 0)), 1e-9);
+        assertEquals(0.35, merger.getPosition(key(3, 5)), 1e-9);
+        // blank bytes of an open range
+        assertEquals(1.0, merger.getPosition(key(0xff, 0xff)), 1e-9);
+        assertEquals(32, merger.getGapRows(key(1, 2), key(4, 4)), 1e-9);
+    }
+
+    @Test
+    public void testMergeSmallestGaps() {
+        List<HBaseKeyRange> ranges = Lists.newArrayList(range(0, 0, 0, 1), range(0, 3, 0, 4), range(5, 0, 5, 1), range(5, 2, 5, 3), range(9, 0, 9, 9));
+        boolean[] mergeWithNext = merger.planMerge(ranges, 2);
+        // gaps in rows are 2, 46, 1, 37, merging across the 3 smallest leaves 2 ranges
+        assertArrayEquals(new boolean[] { true, false, true, true }, mergeWithNext);
+    }
+
+    @Test
+    public void testUnderTarget() {
+        List<HBaseKeyRange> ranges = Lists.newArrayList(range(0, 0, 0, 1), range(5, 0, 5, 1));
+        assertArrayEquals(new boolean[] { false }, merger.planMerge(ranges, 2));
+    }
+
+    private HBaseKeyRange range(int start1, int start2, int stop1, int stop2) {
+        return new HBaseKeyRange(null, null, key(start1, start2), key(stop1, stop2), Collections.<Pair<byte[], byte[]>> emptyList(), Collections.<Collection<ColumnValueRange>> emptyList(), 0, Long.MAX_VALUE);
+    }
+
+    private byte[] key(int v1, int v2) {
+        byte[] key = new byte[10]; // 8 bytes of cuboid id
+        key[8] = (byte) v1;
+        key[9] = (byte) v2;
+        return key;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.RowValueDecoder;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.tuple.Tuple;
+import org.apache.kylin.storage.tuple.TupleInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class ParallelHBaseTupleIteratorTest extends LocalFileMetadataTestCase {
+
+    static final String FIELD = "A";
+    static final int ENDLESS = -1;
+
+    CubeInstance cube;
+    CubeSegment segment;
+    Cuboid cuboid;
+    TupleInfo tupleInfo;
+
+    // mock iterators by the start key of their unit
+    final Map<String, MockSegmentIterator> mocks = Maps.newConcurrentMap();
+    final AtomicInteger opened = new AtomicInteger();
+    final AtomicInteger closed = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+
+        cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_ready");
+        segment = cube.getLatestReadySegment();
+        cuboid = Cuboid.findById(cube.getDescriptor(), Cuboid.getBaseCuboidId(cube.getDescriptor()));
+        tupleInfo = new TupleInfo();
+        tupleInfo.setField(FIELD, null, "string", 0);
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testOrdered() {
+        // the first unit is the slowest, its rows still come first
+        mock("u1", 3, 20, null);
+        mock("u2", 3, 0, null);
+        mock("u3", 3, 0, null);
+
+        ITupleIterator iterator = parallel(true, new StorageContext(), "u1", "u2", "u3");
+        assertEquals(Arrays.asList("u1-0", "u1-1", "u1-2", "u2-0", "u2-1", "u2-2", "u3-0", "u3-1", "u3-2"), drain(iterator));
+        iterator.close();
+        assertAllClosed();
+    }
+
+    @Test
+    public void testUnordered() {
+        mock("u1", 100, 0, null);
+        mock("u2", 200, 0, null);
+
+        ITupleIterator iterator = parallel(false, new StorageContext(), "u1", "u2");
+        assertEquals(300, drain(iterator).size());
+        iterator.close();
+        assertAllClosed();
+    }
+
+    @Test
+    public void testScanError() {
+        for (boolean ordered : new boolean[] { true, false }) {
+            RuntimeException error = new IllegalStateException("region server gone");
+            mock("ok", 10, 0, null);
+            mock("bad", 5, 0, error);
+
+            ITupleIterator iterator = parallel(ordered, new StorageContext(), "ok", "bad");
+            try {
+                drain(iterator);
+                fail("scan error not forwarded");
+            } catch (IllegalStateException e) {
+                assertSame(error, e);
+            }
+            iterator.close();
+            assertAllClosed();
+        }
+    }
+
+    @Test
+    public void testCloseWhileScanning() {
+        for (boolean ordered : new boolean[] { true, false }) {
+            // more rows than the queues take, scanners are blocked on offer
+            mock("u1", ENDLESS, 0, null);
+            mock("u2", ENDLESS, 0, null);
+            mock("u3", ENDLESS, 0, null);
+
+            ITupleIterator iterator = parallel(ordered, new StorageContext(), "u1", "u2", "u3");
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(iterator.next());
+            }
+            iterator.close();
+            assertAllClosed();
+        }
+
+        // the shared pool is still usable
+        mock("after", 3, 0, null);
+        ITupleIterator iterator = parallel(true, new StorageContext(), "after");
+        assertEquals(3, drain(iterator).size());
+        iterator.close();
+    }
+
+    @Test
+    public void testLimit() {
+        mock("u1", ENDLESS, 0, null);
+        mock("u2", ENDLESS, 0, null);
+
+        StorageContext context = new StorageContext();
+        context.setLimit(5);
+        context.enableLimit();
+        ITupleIterator iterator = parallel(false, context, "u1", "u2");
+        assertEquals(5, drain(iterator).size());
+        // stopped without close
+        assertAllClosed();
+        iterator.close();
+        assertEquals(5, context.getTotalScanCount());
+    }
+
+    private ITupleIterator parallel(boolean ordered, StorageContext context, String... units) {
+        List<List<HBaseKeyRange>> scanUnits = Lists.newArrayList();
+        for (String unit : units) {
+            scanUnits.add(Collections.singletonList(range(unit)));
+        }
+        return new ParallelHBaseTupleIterator(null, scanUnits, ordered, cube, Collections.<TblColRef> emptyList(), null, Collections.<TblColRef> emptyList(), Collections.<RowValueDecoder> emptyList(), context) {
+            @Override
+            ITupleIterator newSegmentIterator(CubeSegment cubeSeg, List<HBaseKeyRange> keyRanges, List<RowValueDecoder> decoders) {
+                MockSegmentIterator mock = mocks.get(Bytes.toString(keyRanges.get(0).getStartKey()));
+                mock.running = true;
+                opened.incrementAndGet();
+                return mock;
+            }
+        };
+    }
+
+    private void mock(String unit, int rows, long delayMs, RuntimeException error) {
+        mocks.put(unit, new MockSegmentIterator(unit, rows, delayMs, error));
+    }
+
+    private void assertAllClosed() {
+        // scanners stop on their own, give them a few polls
+        long deadline = System.currentTimeMillis() + 5000;
+        while (closed.get() < opened.get() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        assertEquals("scanners left open", opened.get(), closed.get());
+        for (MockSegmentIterator mock : mocks.values()) {
+            assertFalse("scanner still running", mock.running);
+        }
+    }
+
+    private List<Object> drain(ITupleIterator iterator) {
+        List<Object> values = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            ITuple tuple = iterator.next();
+            values.add(tuple.getValue(FIELD));
+        }
+        return values;
+    }
+
+    private HBaseKeyRange range(String start) {
+        return new HBaseKeyRange(segment, cuboid, Bytes.toBytes(start), Bytes.toBytes(start + "~"), Collections.<Pair<byte[], byte[]>> emptyList(), Collections.<Collection<ColumnValueRange>> emptyList(), 0, Long.MAX_VALUE);
+    }
+
+    private class MockSegmentIterator implements ITupleIterator {
+        final String unit;
+        final int rows;
+        final long delayMs;
+        final RuntimeException error;
+        // one tuple reused for all rows, like CubeSegmentTupleIterator
+        final Tuple tuple = new Tuple(tupleInfo);
+        volatile boolean running = false;
+        int i = 0;
+
+        MockSegmentIterator(String unit, int rows, long delayMs, RuntimeException error) {
+            this.unit = unit;
+            this.rows = rows;
+            this.delayMs = delayMs;
+            this.error = error;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (rows != ENDLESS && i >= rows) {
+                if (error != null)
+                    throw error;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public ITuple next() {
+            if (delayMs > 0) {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            tuple.setDimensionTypedValue(FIELD, unit + "-" + i++);
+            return tuple;
+        }
+
+        @Override
+        public void close() {
+            running = false;
+            closed.incrementAndGet();
+        }
+    }
+}
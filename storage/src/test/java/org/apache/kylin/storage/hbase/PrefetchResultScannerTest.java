@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PrefetchResultScannerTest {
+
+    static final int BATCH = 10;
+    static final int DEPTH = 2;
+    // the pool is static and sized once, all tests use the same size
+    static final int THREADS = 4;
+    static final int ENDLESS = -1;
+
+    static final byte[] FAMILY = Bytes.toBytes("F1");
+    static final byte[] QUALIFIER = Bytes.toBytes("M");
+
+    @Test(timeout = 10000)
+    public void testPrefetch() throws Exception {
+        StubScanner stub = new StubScanner(25, null);
+        ResultScanner scanner = PrefetchResultScanner.prefetch(stub, BATCH, DEPTH, THREADS);
+        assertTrue(scanner instanceof PrefetchResultScanner);
+
+        // fetched ahead before anyone asks, up to the queue depth
+        while (stub.fetched < BATCH * DEPTH) {
+            Thread.sleep(10);
+        }
+        assertNotSame(Thread.currentThread(), stub.fetchThread);
+
+        List<Integer> rows = drain(scanner);
+        assertEquals(25, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(i, rows.get(i).intValue());
+        }
+        assertNull(scanner.next());
+        scanner.close();
+        assertTrue(stub.closed);
+    }
+
+    @Test(timeout = 10000)
+    public void testFallbackWhenPoolFull() throws Exception {
+        // take all prefetch threads with scanners stuck in RPC; other test
+        // classes in the same JVM may have sized the pool, don't count on THREADS
+        List<StubScanner> stuck = Lists.newArrayList();
+        List<ResultScanner> prefetching = Lists.newArrayList();
+        ResultScanner fallback = null;
+        for (int i = 0; i < 1000 && fallback == null; i++) {
+            StubScanner stub = new StubScanner(ENDLESS, null);
+            stub.gate = new CountDownLatch(1);
+            ResultScanner scanner = PrefetchResultScanner.prefetch(stub, BATCH, DEPTH, THREADS);
+            if (scanner == stub) {
+                fallback = scanner;
+            } else {
+                stuck.add(stub);
+                prefetching.add(scanner);
+            }
+        }
+        assertNotNull("no fallback with all threads busy", fallback);
+        fallback.close();
+
+        for (StubScanner stub : stuck) {
+            stub.gate.countDown();
+        }
+        for (ResultScanner scanner : prefetching) {
+            scanner.close();
+        }
+        for (StubScanner stub : stuck) {
+            assertTrue(stub.closed);
+        }
+
+        // threads are free again
+        ResultScanner scanner = PrefetchResultScanner.prefetch(new StubScanner(3, null), BATCH, DEPTH, THREADS);
+        assertTrue(scanner instanceof PrefetchResultScanner);
+        assertEquals(3, drain(scanner).size());
+        scanner.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testErrorForwarded() throws Exception {
+        IOException error = new IOException("region moved");
+        StubScanner stub = new StubScanner(15, error);
+        ResultScanner scanner = PrefetchResultScanner.prefetch(stub, BATCH, DEPTH, THREADS);
+
+        for (int i = 0; i < 15; i++) {
+            assertNotNull(scanner.next());
+        }
+        try {
+            scanner.next();
+            fail("error of the prefetch thread not forwarded");
+        } catch (IOException e) {
+            assertSame(error, e);
+        }
+        scanner.close();
+        assertTrue(stub.closed);
+
+        // unchecked errors are wrapped
+        RuntimeException runtimeError = new IllegalStateException();
+        stub = new StubScanner(0, runtimeError);
+        scanner = PrefetchResultScanner.prefetch(stub, BATCH, DEPTH, THREADS);
+        try {
+            scanner.next();
+            fail("error of the prefetch thread not forwarded");
+        } catch (IOException e) {
+            assertSame(runtimeError, e.getCause());
+        }
+        scanner.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseWhilePrefetching() throws Exception {
+        // queue full, the prefetch thread waits to offer
+        StubScanner stub = new StubScanner(ENDLESS, null);
+        ResultScanner scanner = PrefetchResultScanner.prefetch(stub, BATCH, DEPTH, THREADS);
+        assertNotNull(scanner.next());
+        scanner.close();
+        assertTrue(stub.closed);
+        assertNull(scanner.next());
+
+        // the prefetch thread is in an RPC, close waits for it to leave the scanner
+        stub = new StubScanner(ENDLESS, null);
+        stub.gate = new CountDownLatch(1);
+        final ResultScanner blocked = PrefetchResultScanner.prefetch(stub, BATCH, DEPTH, THREADS);
+        while (stub.fetchThread == null) {
+            Thread.sleep(10);
+        }
+        final CountDownLatch closeReturned = new CountDownLatch(1);
+        Thread closer = new Thread() {
+            @Override
+            public void run() {
+                blocked.close();
+                closeReturned.countDown();
+            }
+        };
+        closer.start();
+        assertFalse(closeReturned.await(200, TimeUnit.MILLISECONDS));
+        assertFalse(stub.closed);
+
+        stub.gate.countDown();
+        assertTrue(closeReturned.await(5, TimeUnit.SECONDS));
+        assertTrue(stub.closed);
+    }
+
+    private List<Integer> drain(ResultScanner scanner) throws IOException {
+        List<Integer> rows = Lists.newArrayList();
+        for (Result r = scanner.next(); r != null; r = scanner.next()) {
+            rows.add(Bytes.toInt(r.getRow()));
+        }
+        return rows;
+    }
+
+    private static class StubScanner implements ResultScanner {
+        final int rows;
+        final Throwable error;
+        // held closed to keep next(int) in an RPC
+        volatile CountDownLatch gate;
+        volatile int fetched;
+        volatile Thread fetchThread;
+        volatile boolean closed;
+
+        StubScanner(int rows, Throwable error) {
+            this.rows = rows;
+            this.error = error;
+        }
+
+        @Override
+        public Result[] next(int nbRows) throws IOException {
+            fetchThread = Thread.currentThread();
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            List<Result> results = Lists.newArrayList();
+            while (results.size() < nbRows && (rows == ENDLESS || fetched < rows)) {
+                results.add(Result.create(new Cell[] { new KeyValue(Bytes.toBytes(fetched++), FAMILY, QUALIFIER, new byte[8]) }));
+            }
+            if (results.isEmpty() && error != null) {
+                if (error instanceof IOException)
+                    throw (IOException) error;
+                throw (RuntimeException) error;
+            }
+            return results.toArray(new Result[results.size()]);
+        }
+
+        @Override
+        public Result next() throws IOException {
+            Result[] results = next(1);
+            return results.length == 0 ? null : results[0];
+        }
+
+        @Override
+        public Iterator<Result> iterator() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
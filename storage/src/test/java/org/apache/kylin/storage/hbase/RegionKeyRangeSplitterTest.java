@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class RegionKeyRangeSplitterTest {
+
+    static final byte[][] regions = new byte[][] { new byte[0], Bytes.toBytes("d"), Bytes.toBytes("h"), Bytes.toBytes("p") };
+
+    @Test
+    public void testWithinOneRegion() {
+        List<List<HBaseKeyRange>> units = RegionKeyRangeSplitter.splitByRegions(Lists.newArrayList(range("a", "c")), regions);
+        assertEquals(1, units.size());
+        assertEquals(1, units.get(0).size());
+        assertRange("a", "c", units.get(0).get(0));
+    }
+
+    @Test
+    public void testAcrossRegions() {
+        List<List<HBaseKeyRange>> units = RegionKeyRangeSplitter.splitByRegions(Lists.newArrayList(range("b", "k")), regions);
+        assertEquals(3, units.size());
+        assertRange("b", "d", units.get(0).get(0));
+        assertRange("d", "h", units.get(1).get(0));
+        assertRange("h", "k", units.get(2).get(0));
+    }
+
+    @Test
+    public void testGroupByRegionInOrder() {
+        List<HBaseKeyRange> ranges = Lists.newArrayList(range("q", "s"), range("e", "f"), range("a", "b"), range("f1", "i"));
+        List<List<HBaseKeyRange>> units = RegionKeyRangeSplitter.splitByRegions(ranges, regions);
+        assertEquals(4, units.size());
+        assertEquals(1, units.get(0).size());
+        assertRange("a", "b", units.get(0).get(0));
+        assertEquals(2, units.get(1).size());
+        assertRange("e", "f", units.get(1).get(0));
+        assertRange("f1", "h", units.get(1).get(1));
+        assertRange("h", "i", units.get(2).get(0));
+        assertRange("q", "s", units.get(3).get(0));
+    }
+
+    @Test
+    public void testStopOnBoundary() {
+        List<List<HBaseKeyRange>> units = RegionKeyRangeSplitter.splitByRegions(Lists.newArrayList(range("d", "h")), regions);
+        assertEquals(1, units.size());
+        assertRange("d", "h", units.get(0).get(0));
+    }
+
+    @Test
+    public void testExactKeysFollowRegions() {
+        List<byte[]> keys = Lists.newArrayList(Bytes.toBytes("b"), Bytes.toBytes("d"), Bytes.toBytes("j"));
+        HBaseKeyRange range = new HBaseKeyRange(null, null, Bytes.toBytes("b"), Bytes.toBytes("k"), Collections.<Pair<byte[], byte[]>> emptyList(), keys, Collections.<Collection<ColumnValueRange>> emptyList(), 0, Long.MAX_VALUE);
+        List<List<HBaseKeyRange>> units = RegionKeyRangeSplitter.splitByRegions(Lists.newArrayList(range), regions);
+        assertEquals(3, units.size());
+        assertEquals(1, units.get(0).get(0).getExactKeys().size());
+        assertEquals("b", Bytes.toString(units.get(0).get(0).getExactKeys().get(0)));
+        assertEquals("d", Bytes.toString(units.get(1).get(0).getExactKeys().get(0)));
+        assertEquals("j", Bytes.toString(units.get(2).get(0).getExactKeys().get(0)));
+        assertNull(range("a", "c").getExactKeys());
+    }
+
+    private void assertRange(String start, String stop, HBaseKeyRange range) {
+        assertEquals(start, Bytes.toString(range.getStartKey()));
+        assertEquals(stop, Bytes.toString(range.getStopKey()));
+    }
+
+    private HBaseKeyRange range(String start, String stop) {
+        return new HBaseKeyRange(null, null, Bytes.toBytes(start), Bytes.toBytes(stop), Collections.<Pair<byte[], byte[]>> emptyList(), Collections.<Collection<ColumnValueRange>> emptyList(), 0, Long.MAX_VALUE);
+    }
+}
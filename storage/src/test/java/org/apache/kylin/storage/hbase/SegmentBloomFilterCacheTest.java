@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.kv.ColumnBloomFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class SegmentBloomFilterCacheTest extends LocalFileMetadataTestCase {
+
+    CubeSegment segment;
+    TblColRef lstgFormatName;
+    TblColRef calDt;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_ready");
+        segment = cube.getLatestReadySegment();
+        lstgFormatName = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "LSTG_FORMAT_NAME");
+        calDt = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "CAL_DT");
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testMightContain() throws IOException {
+        putBloomFilter(lstgFormatName, "Auction", "FP-GTC");
+
+        assertNull(SegmentBloomFilterCache.mightContain(segment, calDt, Arrays.asList("2012-01-01")));
+        assertEquals(Sets.newHashSet("Auction"), SegmentBloomFilterCache.mightContain(segment, lstgFormatName, Arrays.asList("Auction", "no such format")));
+    }
+
+    @Test
+    public void testOnlyStringColumns() throws IOException {
+        // dates are normalized by the dictionary, raw values may not match the literal
+        putBloomFilter(calDt, "2012-01-01");
+        assertFalse(ColumnBloomFilter.isApplicable(calDt));
+        assertNull(SegmentBloomFilterCache.mightContain(segment, calDt, Arrays.asList("2012-1-1")));
+    }
+
+    @Test
+    public void testSkipSegment() throws IOException {
+        putBloomFilter(lstgFormatName, "Auction", "FP-GTC");
+
+        List<Collection<ColumnValueRange>> orAndRanges = Lists.newArrayList();
+        orAndRanges.add(Lists.newArrayList(new ColumnValueRange(lstgFormatName, Arrays.asList("Auction", "Others"), FilterOperatorEnum.IN)));
+        orAndRanges.add(Lists.newArrayList(new ColumnValueRange(lstgFormatName, Arrays.asList("Others"), FilterOperatorEnum.EQ)));
+
+        // the branch of absent values is dropped, the other is narrowed
+        assertFalse(CubeStorageEngine.andMergeBloomFilters(orAndRanges, segment));
+        assertEquals(1, orAndRanges.size());
+        assertEquals(Sets.newHashSet("Auction"), orAndRanges.get(0).iterator().next().getEqualValues());
+
+        // no branch left, the segment is skipped
+        orAndRanges = Lists.newArrayList();
+        orAndRanges.add(Lists.newArrayList(new ColumnValueRange(lstgFormatName, Arrays.asList("Others"), FilterOperatorEnum.EQ)));
+        assertTrue(CubeStorageEngine.andMergeBloomFilters(orAndRanges, segment));
+    }
+
+    private void putBloomFilter(TblColRef col, String... values) throws IOException {
+        ColumnBloomFilter bloomFilter = ColumnBloomFilter.create(values.length, 0.0001);
+        for (String value : values) {
+            bloomFilter.add(Bytes.toBytes(value));
+        }
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        bloomFilter.write(new DataOutputStream(buf));
+
+        // unique path per test, the cache is static
+        String resPath = ResourceStore.BLOOM_FILTER_RESOURCE_ROOT + "/test/" + System.nanoTime() + "/" + col.getName() + ColumnBloomFilter.FILE_SUFFIX;
+        ResourceStore.getStore(getTestConfig()).putResource(resPath, new ByteArrayInputStream(buf.toByteArray()), System.currentTimeMillis());
+        segment.putBloomFilterResPaths(col, new String[] { resPath });
+    }
+}
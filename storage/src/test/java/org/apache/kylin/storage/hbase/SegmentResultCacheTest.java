@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.kylin.common.hll.HyperLogLogPlusCounter;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.RowValueDecoder;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.StorageContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SegmentResultCacheTest extends LocalFileMetadataTestCase {
+
+    CubeSegment segment;
+    Cuboid cuboid;
+    TblColRef lstgFormatName;
+    TblColRef calDt;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_ready");
+        segment = cube.getLatestReadySegment();
+        cuboid = Cuboid.findById(cube.getDescriptor(), Cuboid.getBaseCuboidId(cube.getDescriptor()));
+        lstgFormatName = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "LSTG_FORMAT_NAME");
+        calDt = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "CAL_DT");
+    }
+
+    @After
+    public void after() throws Exception {
+        SegmentResultCache.clear();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSignature() {
+        List<HBaseKeyRange> ranges = Lists.newArrayList(range("a", "b"));
+        List<TblColRef> dims = Lists.newArrayList(lstgFormatName, calDt);
+        List<TblColRef> dimsReordered = Lists.newArrayList(calDt, lstgFormatName);
+
+        String signature = signature(ranges, dims, new StorageContext());
+        assertEquals(signature, signature(ranges, dimsReordered, new StorageContext()));
+        assertFalse(signature.equals(signature(Lists.newArrayList(range("a", "c")), dims, new StorageContext())));
+        assertFalse(signature.equals(signature(ranges, Lists.newArrayList(lstgFormatName), new StorageContext())));
+
+        // coprocessor output differs from raw rows
+        StorageContext coprocessor = new StorageContext();
+        coprocessor.enableCoprocessor();
+        assertFalse(signature.equals(signature(ranges, dims, coprocessor)));
+    }
+
+    @Test
+    public void testOnlyFullyReadScansCached() {
+        SegmentResultCache.Recording recording = SegmentResultCache.record(segment, "partial");
+        recording.add(new Object[] { "a", 1L });
+        // never finished, like a scan cut off by limit
+        assertNull(SegmentResultCache.get(segment, "partial"));
+
+        recording = SegmentResultCache.record(segment, "full");
+        Object[] reused = new Object[2];
+        reused[0] = "a";
+        reused[1] = 1L;
+        recording.add(reused);
+        reused[0] = "b";
+        reused[1] = 2L;
+        recording.add(reused);
+        recording.finish();
+
+        List<Object[]> cached = SegmentResultCache.get(segment, "full");
+        assertEquals(2, cached.size());
+        assertEquals("a", cached.get(0)[0]);
+        assertEquals("b", cached.get(1)[0]);
+    }
+
+    @Test
+    public void testTooBigNotCached() {
+        SegmentResultCache.Recording recording = new SegmentResultCache.Recording(segment, "big", 3);
+        recording.add(new Object[] { "a", 1L });
+        recording.add(new Object[] { "b", 2L });
+        recording.finish();
+        assertNull(SegmentResultCache.get(segment, "big"));
+    }
+
+    @Test
+    public void testEstimateBytes() {
+        List<Object[]> longs = Collections.singletonList(new Object[] { "a", 1L });
+        List<Object[]> counters = Collections.singletonList(new Object[] { "a", new HyperLogLogPlusCounter(16) });
+        assertTrue(SegmentResultCache.estimateBytes(longs) < 200);
+        assertTrue(SegmentResultCache.estimateBytes(counters) > 65536);
+    }
+
+    private String signature(List<HBaseKeyRange> ranges, List<TblColRef> dims, StorageContext context) {
+        return SegmentResultCache.getSignature(ranges, dims, null, dims, Collections.<RowValueDecoder> emptyList(), context);
+    }
+
+    private HBaseKeyRange range(String start, String stop) {
+        return new HBaseKeyRange(segment, cuboid, Bytes.toBytes(start), Bytes.toBytes(stop), Collections.<Pair<byte[], byte[]>> emptyList(), Collections.<Collection<ColumnValueRange>> emptyList(), 0, Long.MAX_VALUE);
+    }
+}
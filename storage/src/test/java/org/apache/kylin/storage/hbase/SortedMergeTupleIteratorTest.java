@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kylin.metadata.model.ColumnDesc;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SortedMergeTupleIteratorTest {
+
+    static final TblColRef COL = newCol("A");
+
+    @Test
+    public void testMerge() {
+        List<ITupleIterator> inputs = Lists.<ITupleIterator> newArrayList(input("a", "c", "e", null), input("b", "c", "d"), input());
+        SortedMergeTupleIterator merge = new SortedMergeTupleIterator(inputs, Collections.singletonList(COL), 0);
+        assertEquals(Arrays.<Object> asList("a", "b", "c", "c", "d", "e", null), drain(merge));
+    }
+
+    @Test
+    public void testLimitKeepsWholeKeys() {
+        List<ITupleIterator> inputs = Lists.<ITupleIterator> newArrayList(input("a", "c", "e"), input("a", "c", "d"));
+        SortedMergeTupleIterator merge = new SortedMergeTupleIterator(inputs, Collections.singletonList(COL), 2);
+        // two distinct keys, each with rows from both inputs
+        assertEquals(Arrays.<Object> asList("a", "a", "c", "c"), drain(merge));
+    }
+
+    private List<Object> drain(ITupleIterator iterator) {
+        List<Object> values = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            values.add(iterator.next().getValue(COL));
+        }
+        iterator.close();
+        return values;
+    }
+
+    private ITupleIterator input(final String... values) {
+        // one tuple object reused for all rows, like segment iterators do
+        final MockTuple tuple = new MockTuple();
+        return new ITupleIterator() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < values.length;
+            }
+
+            @Override
+            public ITuple next() {
+                tuple.value = values[i++];
+                return tuple;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static TblColRef newCol(String name) {
+        ColumnDesc col = new ColumnDesc();
+        col.setName(name);
+        col.setTable(new TableDesc());
+        return new TblColRef(col);
+    }
+
+    private static class MockTuple implements ITuple {
+        Object value;
+
+        @Override
+        public List<String> getAllFields() {
+            return Collections.singletonList(COL.getName());
+        }
+
+        @Override
+        public List<TblColRef> getAllColumns() {
+            return Collections.singletonList(COL);
+        }
+
+        @Override
+        public Object[] getAllValues() {
+            return new Object[] { value };
+        }
+
+        @Override
+        public Object getValue(TblColRef col) {
+            return value;
+        }
+
+        @Override
+        public Object getValue(String field) {
+            return value;
+        }
+    }
+}
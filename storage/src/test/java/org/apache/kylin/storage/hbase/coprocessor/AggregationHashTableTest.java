@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import org.apache.kylin.metadata.measure.MeasureAggregator;
+
+@SuppressWarnings("rawtypes")
+public class AggregationHashTableTest {
+
+    // the 3rd byte is not in group by
+    byte[] mask = new byte[] { (byte) 0xff, (byte) 0xff, 0, (byte) 0xff };
+
+    @Test
+    public void testSameAsTreeMap() {
+        CoprocessorProjector projector = new CoprocessorProjector(mask);
+        AggregationHashTable table = new AggregationHashTable();
+        TreeMap<CoprocessorProjector.AggrKey, MeasureAggregator[]> expected = new TreeMap<CoprocessorProjector.AggrKey, MeasureAggregator[]>();
+
+        Random rand = new Random(1);
+        byte[] row = new byte[mask.length];
+        for (int i = 0; i < 100000; i++) {
+            rand.nextBytes(row);
+            row[0] = (byte) (row[0] & 0x0f); // make some duplicates
+
+            CoprocessorProjector.AggrKey key = projector.getAggrKey(row);
+            MeasureAggregator[] value = table.get(key);
+            assertSame(expected.get(key), value);
+            if (value == null) {
+                value = new MeasureAggregator[0];
+                table.put(key, value);
+                expected.put(key.copy(), value);
+            }
+        }
+        assertEquals(expected.size(), table.size());
+
+        Iterator<Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]>> it = table.sortedIterator();
+        for (Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> entry : expected.entrySet()) {
+            assertTrue(it.hasNext());
+            Map.Entry<CoprocessorProjector.AggrKey, MeasureAggregator[]> actual = it.next();
+            assertEquals(0, entry.getKey().compareTo(actual.getKey()));
+            assertSame(entry.getValue(), actual.getValue());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testEmpty() {
+        AggregationHashTable table = new AggregationHashTable();
+        CoprocessorProjector projector = new CoprocessorProjector(mask);
+        assertNull(table.get(projector.getAggrKey(new byte[mask.length])));
+        assertEquals(0, table.size());
+        assertFalse(table.sortedIterator().hasNext());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.apache.kylin.cube.kv.RowConstants;
+import org.apache.kylin.dict.Dictionary;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.ColumnDesc;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.hbase.coprocessor.observer.ObserverTuple;
+
+public class RowKeyFilterTest {
+
+    static final byte[] SAMPLE_BYTES = new byte[] { 0, 1, 2, (byte) 0x80, Dictionary.NULL };
+
+    TableDesc table = newTable();
+    TblColRef a = newCol("A");
+    TblColRef b = newCol("B");
+    TblColRef c = newCol("C");
+    CoprocessorRowType type = new CoprocessorRowType(new TblColRef[] { a, b, c }, new int[] { 1, 2, 5 });
+
+    @Test
+    public void testCompare() {
+        for (FilterOperatorEnum op : new FilterOperatorEnum[] { FilterOperatorEnum.EQ, FilterOperatorEnum.NEQ, FilterOperatorEnum.LT, FilterOperatorEnum.LTE, FilterOperatorEnum.GT, FilterOperatorEnum.GTE }) {
+            assertSameAsTuple(compare(a, op, id(1)));
+            assertSameAsTuple(compare(b, op, id(2, 0)));
+            assertSameAsTuple(compare(c, op, id(1, 0x80, 0, 2, 1)));
+        }
+    }
+
+    @Test
+    public void testIn() {
+        assertSameAsTuple(compare(a, FilterOperatorEnum.IN, id(0), id(2)));
+        assertSameAsTuple(compare(b, FilterOperatorEnum.IN, id(0, 1), id(0x80, 2), id(1)));
+        assertSameAsTuple(compare(c, FilterOperatorEnum.IN, id(0, 1, 2, 0, 0), id(1, 1, 1, 1, 1)));
+        assertSameAsTuple(compare(b, FilterOperatorEnum.NOTIN, id(0, 1), id(0x80, 2)));
+        assertSameAsTuple(compare(c, FilterOperatorEnum.NOTIN, id(0, 1, 2, 0, 0)));
+    }
+
+    @Test
+    public void testCompareToNull() {
+        assertSame(RowKeyFilter.FALSE, RowKeyFilter.compile(compare(a, FilterOperatorEnum.EQ, id(0xff)), type));
+        assertSame(RowKeyFilter.FALSE, RowKeyFilter.compile(compare(a, FilterOperatorEnum.NEQ, id(0xff)), type));
+    }
+
+    @Test
+    public void testLogical() {
+        TupleFilter and = logical(FilterOperatorEnum.AND, compare(a, FilterOperatorEnum.GTE, id(1)), compare(b, FilterOperatorEnum.IN, id(0, 1), id(2, 2)));
+        TupleFilter or = logical(FilterOperatorEnum.OR, and, compare(c, FilterOperatorEnum.LT, id(1, 0, 0, 0, 0)), ConstantTupleFilter.FALSE);
+        TupleFilter not = logical(FilterOperatorEnum.NOT, or);
+        assertSameAsTuple(and);
+        assertSameAsTuple(or);
+        assertSameAsTuple(not);
+        assertSameAsTuple(logical(FilterOperatorEnum.AND, not, ConstantTupleFilter.TRUE));
+    }
+
+    @Test
+    public void testNotCompilable() {
+        CompareTupleFilter isNull = new CompareTupleFilter(FilterOperatorEnum.ISNULL);
+        isNull.addChild(new ColumnTupleFilter(a));
+        assertNull(RowKeyFilter.compile(isNull, type));
+        assertNull(RowKeyFilter.compile(logical(FilterOperatorEnum.AND, compare(a, FilterOperatorEnum.EQ, id(1)), isNull), type));
+        assertSame(RowKeyFilter.TRUE, RowKeyFilter.compile(null, type));
+    }
+
+    private void assertSameAsTuple(TupleFilter filter) {
+        RowKeyFilter compiled = RowKeyFilter.compile(filter, type);
+        assertNotNull(compiled);
+
+        ObserverTuple tuple = new ObserverTuple(type);
+        Random rand = new Random(1);
+        byte[] row = new byte[3 + RowConstants.ROWKEY_CUBOIDID_LEN + 1 + 2 + 5];
+        for (int i = 0; i < 5000; i++) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = SAMPLE_BYTES[rand.nextInt(SAMPLE_BYTES.length)];
+            }
+            // the row key starts at offset 3
+            tuple.setUnderlying(row, 3, row.length - 3);
+            assertEquals(filter + " on " + Arrays.toString(row), filter.evaluate(tuple), compiled.evaluate(row, 3));
+        }
+    }
+
+    private CompareTupleFilter compare(TblColRef col, FilterOperatorEnum op, String... values) {
+        CompareTupleFilter filter = new CompareTupleFilter(op);
+        filter.addChild(new ColumnTupleFilter(col));
+        filter.addChild(new ConstantTupleFilter(Arrays.asList(values)));
+        byte[] nullId = new byte[type.columnSizes[type.getColIndexByTblColRef(col)]];
+        Arrays.fill(nullId, Dictionary.NULL);
+        filter.setNullString(Dictionary.dictIdToString(nullId, 0, nullId.length));
+        return filter;
+    }
+
+    private LogicalTupleFilter logical(FilterOperatorEnum op, TupleFilter... children) {
+        LogicalTupleFilter filter = new LogicalTupleFilter(op);
+        for (TupleFilter child : children) {
+            filter.addChild(child);
+        }
+        return filter;
+    }
+
+    private String id(int... bytes) {
+        byte[] id = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            id[i] = (byte) bytes[i];
+        }
+        return Dictionary.dictIdToString(id, 0, id.length);
+    }
+
+    private TableDesc newTable() {
+        TableDesc t = new TableDesc();
+        t.setName("TABLE");
+        t.setDatabase("DEFAULT");
+        return t;
+    }
+
+    private TblColRef newCol(String name) {
+        ColumnDesc col = new ColumnDesc();
+        col.setName(name);
+        col.setTable(table);
+        return new TblColRef(col);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.endpoint;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.storage.hbase.RegionScannerAdapter;
+import org.apache.kylin.storage.hbase.coprocessor.endpoint.generated.CubeVisitProtos;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+public class CubeEndpointScannerTest {
+
+    byte[] family = Bytes.toBytes("F1");
+    byte[] q1 = Bytes.toBytes("M");
+    byte[] q2 = Bytes.toBytes("N");
+
+    @Test
+    public void testDecode() throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        KeyValue.write(new KeyValue(Bytes.toBytes("r1"), family, q1, Bytes.toBytes(1L)), out);
+        KeyValue.write(new KeyValue(Bytes.toBytes("r1"), family, q2, Bytes.toBytes(2L)), out);
+        KeyValue.write(new KeyValue(Bytes.toBytes("r2"), family, q1, Bytes.toBytes(3L)), out);
+        out.flush();
+
+        List<Result> rows = new ArrayList<Result>();
+        CubeEndpointScanner.decode(ByteString.copyFrom(buf.toByteArray()), rows);
+        CubeEndpointScanner.decode(ByteString.EMPTY, rows);
+
+        assertEquals(2, rows.size());
+        assertEquals("r1", Bytes.toString(rows.get(0).getRow()));
+        assertEquals(2, rows.get(0).rawCells().length);
+        assertEquals(2L, Bytes.toLong(rows.get(0).getValue(family, q2)));
+        assertEquals("r2", Bytes.toString(rows.get(1).getRow()));
+        assertEquals(3L, Bytes.toLong(rows.get(1).getValue(family, q1)));
+    }
+
+    @Test
+    public void testPages() throws IOException {
+        List<Result> input = new ArrayList<Result>();
+        for (int i = 0; i < 10; i++) {
+            input.add(Result.create(new Cell[] { new KeyValue(Bytes.toBytes("r" + i), family, q1, new byte[100]) }));
+        }
+
+        // a page per two rows, each page runs the scan again, as when the lease of the scanner expired
+        List<Result> rows = new ArrayList<Result>();
+        ByteString resumeAfter = null;
+        int pages = 0;
+        do {
+            CubeVisitProtos.CubeVisitResponse.Builder response = CubeVisitProtos.CubeVisitResponse.newBuilder();
+            CubeEndpoint.page(new RegionScannerAdapter(new ListResultScanner(input)), resumeAfter == null ? null : resumeAfter.toByteArray(), 250, response);
+            CubeEndpointScanner.decode(response.getCells(), rows);
+            resumeAfter = response.hasContinuation() ? response.getContinuation() : null;
+            pages++;
+        } while (resumeAfter != null);
+
+        assertTrue(pages >= 5);
+        assertEquals(input.size(), rows.size());
+        for (int i = 0; i < input.size(); i++) {
+            assertEquals("r" + i, Bytes.toString(rows.get(i).getRow()));
+        }
+    }
+
+    @Test
+    public void testPagesOfOpenScanner() throws IOException {
+        List<Result> input = new ArrayList<Result>();
+        for (int i = 0; i < 10; i++) {
+            input.add(Result.create(new Cell[] { new KeyValue(Bytes.toBytes("r" + i), family, q1, new byte[100]) }));
+        }
+
+        // the scanner kept open goes on where the previous page ended
+        RegionScannerAdapter scanner = new RegionScannerAdapter(new ListResultScanner(input));
+        List<Result> rows = new ArrayList<Result>();
+        int pages = 0;
+        boolean hasMore;
+        do {
+            CubeVisitProtos.CubeVisitResponse.Builder response = CubeVisitProtos.CubeVisitResponse.newBuilder();
+            CubeEndpoint.page(scanner, null, 250, response);
+            CubeEndpointScanner.decode(response.getCells(), rows);
+            hasMore = response.hasContinuation();
+            if (hasMore) {
+                assertEquals(Bytes.toString(rows.get(rows.size() - 1).getRow()), response.getContinuation().toStringUtf8());
+            }
+            pages++;
+        } while (hasMore);
+
+        assertTrue(pages >= 5);
+        assertEquals(input.size(), rows.size());
+        for (int i = 0; i < input.size(); i++) {
+            assertEquals("r" + i, Bytes.toString(rows.get(i).getRow()));
+        }
+
+        // rows as stored go on right after the last one
+        assertArrayEquals(new byte[] { 'r', '1', 0 }, CubeEndpoint.nextStartRow(scanner, Bytes.toBytes("r1")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testResumeAfterMissingRow() throws IOException {
+        List<Result> input = Collections.singletonList(Result.create(new Cell[] { new KeyValue(Bytes.toBytes("r1"), family, q1, Bytes.toBytes(1L)) }));
+        CubeEndpoint.page(new RegionScannerAdapter(new ListResultScanner(input)), Bytes.toBytes("r0"), Long.MAX_VALUE, CubeVisitProtos.CubeVisitResponse.newBuilder());
+    }
+
+    private static class ListResultScanner implements ResultScanner {
+        private final Iterator<Result> iterator;
+
+        ListResultScanner(List<Result> results) {
+            this.iterator = results.iterator();
+        }
+
+        @Override
+        public Iterator<Result> iterator() {
+            return iterator;
+        }
+
+        @Override
+        public Result next() throws IOException {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public Result[] next(int nbRows) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
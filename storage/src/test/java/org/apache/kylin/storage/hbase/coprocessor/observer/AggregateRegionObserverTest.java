@@ -34,14 +34,18 @@ import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorFilter;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorProjector;
 import org.apache.kylin.storage.hbase.coprocessor.CoprocessorRowType;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.KeyValue.Type;
+import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.ipc.RemoteException;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -72,14 +76,14 @@ public class AggregateRegionObserverTest {
 
     @Before
     public void setup() {
+        // in row key order, like a region scan
         cellsInput.add(newCell(k1, c1, "10.5", 1));
-        cellsInput.add(newCell(k2, c1, "11.5", 2));
-        cellsInput.add(newCell(k3, c1, "12.5", 3));
-        cellsInput.add(newCell(k4, c1, "13.5", 4));
-
         cellsInput.add(newCell(k1, c2, "21.5"));
+        cellsInput.add(newCell(k2, c1, "11.5", 2));
         cellsInput.add(newCell(k2, c2, "22.5"));
+        cellsInput.add(newCell(k3, c1, "12.5", 3));
         cellsInput.add(newCell(k3, c2, "23.5"));
+        cellsInput.add(newCell(k4, c1, "13.5", 4));
         cellsInput.add(newCell(k4, c2, "24.5"));
 
     }
@@ -155,6 +159,203 @@ public class AggregateRegionObserverTest {
         aggrScanner.close();
     }
 
+    @Test
+    public void testStreaming() throws IOException {
+        CoprocessorProjector projector = new CoprocessorProjector(mask);
+        assertTrue(projector.isGroupByPrefix());
+
+        HashSet<String> expectedResult = new HashSet<String>();
+        expectedResult.add("\\x02\\x02\\x00\\x00, f:q1, [26.0, 7]");
+        expectedResult.add("\\x02\\x02\\x00\\x00, f:q2, [48.0]");
+        expectedResult.add("\\x01\\x01\\x00\\x00, f:q1, [22.0, 3]");
+        expectedResult.add("\\x01\\x01\\x00\\x00, f:q2, [44.0]");
+
+        ObserverAggregators aggregators = new ObserverAggregators(new HCol[] { c1, c2 });
+        RegionScanner aggrScanner = new AggregationScanner(newRowType(), CoprocessorFilter.deserialize(null), projector, aggregators, new MockupRegionScanner(cellsInput));
+        assertEquals(expectedResult, scanAll(aggrScanner, mask));
+    }
+
+    @Test
+    public void testStreamingResume() throws IOException {
+        ObserverAggregators aggregators = new ObserverAggregators(new HCol[] { c1, c2 });
+        AggregationScanner aggrScanner = new AggregationScanner(newRowType(), CoprocessorFilter.deserialize(null), new CoprocessorProjector(mask), aggregators, new MockupRegionScanner(cellsInput));
+        List<Cell> firstGroup = Lists.newArrayList();
+        aggrScanner.nextRaw(firstGroup);
+        aggrScanner.close();
+        byte[] startRow = aggrScanner.getNextStartRow(CellUtil.cloneRow(firstGroup.get(0)));
+        assertArrayEquals(new byte[] { 0x01, 0x02, 0, 0 }, startRow);
+
+        // a new scan from the start row returns the groups after the first
+        List<Cell> rest = Lists.newArrayList();
+        for (Cell cell : cellsInput) {
+            if (Bytes.compareTo(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength(), startRow, 0, startRow.length) >= 0)
+                rest.add(cell);
+        }
+        HashSet<String> expectedResult = new HashSet<String>();
+        expectedResult.add("\\x02\\x02\\x00\\x00, f:q1, [26.0, 7]");
+        expectedResult.add("\\x02\\x02\\x00\\x00, f:q2, [48.0]");
+        aggrScanner = new AggregationScanner(newRowType(), CoprocessorFilter.deserialize(null), new CoprocessorProjector(mask), aggregators, new MockupRegionScanner(rest));
+        assertEquals(expectedResult, scanAll(aggrScanner, mask));
+
+        // the prefix plus one carries, and may overflow
+        CoprocessorProjector projector = new CoprocessorProjector(mask);
+        assertArrayEquals(new byte[] { 0x02, 0x00, 0, 0 }, projector.getNextGroupStartRow(new byte[] { 0x01, (byte) 0xff, 0x05, 0x06 }));
+        assertNull(projector.getNextGroupStartRow(new byte[] { (byte) 0xff, (byte) 0xff, 0x05, 0x06 }));
+
+        // groups in memory or ranked can only be read from the scanner
+        aggrScanner = new AggregationScanner(newRowType(), null, new CoprocessorProjector(mask), aggregators, AggregationScanner.DEFAULT_MEMORY_BUDGET, new ObserverTopN(0, true, 1), new MockupRegionScanner(cellsInput));
+        assertNull(aggrScanner.getNextStartRow(new byte[] { 0x01, 0x01, 0, 0 }));
+        aggrScanner.close();
+        aggrScanner = new AggregationScanner(newRowType(), null, new CoprocessorProjector(new byte[] { 0, (byte) 0xff, 0, 0 }), aggregators, new MockupRegionScanner(cellsInput));
+        assertNull(aggrScanner.getNextStartRow(new byte[] { 0x00, 0x01, 0, 0 }));
+        aggrScanner.close();
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        // group by the 2nd byte only, not a row key prefix
+        byte[] mask = new byte[] { 0, (byte) 0xff, 0, 0 };
+        CoprocessorProjector projector = new CoprocessorProjector(mask);
+        assertFalse(projector.isGroupByPrefix());
+
+        HashSet<String> expectedResult = new HashSet<String>();
+        expectedResult.add("\\x00\\x02\\x00\\x00, f:q1, [26.0, 7]");
+        expectedResult.add("\\x00\\x02\\x00\\x00, f:q2, [48.0]");
+        expectedResult.add("\\x00\\x01\\x00\\x00, f:q1, [22.0, 3]");
+        expectedResult.add("\\x00\\x01\\x00\\x00, f:q2, [44.0]");
+
+        // a budget of 1 byte spills every group to disk
+        ObserverAggregators aggregators = new ObserverAggregators(new HCol[] { c1, c2 });
+        RegionScanner aggrScanner = new AggregationScanner(newRowType(), CoprocessorFilter.deserialize(null), projector, aggregators, 1, new MockupRegionScanner(cellsInput));
+        assertEquals(expectedResult, scanAll(aggrScanner, mask));
+    }
+
+    @Test
+    public void testTopN() throws IOException {
+        double[] sums = new double[] { 1.0, 5.0, 9.0, 3.0, 0.5 };
+        ArrayList<Cell> cells = Lists.newArrayList();
+        for (int i = 0; i < sums.length; i++) {
+            byte[] key = new byte[] { (byte) (i + 1), 0x01, 0, 0 };
+            cells.add(newCell(key, c1, String.valueOf(sums[i]), 1));
+        }
+        ObserverAggregators aggregators = new ObserverAggregators(new HCol[] { c1 });
+
+        // the first and last groups are always returned, plus the top 1 of the rest
+        RegionScanner aggrScanner = new AggregationScanner(newRowType(), null, new CoprocessorProjector(mask), aggregators, AggregationScanner.DEFAULT_MEMORY_BUDGET, new ObserverTopN(0, true, 1), new MockupRegionScanner(cells));
+        assertEquals(Lists.newArrayList("\\x01\\x01\\x00\\x00", "\\x03\\x01\\x00\\x00", "\\x05\\x01\\x00\\x00"), scanRowKeys(aggrScanner));
+
+        aggrScanner = new AggregationScanner(newRowType(), null, new CoprocessorProjector(mask), aggregators, AggregationScanner.DEFAULT_MEMORY_BUDGET, new ObserverTopN(0, false, 1), new MockupRegionScanner(cells));
+        assertEquals(Lists.newArrayList("\\x01\\x01\\x00\\x00", "\\x04\\x01\\x00\\x00", "\\x05\\x01\\x00\\x00"), scanRowKeys(aggrScanner));
+    }
+
+    @Test
+    public void testReturnStats() throws IOException {
+        ObserverAggregators aggregators = new ObserverAggregators(new HCol[] { c1, c2 });
+        AggregationScanner aggrScanner = new AggregationScanner(newRowType(), CoprocessorFilter.deserialize(null), new CoprocessorProjector(mask), aggregators, new MockupRegionScanner(cellsInput));
+        aggrScanner.setReturnStats(true);
+
+        ArrayList<Cell> result = Lists.newArrayList();
+        Cell last = null;
+        boolean hasMore = true;
+        while (hasMore) {
+            result.clear();
+            hasMore = aggrScanner.next(result);
+            if (!result.isEmpty())
+                last = result.get(result.size() - 1);
+        }
+        aggrScanner.close();
+
+        // 4 rows in, 2 groups out
+        assertTrue(CellUtil.matchingQualifier(last, AggregateRegionObserver.STATS_QUALIFIER));
+        byte[] value = CellUtil.cloneValue(last);
+        assertEquals(4, Bytes.toLong(value, 0));
+        assertEquals(2, Bytes.toLong(value, Bytes.SIZEOF_LONG));
+    }
+
+    @Test
+    public void testArtifactsByDigest() throws IOException {
+        byte[] typeBytes = CoprocessorRowType.serialize(newRowType());
+        byte[] projectorBytes = CoprocessorProjector.serialize(new CoprocessorProjector(mask));
+        byte[] aggrsBytes = ObserverAggregators.serialize(new ObserverAggregators(new HCol[] { c1, c2 }));
+        byte[] filterBytes = CoprocessorFilter.serialize(CoprocessorFilter.deserialize(null));
+        byte[] digest = ObserverArtifacts.digest(typeBytes, projectorBytes, aggrsBytes, filterBytes, null);
+        assertArrayEquals(digest, ObserverArtifacts.digest(typeBytes, projectorBytes, aggrsBytes, filterBytes, null));
+        assertFalse(Arrays.equals(digest, ObserverArtifacts.digest(typeBytes, projectorBytes, aggrsBytes, filterBytes, ObserverTopN.serialize(new ObserverTopN(0, true, 1)))));
+
+        assertNull(ObserverArtifacts.get(digest, 10));
+        ObserverArtifacts.put(digest, new ObserverArtifacts(typeBytes, projectorBytes, aggrsBytes, filterBytes, null), 10);
+        ObserverArtifacts artifacts = ObserverArtifacts.get(digest, 10);
+        assertNotNull(artifacts);
+        assertNull(artifacts.getTopN());
+
+        // the templates are copied for each scan, the filter on row keys is shared
+        assertNotSame(artifacts.newProjector(), artifacts.newProjector());
+        assertNotSame(artifacts.newAggregators().hcols[0], artifacts.newAggregators().hcols[0]);
+        assertSame(artifacts.newFilter(), artifacts.newFilter());
+
+        // two scans of the same artifacts don't share state
+        for (int i = 0; i < 2; i++) {
+            RegionScanner aggrScanner = new AggregationScanner(artifacts.getType(), artifacts.newFilter(), artifacts.newProjector(), artifacts.newAggregators(), new MockupRegionScanner(cellsInput));
+            assertEquals(Lists.newArrayList("\\x01\\x01\\x00\\x00", "\\x02\\x02\\x00\\x00"), scanRowKeys(aggrScanner));
+        }
+    }
+
+    @Test
+    public void testArtifactsMissing() throws IOException {
+        Scan scan = new Scan();
+        scan.setAttribute(AggregateRegionObserver.COPROCESSOR_ENABLE, new byte[] { 0x01 });
+        scan.setAttribute(AggregateRegionObserver.DIGEST, new byte[] { 0x0d, 0x0e });
+        try {
+            AggregateRegionObserver.wrapScanner(new Configuration(), scan, new MockupRegionScanner(cellsInput));
+            fail("digest alone is not enough if the artifacts are not cached");
+        } catch (ArtifactsMissingException e) {
+            assertTrue(ArtifactsMissingException.isCauseOf(e));
+        }
+
+        // as received by the client, wrapped, and unwrapped by class name or not
+        String remoteMessage = ArtifactsMissingException.forRegion(HConstants.EMPTY_START_ROW).getMessage() + "\n\tat org.apache.hadoop.hbase.regionserver.HRegionServer.scan";
+        assertTrue(ArtifactsMissingException.isCauseOf(new IOException("Failed to scan", new ArtifactsMissingException(remoteMessage))));
+        assertTrue(ArtifactsMissingException.isCauseOf(new IOException("Failed to scan", new RemoteException(ArtifactsMissingException.class.getName(), remoteMessage))));
+        assertFalse(ArtifactsMissingException.isCauseOf(new RemoteException(IOException.class.getName(), remoteMessage)));
+        assertFalse(ArtifactsMissingException.isCauseOf(new IOException("Failed to scan")));
+    }
+
+    private List<String> scanRowKeys(RegionScanner aggrScanner) throws IOException {
+        List<String> rowKeys = Lists.newArrayList();
+        ArrayList<Cell> result = Lists.newArrayList();
+        boolean hasMore = true;
+        while (hasMore) {
+            result.clear();
+            hasMore = aggrScanner.next(result);
+            if (!result.isEmpty()) {
+                Cell cell = result.get(0);
+                rowKeys.add(toString(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength(), mask));
+            }
+        }
+        aggrScanner.close();
+        return rowKeys;
+    }
+
+    private HashSet<String> scanAll(RegionScanner aggrScanner, byte[] mask) throws IOException {
+        HashSet<String> actualResult = new HashSet<String>();
+        ArrayList<Cell> result = Lists.newArrayList();
+        boolean hasMore = true;
+        while (hasMore) {
+            result.clear();
+            hasMore = aggrScanner.next(result);
+            for (Cell cell : result) {
+                HCol hcol = ObserverAggregators.match(c1, cell) ? c1 : c2;
+                hcol.measureCodec.decode(ByteBuffer.wrap(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()), hcol.measureValues);
+
+                String rowKey = toString(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength(), mask);
+                String col = Bytes.toString(hcol.family) + ":" + Bytes.toString(hcol.qualifier);
+                assertTrue(actualResult.add(rowKey + ", " + col + ", " + Arrays.toString(hcol.measureValues)));
+            }
+        }
+        aggrScanner.close();
+        return actualResult;
+    }
+
     @Test
     public void testNoMeasure() throws IOException {
 
@@ -320,9 +521,13 @@ public class AggregateRegionObserverTest {
          */
         @Override
         public boolean nextRaw(List<Cell> result) throws IOException {
+            // returns all cells of the next row
             if (i < input.size()) {
-                result.add(input.get(i));
-                i++;
+                Cell first = input.get(i);
+                do {
+                    result.add(input.get(i));
+                    i++;
+                } while (i < input.size() && CellUtil.matchingRow(first, input.get(i)));
             }
             return i < input.size();
         }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.coprocessor.observer;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.storage.hbase.HBaseScanStats;
+import org.junit.After;
+import org.junit.Test;
+
+public class ObserverCostModelTest {
+
+    @After
+    public void after() {
+        ObserverCostModel.clearObservations();
+    }
+
+    @Test
+    public void testEstimate() {
+        // 100 x 10 cardinality, group by the 10
+        assertEquals(0.01, ObserverCostModel.estimateOutputRatio(1000, 10, 0), 1e-9);
+        // only 20 source records, bounds the input rows
+        assertEquals(0.5, ObserverCostModel.estimateOutputRatio(1000, 10, 20), 1e-9);
+        // never more output than input
+        assertEquals(1.0, ObserverCostModel.estimateOutputRatio(1000, 10, 5), 1e-9);
+    }
+
+    @Test
+    public void testObserve() {
+        long now = System.currentTimeMillis();
+
+        // too small to learn from
+        ObserverCostModel.observe("k", 10, 10, now);
+        assertNull(ObserverCostModel.OBSERVATIONS.getIfPresent("k"));
+
+        ObserverCostModel.observe("k", 10000, 10000, now);
+        assertEquals(1.0, ObserverCostModel.OBSERVATIONS.getIfPresent("k").ratio, 1e-9);
+
+        // moving average toward the new observation
+        ObserverCostModel.observe("k", 10000, 0, now);
+        assertEquals(1 - ObserverCostModel.OBSERVATION_WEIGHT, ObserverCostModel.OBSERVATIONS.getIfPresent("k").ratio, 1e-9);
+
+        // an expired observation is replaced
+        ObserverCostModel.observe("k", 10000, 5000, now + ObserverCostModel.OBSERVATION_TTL);
+        assertEquals(0.5, ObserverCostModel.OBSERVATIONS.getIfPresent("k").ratio, 1e-9);
+    }
+
+    @Test
+    public void testCollectStats() {
+        byte[] row = Bytes.toBytes("r1");
+        byte[] family = Bytes.toBytes("F1");
+        KeyValue measure = new KeyValue(row, family, Bytes.toBytes("M"), Bytes.toBytes(1L));
+        KeyValue stats = new KeyValue(row, family, AggregateRegionObserver.STATS_QUALIFIER, Bytes.add(Bytes.toBytes(1000L), Bytes.toBytes(10L)));
+        HBaseScanStats scanStats = new HBaseScanStats();
+
+        // no stats cell, like rows of a scan without the coprocessor
+        ObserverCostModel.collectStats(null, null, null, Result.create(new Cell[] { measure }), scanStats, false);
+        ObserverCostModel.collectStats(null, null, null, Result.create(new Cell[0]), scanStats, false);
+        assertEquals(Long.valueOf(0), scanStats.toMap().get("coprocessorInputRows"));
+        assertEquals(Long.valueOf(0), scanStats.toMap().get("coprocessorOutputRows"));
+
+        // stats of each region add up
+        ObserverCostModel.collectStats(null, null, null, Result.create(new Cell[] { measure, stats }), scanStats, false);
+        ObserverCostModel.collectStats(null, null, null, Result.create(new Cell[] { measure, stats }), scanStats, false);
+        assertEquals(Long.valueOf(2000), scanStats.toMap().get("coprocessorInputRows"));
+        assertEquals(Long.valueOf(20), scanStats.toMap().get("coprocessorOutputRows"));
+        // not learned from
+        assertEquals(0, ObserverCostModel.OBSERVATIONS.size());
+    }
+
+    @Test
+    public void testObservationsBounded() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ObserverCostModel.MAX_OBSERVATIONS * 2; i++) {
+            ObserverCostModel.observe("k" + i, 10000, 100, now);
+        }
+        assertTrue(ObserverCostModel.OBSERVATIONS.size() <= ObserverCostModel.MAX_OBSERVATIONS);
+    }
+}
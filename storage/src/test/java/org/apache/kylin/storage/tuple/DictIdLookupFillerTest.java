@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.tuple;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.SplittedBytes;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.RowValueDecoder;
+import org.apache.kylin.cube.model.DimensionDesc;
+import org.apache.kylin.dict.DateStrDictionary;
+import org.apache.kylin.dict.Dictionary;
+import org.apache.kylin.dict.StringBytesConverter;
+import org.apache.kylin.dict.TrieDictionary;
+import org.apache.kylin.dict.TrieDictionaryBuilder;
+import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.hbase.CuboidScanInfo;
+import org.apache.kylin.storage.tuple.Tuple.IDerivedColumnFiller;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class DictIdLookupFillerTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        CuboidScanInfo.clear();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testDense() {
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        for (String value : new String[] { "a", "b", "c", "d" }) {
+            builder.addValue(value);
+        }
+        TrieDictionary<String> dict = builder.build(0);
+
+        List<String[]> rows = Lists.newArrayList();
+        rows.add(new String[] { "a", "A" });
+        rows.add(new String[] { "c", "C" });
+        rows.add(new String[] { "d", "D" });
+        // not in the dictionary, never in a row key
+        rows.add(new String[] { "x", "X" });
+
+        DictIdLookupFiller.DerivedValues values = DictIdLookupFiller.buildDerivedValues(dict, rows, 0, new int[] { 1 });
+        assertTrue(values.isDense());
+        assertEquals("A", values.get(dict.getIdFromValue("a"), 0));
+        assertNull(values.get(dict.getIdFromValue("b"), 0));
+        assertEquals("D", values.get(dict.getIdFromValue("d"), 0));
+        assertNull(values.get(0xffff, 0));
+    }
+
+    @Test
+    public void testSparse() {
+        // a date dictionary has millions of IDs, the lookup table only a few rows
+        DateStrDictionary dict = new DateStrDictionary();
+        assertTrue(dict.getMaxId() - dict.getMinId() > 1000000);
+
+        List<String[]> rows = Lists.newArrayList();
+        rows.add(new String[] { "2012-01-01", "Q1" });
+        rows.add(new String[] { "2012-12-31", "Q4" });
+
+        DictIdLookupFiller.DerivedValues values = DictIdLookupFiller.buildDerivedValues(dict, rows, 0, new int[] { 1 });
+        assertFalse(values.isDense());
+        assertEquals(2 * 2, values.getSizeInCells());
+        assertEquals("Q1", values.get(dict.getIdFromValue("2012-01-01"), 0));
+        assertEquals("Q4", values.get(dict.getIdFromValue("2012-12-31"), 0));
+        assertNull(values.get(dict.getIdFromValue("2012-06-30"), 0));
+    }
+
+    @Test
+    public void testFillFromRowKeyBytes() {
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_ready");
+        CubeSegment segment = cube.getLatestReadySegment();
+        Cuboid cuboid = Cuboid.findById(cube.getDescriptor(), Cuboid.getBaseCuboidId(cube.getDescriptor()));
+        TblColRef calDt = cube.getDescriptor().findColumnRef("DEFAULT.TEST_KYLIN_FACT", "CAL_DT");
+        TblColRef weekBegDt = cube.getDescriptor().findColumnRef("EDW.TEST_CAL_DT", "WEEK_BEG_DT");
+        DimensionDesc calDtDim = null;
+        for (DimensionDesc dim : cube.getDescriptor().getDimensions()) {
+            if ("EDW.TEST_CAL_DT".equals(dim.getTable()))
+                calDtDim = dim;
+        }
+
+        CuboidScanInfo scanInfo = CuboidScanInfo.get(segment, cuboid, Arrays.asList(calDt), Collections.<RowValueDecoder> emptyList(), Collections.<TblColRef, String> emptyMap());
+        DictIdLookupFiller filler = null;
+        for (IDerivedColumnFiller f : scanInfo.getDerivedColumnFillers(segment)) {
+            if (f instanceof DictIdLookupFiller && ((DictIdLookupFiller) f).hostSplit == 1)
+                filler = (DictIdLookupFiller) f;
+        }
+        assertNotNull(filler);
+        // the host is read as dictionary ID, no need to decode it
+        assertEquals(0, filler.getRowValueIndexes().length);
+
+        // row key bytes of cal_dt, the decoded row values are left null
+        Dictionary<?> dict = segment.getDictionary(calDt);
+        byte[] valueBytes = Bytes.toBytes("2012-01-01");
+        SplittedBytes[] splits = new SplittedBytes[cuboid.getColumns().size() + 1];
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = new SplittedBytes(8);
+        }
+        splits[1].length = dict.getSizeOfId();
+        BytesUtil.writeUnsigned(dict.getIdFromValueBytes(valueBytes, 0, valueBytes.length), splits[1].value, 0, splits[1].length);
+        List<String> rowValues = Arrays.asList(new String[cuboid.getColumns().size()]);
+
+        Tuple tuple = new Tuple(scanInfo.getTupleInfo());
+        filler.fillDerivedColumns(rowValues, splits, tuple);
+
+        LookupStringTable lookupTable = CubeManager.getInstance(getTestConfig()).getLookupTable(segment, calDtDim);
+        String[] lookupRow = lookupTable.getRow(new Array<String>(new String[] { "2012-01-01" }));
+        assertNotNull(lookupRow);
+        Object expected = Tuple.convertOptiqCellValue(lookupRow[weekBegDt.getColumn().getZeroBasedIndex()], weekBegDt.getType().getName());
+        assertNotNull(expected);
+        assertEquals(expected, tuple.getValue(weekBegDt));
+    }
+}
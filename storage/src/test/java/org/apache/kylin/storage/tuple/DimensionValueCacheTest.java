@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.tuple;
+
+import static org.junit.Assert.*;
+
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.dict.StringBytesConverter;
+import org.apache.kylin.dict.TrieDictionary;
+import org.apache.kylin.dict.TrieDictionaryBuilder;
+import org.junit.Test;
+
+public class DimensionValueCacheTest {
+
+    @Test
+    public void testTypedValues() {
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        builder.addValue("7");
+        builder.addValue("42");
+        builder.addValue("1000");
+        TrieDictionary<String> dict = builder.build(0);
+
+        DimensionValueCache cache = new DimensionValueCache(dict, "bigint");
+        int size = dict.getSizeOfId();
+        for (String value : new String[] { "7", "42", "1000" }) {
+            byte[] id = new byte[size];
+            BytesUtil.writeUnsigned(dict.getIdFromValue(value), id, 0, size);
+            assertEquals(Long.valueOf(value), cache.getValue(id, size));
+            // second time from cache
+            assertSame(cache.getValue(id, size), cache.getValue(id, size));
+        }
+
+        // all 0xff is null
+        byte[] nullId = new byte[size];
+        BytesUtil.writeUnsigned(0xffffffff, nullId, 0, size);
+        assertNull(cache.getValue(nullId, size));
+    }
+}